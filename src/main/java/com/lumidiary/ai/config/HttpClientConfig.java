@@ -0,0 +1,104 @@
+package com.lumidiary.ai.config;
+
+import com.lumidiary.ai.integration.HttpClientMetrics;
+import com.lumidiary.ai.integration.OkHttpConcurrencyLimiter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 외부 호출용 HTTP 전송 계층.
+ * Gemini 호출은 공유 OkHttpClient 하나를, Maps/이미지 다운로드/콜백은 공유 JDK HttpClient 하나를 사용한다.
+ * 두 클라이언트 모두 커넥션 풀을 재사용하므로 호출마다 TLS 핸드셰이크를 하지 않는다.
+ */
+@Slf4j
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${http.client.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+
+    @Value("${http.client.read-timeout-ms:60000}")
+    private int readTimeoutMs;
+
+    @Value("${http.client.write-timeout-ms:30000}")
+    private int writeTimeoutMs;
+
+    @Value("${http.client.call-timeout-ms:120000}")
+    private int callTimeoutMs;
+
+    @Value("${http.client.pool.max-idle-connections:20}")
+    private int maxIdleConnections;
+
+    @Value("${http.client.pool.keep-alive-ms:300000}")
+    private long keepAliveMs;
+
+    @Value("${http.client.concurrency.max-calls:64}")
+    private int maxCalls;
+
+    @Value("${http.client.jdk.queue-capacity:256}")
+    private int jdkQueueCapacity;
+
+    private ExecutorService jdkHttpClientExecutor;
+
+    @Bean(destroyMethod = "evictAll")
+    public ConnectionPool okHttpConnectionPool() {
+        return new ConnectionPool(maxIdleConnections, keepAliveMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Bean
+    public OkHttpClient okHttpClient(ConnectionPool okHttpConnectionPool, HttpClientMetrics httpClientMetrics,
+                                     OkHttpConcurrencyLimiter concurrencyLimiter) {
+        // 모든 호출이 execute()(동기)라 Dispatcher 한도는 적용되지 않으므로 인터셉터로 동시 호출 수를 제한한다
+        log.info("Shared OkHttpClient created (pool: {} idle / {} ms keep-alive, max {} concurrent calls)",
+                maxIdleConnections, keepAliveMs, maxCalls);
+        return new OkHttpClient.Builder()
+                .connectionPool(okHttpConnectionPool)
+                .addInterceptor(concurrencyLimiter)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .readTimeout(Duration.ofMillis(readTimeoutMs))
+                .writeTimeout(Duration.ofMillis(writeTimeoutMs))
+                .callTimeout(Duration.ofMillis(callTimeoutMs))
+                .eventListener(httpClientMetrics)
+                .build();
+    }
+
+    @Bean
+    public HttpClient jdkHttpClient() {
+        // 고정 크기 풀 + 유한 큐. 큐가 가득 차면 AbortPolicy로 즉시 거절하는데,
+        // HttpClient 내부 실행기가 거절된 작업을 자체 비동기 풀로 넘기므로 호출 스레드가 막히지 않는다
+        // 프로토콜은 기본값(HTTP/2 협상, 미지원 서버는 HTTP/1.1)을 따른다
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxCalls, maxCalls, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(jdkQueueCapacity), new CustomizableThreadFactory("jdk-http-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        jdkHttpClientExecutor = executor;
+        return HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(jdkHttpClientExecutor)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (jdkHttpClientExecutor != null) {
+            jdkHttpClientExecutor.shutdown();
+        }
+    }
+}
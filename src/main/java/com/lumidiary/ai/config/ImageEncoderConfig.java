@@ -0,0 +1,32 @@
+package com.lumidiary.ai.config;
+
+import com.lumidiary.ai.util.ImageEncoder;
+import com.lumidiary.ai.util.JpegImageEncoder;
+import com.lumidiary.ai.util.WebpImageEncoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class ImageEncoderConfig {
+
+    // webp: cwebp 프로세스 실행 (기존 방식), jpeg: ImageIO로 JVM 내 인코딩
+    @Value("${image.encoder.format:webp}")
+    private String format;
+
+    @Value("${image.encoder.quality:50}")
+    private int quality;
+
+    @Bean
+    public ImageEncoder imageEncoder() {
+        log.info("Using {} image encoder with quality {}", format, quality);
+        if ("jpeg".equalsIgnoreCase(format) || "jpg".equalsIgnoreCase(format)) {
+            return new JpegImageEncoder(quality);
+        } else if ("webp".equalsIgnoreCase(format)) {
+            return new WebpImageEncoder(quality);
+        }
+        throw new IllegalArgumentException("Unsupported image.encoder.format: " + format);
+    }
+}
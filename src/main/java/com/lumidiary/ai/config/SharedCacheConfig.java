@@ -0,0 +1,102 @@
+package com.lumidiary.ai.config;
+
+import com.lumidiary.ai.controller.SharedCacheController;
+import com.lumidiary.ai.integration.LocalRemoteCache;
+import com.lumidiary.ai.integration.PeerRemoteCache;
+import com.lumidiary.ai.integration.RemoteCache;
+import com.lumidiary.ai.integration.SharedCacheStore;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import org.apache.catalina.connector.Connector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+
+@Slf4j
+@Configuration
+public class SharedCacheConfig {
+
+    // local: 같은 프로세스 안의 저장소 (단일 인스턴스/테스트), peers: 레플리카들이 일관 해시로 나눠 보관
+    @Value("${cache.shared.mode:local}")
+    private String mode;
+
+    // 파드 IP들을 돌려주는 헤드리스 서비스 이름
+    @Value("${cache.shared.peers.service:ai-service-peers}")
+    private String peerService;
+
+    // 피어 전용 포트. 공개 서비스(ai-service)가 가리키는 server.port와 달라야 한다
+    @Value("${cache.shared.peers.port:8081}")
+    private int peerPort;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    // 피어 요청마다 헤더로 보내고 받는 쪽에서 확인한다. peers 모드에서는 필수
+    @Value("${cache.shared.peers.secret:}")
+    private String peerSecret;
+
+    // 비어 있으면 로컬 호스트 주소 사용. 쿠버네티스에서는 POD_IP를 넘긴다
+    @Value("${cache.shared.peers.self-address:}")
+    private String selfAddress;
+
+    @Value("${cache.shared.peers.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${cache.shared.peers.refresh-ms:30000}")
+    private long refreshMs;
+
+    // 피어가 느리면 기다리지 않고 미스로 처리
+    @Value("${cache.shared.peers.timeout-ms:500}")
+    private long timeoutMs;
+
+    @Bean
+    public RemoteCache remoteCache(SharedCacheStore sharedCacheStore, OkHttpClient okHttpClient)
+            throws UnknownHostException {
+        log.info("Using {} shared cache tier", mode);
+        if ("local".equalsIgnoreCase(mode)) {
+            return new LocalRemoteCache(sharedCacheStore);
+        } else if ("peers".equalsIgnoreCase(mode)) {
+            if (peerSecret.isBlank()) {
+                throw new IllegalStateException("cache.shared.peers.secret must be set in peers mode "
+                        + "so other pods cannot write to the internal cache endpoint");
+            }
+            String self = selfAddress.isBlank() ? InetAddress.getLocalHost().getHostAddress() : selfAddress;
+            // 공유 커넥션 풀/디스패처는 그대로 쓰고 타임아웃만 짧게
+            // 피어 호출이 Gemini 호출 통계(okhttp.*)에 섞이지 않도록 HttpClientMetrics 리스너는 떼어 낸다
+            OkHttpClient.Builder peerClient = okHttpClient.newBuilder()
+                    .eventListener(EventListener.NONE)
+                    .callTimeout(Duration.ofMillis(timeoutMs))
+                    .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                            .header(SharedCacheController.SECRET_HEADER, peerSecret)
+                            .build()));
+            return new PeerRemoteCache(sharedCacheStore, peerClient.build(), peerService, peerPort, self, virtualNodes,
+                    refreshMs);
+        }
+        throw new IllegalArgumentException("Unsupported cache.shared.mode: " + mode);
+    }
+
+    // peers 모드에서만 피어 전용 커넥터를 추가로 연다
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> peerCacheConnector() {
+        return factory -> {
+            if (!"peers".equalsIgnoreCase(mode)) {
+                return;
+            }
+            if (peerPort == serverPort) {
+                throw new IllegalStateException("cache.shared.peers.port must differ from server.port (" + serverPort
+                        + ") so the internal cache is not reachable through the public service");
+            }
+            Connector connector = new Connector(TomcatServletWebServerFactory.DEFAULT_PROTOCOL);
+            connector.setPort(peerPort);
+            factory.addAdditionalTomcatConnectors(connector);
+            log.info("Shared cache peer endpoint listening on port {}", peerPort);
+        };
+    }
+}
@@ -1,18 +1,32 @@
 package com.lumidiary.ai.config;
 
+import com.lumidiary.ai.integration.HttpClientMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class Webconfig {
 
+    @Value("${http.client.read-timeout-ms:60000}")
+    private int readTimeoutMs;
+
+    // Maps, 이미지 다운로드, 콜백 호출이 공유 HttpClient(커넥션 풀, HTTP/2)를 사용하도록 구성
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(HttpClient jdkHttpClient, HttpClientMetrics httpClientMetrics) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(jdkHttpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(httpClientMetrics);
+        return restTemplate;
     }
 
     @Bean
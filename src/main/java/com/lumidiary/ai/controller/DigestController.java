@@ -4,8 +4,10 @@ import com.lumidiary.ai.dto.DigestRequest;
 import com.lumidiary.ai.dto.DigestResponse;
 import com.lumidiary.ai.service.DigestService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequiredArgsConstructor
@@ -13,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 public class DigestController {
 
     private final DigestService digestService;
+    private final SseStreams sseStreams;
 
     @PostMapping("/create")
     public ResponseEntity<?> create(@RequestBody DigestRequest request) {
@@ -23,4 +26,10 @@ public class DigestController {
             return ResponseEntity.status(500).body("Digest creation failed: " + e.getMessage());
         }
     }
+
+    // 제목, 요약, 감정, 항목별 요약을 생성되는 대로 SSE로 전달하고 마지막에 result 이벤트로 최종 응답 전송
+    @PostMapping(value = "/create/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter createStream(@RequestBody DigestRequest request) {
+        return sseStreams.start(listener -> digestService.createDigest(request, listener));
+    }
 }
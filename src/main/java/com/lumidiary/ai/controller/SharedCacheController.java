@@ -0,0 +1,83 @@
+package com.lumidiary.ai.controller;
+
+import com.lumidiary.ai.integration.SharedCacheStore;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 다른 레플리카가 이 인스턴스에 배정된 공유 캐시 키를 읽고 쓰는 내부 엔드포인트.
+ * peers 모드에서 따로 여는 피어 포트(헤드리스 서비스만 노출)로 들어온 요청만 받고, 공개 포트로 오면 404.
+ * 공유 비밀 헤더도 확인하며, 비밀이 비어 있으면 모든 요청을 거절한다(peers 모드 기동 시 필수로 검사).
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/internal/cache")
+public class SharedCacheController {
+
+    public static final String SECRET_HEADER = "X-Cache-Secret";
+
+    private final SharedCacheStore store;
+
+    @Value("${cache.shared.mode:local}")
+    private String mode;
+
+    @Value("${cache.shared.peers.port:8081}")
+    private int peerPort;
+
+    @Value("${cache.shared.peers.secret:}")
+    private String secret;
+
+    @GetMapping(value = "/{key}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> get(@PathVariable String key, HttpServletRequest request) {
+        if (!isPeerRequest(request)) {
+            return ResponseEntity.notFound().build();
+        }
+        byte[] value = store.get(key);
+        return value != null ? ResponseEntity.ok(value) : ResponseEntity.notFound().build();
+    }
+
+    // 본문은 크기를 확인하면서 직접 읽는다 (@RequestBody는 한도 없이 전부 메모리에 올림)
+    @PutMapping(value = "/{key}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> put(@PathVariable String key, @RequestParam long ttlMs, HttpServletRequest request)
+            throws IOException {
+        if (!isPeerRequest(request)) {
+            return ResponseEntity.notFound().build();
+        }
+        int maxValueBytes = store.maxValueBytes();
+        if (request.getContentLengthLong() > maxValueBytes) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        byte[] value = request.getInputStream().readNBytes(maxValueBytes + 1);
+        if (value.length > maxValueBytes) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        store.put(key, value, ttlMs);
+        return ResponseEntity.noContent().build();
+    }
+
+    private boolean isPeerRequest(HttpServletRequest request) {
+        if (!"peers".equalsIgnoreCase(mode) || request.getLocalPort() != peerPort) {
+            return false;
+        }
+        if (secret.isBlank()) {
+            return false;
+        }
+        String provided = request.getHeader(SECRET_HEADER);
+        return provided != null && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+                provided.getBytes(StandardCharsets.UTF_8));
+    }
+}
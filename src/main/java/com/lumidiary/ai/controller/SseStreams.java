@@ -0,0 +1,93 @@
+package com.lumidiary.ai.controller;
+
+import com.lumidiary.ai.service.PartialResultListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 스트리밍 생성 작업을 별도 스레드에서 실행하고 부분 결과를 SSE 이벤트로 내보낸다.
+ * 부분 결과는 작업이 보낸 이벤트 이름 그대로, 마지막에 result(최종 응답) 또는 error 이벤트로 끝난다.
+ */
+@Slf4j
+@Component
+public class SseStreams {
+
+    @Value("${stream.pool-size:8}")
+    private int poolSize;
+
+    @Value("${stream.timeout-ms:180000}")
+    private long timeoutMs;
+
+    private ExecutorService executor;
+
+    @FunctionalInterface
+    public interface StreamTask {
+        Object run(PartialResultListener listener) throws Exception;
+    }
+
+    @PostConstruct
+    public void init() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("sse-stream-"));
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public SseEmitter start(StreamTask task) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        try {
+            executor.execute(() -> run(emitter, task));
+        } catch (RejectedExecutionException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    private void run(SseEmitter emitter, StreamTask task) {
+        try {
+            Object result = task.run((event, data) -> send(emitter, event, data));
+            send(emitter, "result", result);
+            emitter.complete();
+        } catch (UncheckedIOException e) {
+            // 클라이언트가 연결을 끊음 → 생성도 중단된 상태
+            log.info("SSE 클라이언트 연결 종료: {}", e.getMessage());
+            emitter.completeWithError(e.getCause());
+        } catch (Exception e) {
+            log.error("스트리밍 생성 실패: {}", e.getMessage(), e);
+            try {
+                emitter.send(SseEmitter.event().name("error").data(e.getMessage() != null ? e.getMessage() : e.toString()));
+                emitter.complete();
+            } catch (Exception sendError) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    // 전송 실패는 unchecked로 던져 스트리밍 호출 자체를 끊는다
+    private void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
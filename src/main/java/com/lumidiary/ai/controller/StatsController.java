@@ -0,0 +1,29 @@
+package com.lumidiary.ai.controller;
+
+import com.lumidiary.ai.util.StatsProvider;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    private final List<StatsProvider> statsProviders;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> stats() {
+        Map<String, Object> result = new TreeMap<>();
+        for (StatsProvider provider : statsProviders) {
+            result.put(provider.statsName(), provider.stats());
+        }
+        return ResponseEntity.ok(result);
+    }
+}
@@ -4,8 +4,10 @@ import com.lumidiary.ai.dto.GeminiResponse;
 import com.lumidiary.ai.dto.VisionRequest;
 import com.lumidiary.ai.service.VisionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequiredArgsConstructor
@@ -13,6 +15,7 @@ import org.springframework.web.bind.annotation.*;
 public class VisionController {
 
     private final VisionService visionService;
+    private final SseStreams sseStreams;
 
     @PostMapping("/analyze")
     public ResponseEntity<?> analyze(@RequestBody VisionRequest request) {
@@ -23,4 +26,10 @@ public class VisionController {
             return ResponseEntity.status(500).body("Vision 분석 실패: " + e.getMessage());
         }
     }
+
+    // 이미지 설명, 하루 요약, 질문을 생성되는 대로 SSE로 전달하고 마지막에 result 이벤트로 최종 응답 전송
+    @PostMapping(value = "/analyze/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter analyzeStream(@RequestBody VisionRequest request) {
+        return sseStreams.start(listener -> visionService.analyze(request, listener));
+    }
 }
@@ -0,0 +1,28 @@
+package com.lumidiary.ai.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CallbackBatchRequest {
+    private String channel;
+    private List<Item> items;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        // 응답의 결과 항목과 매칭하기 위한 ID
+        private String itemId;
+        // 배치 모드가 아닐 때 사용했을 개별 콜백 URL (diary의 경우 대상 ID 포함)
+        private String url;
+        // GeminiResponse 또는 DigestResponse JSON
+        @JsonRawValue
+        private String payload;
+    }
+}
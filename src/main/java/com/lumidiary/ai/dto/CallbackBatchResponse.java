@@ -0,0 +1,20 @@
+package com.lumidiary.ai.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Data
+public class CallbackBatchResponse {
+    private List<ItemResult> results;
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    @Data
+    public static class ItemResult {
+        private String itemId;
+        // 항목별 HTTP 상태 코드 (2xx 성공)
+        private int status;
+        private String message;
+    }
+}
@@ -0,0 +1,29 @@
+package com.lumidiary.ai.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import java.util.List;
+
+// 청크별 요약을 모아 최종 제목/요약/인사이트를 생성할 때 보내는 입력
+@Data
+public class DigestReduceRequestForPrompt {
+    private List<ChunkNote> chunks;
+    private List<EntryNote> entries;
+    private String user_locale;
+
+    @Data
+    public static class ChunkNote {
+        private String chunkSummary;
+        private String activities;
+        private String specialMoments;
+    }
+
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class EntryNote {
+        private int index;
+        private String emotion;
+        // 이전에 생성해 둔 항목 요약 (청크 요약에 포함되지 않은 항목만)
+        private String summary;
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 @Data
@@ -36,6 +37,8 @@ public class GeminiPromptRequest {
     @AllArgsConstructor
     public static class InlineData {
         private String mime_type;
-        private String data;
+        // 압축 이미지를 보관하고 직렬화 시점에 Jackson이 base64로 인코딩
+        // 디스크 캐시의 매핑된 버퍼이면 힙으로 복사하지 않고 스트림으로 읽어 인코딩한다
+        private ByteBuffer data;
     }
 }
@@ -1,5 +1,7 @@
 package com.lumidiary.ai.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
@@ -12,4 +14,20 @@ import lombok.AllArgsConstructor;
 public class Landmark {
     private String id;
     private String name;
+    // 프롬프트에 넣을 랜드마크를 거리순으로 고를 때 사용 (좌표를 모르면 null)
+    // 응답/콜백 JSON에는 내보내지 않으며, 캐시 직렬화에서만 WithCoordinates 믹스인으로 유지한다
+    @JsonIgnore
+    private Double latitude;
+    @JsonIgnore
+    private Double longitude;
+
+    // 캐시용 ObjectMapper에 addMixIn(Landmark.class, WithCoordinates.class)로 등록
+    public abstract static class WithCoordinates {
+        @JsonIgnore(false)
+        @JsonProperty
+        private Double latitude;
+        @JsonIgnore(false)
+        @JsonProperty
+        private Double longitude;
+    }
 }
@@ -0,0 +1,25 @@
+package com.lumidiary.ai.dto;
+
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 비전 요청 하나에 대해 정한 이미지 해상도/품질과 프롬프트에 넣을 위치 정보
+@Data
+public class VisionPayloadPlan {
+    private int imageCount;
+    private int maxDimension;
+    private int quality;
+    private int landmarkLimit;
+    private long estimatedBytes;
+    private long actualBytes;
+    private int estimatedTokens;
+    // 이미지 ID → 프롬프트에 넣을 랜드마크 이름 (순위순, 최대 landmarkLimit개)
+    private Map<String, List<String>> landmarkNames = new HashMap<>();
+    // 바로 앞 이미지와 주소가 같아 위치 문구를 생략할 이미지 ID
+    private Set<String> sameLocationAsPrevious = new HashSet<>();
+}
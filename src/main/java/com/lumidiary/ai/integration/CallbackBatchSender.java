@@ -0,0 +1,249 @@
+package com.lumidiary.ai.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lumidiary.ai.dto.CallbackBatchRequest;
+import com.lumidiary.ai.dto.CallbackBatchResponse;
+import com.lumidiary.ai.util.StatsProvider;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 콜백 배치 전송 모드.
+ * 채널별로 완료된 결과를 max-size 또는 linger-ms 기준으로 모아 하나의 POST로 보내고,
+ * 응답의 항목별 status를 각 항목의 future에 돌려준다. 실패한 항목의 재시도는 CallbackOutbox가 담당한다.
+ *
+ * 응답 규약: 배치 POST가 2xx이면 백엔드가 배치를 받은 것이다. 본문이 비었거나 results가 없으면 모든 항목을 성공으로 보고,
+ * results에 빠진 항목이나 해석할 수 없는 본문은 프로토콜 오류로 기록만 하고 성공으로 처리한다(중복 전송 방지).
+ * 항목을 재시도/포기시키는 것은 results에 명시된 항목별 status뿐이다.
+ * linger 타이머만 공유 스케줄러에서 돌고, 배치 POST는 전용 스레드에서 보낸다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CallbackBatchSender implements StatsProvider {
+
+    public static final String DIARY_CHANNEL = "diary";
+    public static final String DIGEST_CHANNEL = "digest";
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${callback.batch.enabled:false}")
+    private boolean enabled;
+
+    @Value("${callback.batch.max-size:20}")
+    private int maxSize;
+
+    @Value("${callback.batch.diary-url:}")
+    private String diaryBatchUrl;
+
+    @Value("${callback.batch.digest-url:}")
+    private String digestBatchUrl;
+
+    @Value("${callback.batch.sender-threads:2}")
+    private int senderThreads;
+
+    private final Map<String, List<PendingItem>> pendingByChannel = new HashMap<>();
+    private ExecutorService sender;
+
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong itemsSent = new AtomicLong();
+    private final AtomicLong itemsFailed = new AtomicLong();
+    private final AtomicLong protocolErrors = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        sender = Executors.newFixedThreadPool(Math.max(1, senderThreads),
+                new CustomizableThreadFactory("callback-batch-"));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flush();
+        sender.shutdown();
+        if (!sender.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Callback batch sender did not finish within 10s; unsent items stay in the outbox");
+        }
+    }
+
+    public boolean accepts(String channel) {
+        String url = batchUrl(channel);
+        return enabled && url != null && !url.isEmpty();
+    }
+
+    public CompletableFuture<Void> submit(String channel, String itemId, String url, String payload) {
+        PendingItem item = new PendingItem(new CallbackBatchRequest.Item(itemId, url, payload));
+        List<PendingItem> batch = null;
+        synchronized (pendingByChannel) {
+            List<PendingItem> pending = pendingByChannel.computeIfAbsent(channel, c -> new ArrayList<>());
+            pending.add(item);
+            if (pending.size() >= maxSize) {
+                batch = new ArrayList<>(pending);
+                pending.clear();
+            }
+        }
+        if (batch != null) {
+            dispatch(channel, batch);
+        }
+        return item.future;
+    }
+
+    @Scheduled(fixedDelayString = "${callback.batch.linger-ms:500}")
+    public void flush() {
+        Map<String, List<PendingItem>> batches = new HashMap<>();
+        synchronized (pendingByChannel) {
+            pendingByChannel.forEach((channel, pending) -> {
+                if (!pending.isEmpty()) {
+                    batches.put(channel, new ArrayList<>(pending));
+                    pending.clear();
+                }
+            });
+        }
+        batches.forEach(this::dispatch);
+    }
+
+    private void dispatch(String channel, List<PendingItem> batch) {
+        try {
+            sender.execute(() -> send(channel, batch));
+        } catch (RejectedExecutionException e) {
+            // 종료 중: 항목은 아웃박스에 남아 재시작 시 다시 전송된다
+            IOException shuttingDown = new IOException("Batch sender is shutting down", e);
+            batch.forEach(pending -> pending.future.completeExceptionally(shuttingDown));
+        }
+    }
+
+    private void send(String channel, List<PendingItem> batch) {
+        String url = batchUrl(channel);
+        List<CallbackBatchRequest.Item> items = new ArrayList<>();
+        batch.forEach(pending -> items.add(pending.item));
+        batchesSent.incrementAndGet();
+        try {
+            String body = objectMapper.writeValueAsString(new CallbackBatchRequest(channel, items));
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            log.info("Sending batch callback of {} item(s) to URL: {} with payload size: {}", batch.size(), url,
+                    body.length());
+            String responseBody = restTemplate.postForEntity(url, new HttpEntity<>(body, headers), String.class)
+                    .getBody();
+
+            Map<String, CallbackBatchResponse.ItemResult> results = parseResults(responseBody, url);
+            long missing = results.isEmpty() ? 0
+                    : batch.stream().filter(pending -> !results.containsKey(pending.item.getItemId())).count();
+            if (missing > 0) {
+                protocolErrors.incrementAndGet();
+                log.warn("Batch callback response from {} has no result for {} of {} item(s); "
+                        + "treating them as delivered", url, missing, batch.size());
+            }
+            for (PendingItem pending : batch) {
+                complete(pending, results.get(pending.item.getItemId()));
+            }
+        } catch (Exception e) {
+            log.error("Error sending batch callback of {} item(s) to URL {}: {}", batch.size(), url,
+                    e.getMessage(), e);
+            itemsFailed.addAndGet(batch.size());
+            // 배치 POST 자체의 실패(400/413 포함)는 항목의 잘못이 아닐 수 있으므로 재시도 가능한 예외로 감싼다.
+            // 항목을 영구 실패로 포기시키는 것은 응답의 항목별 status뿐이다
+            IOException retryable = new IOException("Batch callback of " + batch.size() + " item(s) to " + url
+                    + " failed: " + e.getMessage(), e);
+            batch.forEach(pending -> pending.future.completeExceptionally(retryable));
+        }
+    }
+
+    // 2xx 응답 본문의 항목별 결과. 비었거나 해석할 수 없으면 빈 맵 (모든 항목 성공으로 처리)
+    private Map<String, CallbackBatchResponse.ItemResult> parseResults(String responseBody, String url) {
+        Map<String, CallbackBatchResponse.ItemResult> results = new HashMap<>();
+        if (responseBody == null || responseBody.isBlank()) {
+            return results;
+        }
+        try {
+            CallbackBatchResponse response = objectMapper.readValue(responseBody, CallbackBatchResponse.class);
+            if (response.getResults() != null) {
+                response.getResults().forEach(result -> results.put(result.getItemId(), result));
+            }
+        } catch (IOException e) {
+            protocolErrors.incrementAndGet();
+            log.warn("Unreadable batch callback response from {}; treating all items as delivered: {}", url,
+                    e.getMessage());
+        }
+        return results;
+    }
+
+    // 결과가 없는 항목은 배치 POST의 2xx를 따른다
+    private void complete(PendingItem pending, CallbackBatchResponse.ItemResult result) {
+        int status = result != null ? result.getStatus() : 0;
+        HttpStatusCode statusCode = status >= 100 && status <= 999 ? HttpStatusCode.valueOf(status) : null;
+        if (result == null || statusCode != null && statusCode.is2xxSuccessful()) {
+            itemsSent.incrementAndGet();
+            pending.future.complete(null);
+            return;
+        }
+        itemsFailed.incrementAndGet();
+        if (statusCode != null && statusCode.is4xxClientError()) {
+            pending.future.completeExceptionally(HttpClientErrorException.create(
+                    statusCode, String.valueOf(result.getMessage()), null, null, null));
+        } else {
+            pending.future.completeExceptionally(new IOException(
+                    "Item " + pending.item.getItemId() + " failed with status " + status + ": "
+                            + result.getMessage()));
+        }
+    }
+
+    private String batchUrl(String channel) {
+        if (DIARY_CHANNEL.equals(channel)) {
+            return diaryBatchUrl;
+        } else if (DIGEST_CHANNEL.equals(channel)) {
+            return digestBatchUrl;
+        }
+        return null;
+    }
+
+    @Override
+    public String statsName() {
+        return "callbackBatch";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("batches", batchesSent.get());
+        stats.put("itemsSent", itemsSent.get());
+        stats.put("itemsFailed", itemsFailed.get());
+        stats.put("protocolErrors", protocolErrors.get());
+        return stats;
+    }
+
+    private static class PendingItem {
+        private final CallbackBatchRequest.Item item;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingItem(CallbackBatchRequest.Item item) {
+            this.item = item;
+        }
+    }
+}
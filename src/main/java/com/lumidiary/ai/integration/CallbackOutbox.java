@@ -0,0 +1,349 @@
+package com.lumidiary.ai.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lumidiary.ai.util.StatsProvider;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 콜백 전송용 로컬 아웃박스.
+ * 결과는 append-only 파일에 먼저 기록(fsync)된 뒤 비동기 sender가 전송하므로, 큐 처리 파이프라인은
+ * 백엔드 응답을 기다리지 않고 백엔드가 느리거나 실패해도 Gemini 결과를 다시 계산하지 않는다.
+ * 재시작 시 파일을 재생하여 전송되지 않은 콜백을 다시 보낸다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CallbackOutbox implements StatsProvider {
+
+    private static final String ENQUEUED = "ENQUEUED";
+    // 실패한 시도 수 기록. 재시작 후에도 시도 횟수가 이어지도록 남긴다
+    private static final String RETRY = "RETRY";
+    private static final String DELIVERED = "DELIVERED";
+    private static final String ABANDONED = "ABANDONED";
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final CallbackBatchSender batchSender;
+
+    @Value("${callback.outbox.path:./data/callback-outbox.log}")
+    private String outboxPath;
+
+    @Value("${callback.outbox.sender-threads:4}")
+    private int senderThreads;
+
+    @Value("${callback.outbox.initial-backoff-ms:1000}")
+    private long initialBackoffMs;
+
+    @Value("${callback.outbox.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    @Value("${callback.outbox.max-attempts:12}")
+    private int maxAttempts;
+
+    // 완료 기록이 이만큼 쌓이면 파일을 미전송 항목만 남기도록 다시 쓴다
+    @Value("${callback.outbox.compact-threshold:1000}")
+    private int compactThreshold;
+
+    private final Map<String, OutboxRecord> pending = new ConcurrentHashMap<>();
+    private final Object fileLock = new Object();
+    private FileChannel channel;
+    private long completedSinceCompaction;
+
+    private ExecutorService senderExecutor;
+    private ScheduledExecutorService retryScheduler;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+
+    @PostConstruct
+    public void start() throws IOException {
+        senderExecutor = new ThreadPoolExecutor(senderThreads, senderThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("callback-sender-"));
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("callback-retry-"));
+
+        Path path = Paths.get(outboxPath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        replay(path);
+        abandonExhaustedReplays();
+        synchronized (fileLock) {
+            rewrite(path);
+        }
+        for (OutboxRecord record : pending.values()) {
+            replayed.incrementAndGet();
+            senderExecutor.execute(() -> send(record));
+        }
+        log.info("Callback outbox ready at {} ({} pending callback(s) replayed)", path.toAbsolutePath(),
+                pending.size());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        retryScheduler.shutdownNow();
+        senderExecutor.shutdown();
+        senderExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        synchronized (fileLock) {
+            channel.close();
+        }
+    }
+
+    /**
+     * 콜백을 디스크에 기록한 뒤 전송을 예약한다. 반환 시점에 결과는 재시작 후에도 보존된다.
+     * channel은 배치 전송 모드에서 결과를 묶는 단위이다.
+     */
+    public void enqueue(String channel, String callbackUrl, Object payload) throws IOException {
+        String json = objectMapper.writeValueAsString(payload);
+        OutboxRecord record = new OutboxRecord(UUID.randomUUID().toString(), ENQUEUED, channel, callbackUrl, json, 0);
+        // 압축(rewrite)이 끼어들어도 누락되지 않도록 pending에 먼저 등록
+        pending.put(record.getId(), record);
+        try {
+            append(record);
+        } catch (IOException e) {
+            pending.remove(record.getId());
+            throw e;
+        }
+        enqueued.incrementAndGet();
+        log.info("Queued callback {} to URL: {} with payload size: {}", record.getId(), callbackUrl, json.length());
+        senderExecutor.execute(() -> send(record));
+    }
+
+    private void send(OutboxRecord record) {
+        if (batchSender.accepts(record.getChannel())) {
+            batchSender.submit(record.getChannel(), record.getId(), record.getUrl(), record.getPayload())
+                    .whenComplete((ignored, error) -> {
+                        if (error == null) {
+                            onDelivered(record);
+                        } else {
+                            onFailure(record, error);
+                        }
+                    });
+            return;
+        }
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            restTemplate.postForEntity(record.getUrl(), new HttpEntity<>(record.getPayload(), headers), String.class);
+            onDelivered(record);
+        } catch (Exception e) {
+            onFailure(record, e);
+        }
+    }
+
+    private void onDelivered(OutboxRecord record) {
+        delivered.incrementAndGet();
+        complete(record, DELIVERED);
+        log.info("Successfully sent callback {} to URL: {}", record.getId(), record.getUrl());
+    }
+
+    private void onFailure(OutboxRecord record, Throwable e) {
+        int attempt = record.getAttempts() + 1;
+        record.setAttempts(attempt);
+        if (isPermanentFailure(e) || attempt >= maxAttempts) {
+            abandoned.incrementAndGet();
+            complete(record, ABANDONED);
+            log.error("Giving up callback {} to URL {} after {} attempt(s): {}", record.getId(), record.getUrl(),
+                    attempt, e.getMessage(), e);
+            return;
+        }
+        long delay = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        retries.incrementAndGet();
+        try {
+            append(new OutboxRecord(record.getId(), RETRY, null, null, null, attempt));
+        } catch (IOException writeError) {
+            // 기록하지 못하면 재시작 후 시도 횟수가 조금 적게 세어질 뿐이다
+            log.warn("Could not record retry of callback {}: {}", record.getId(), writeError.getMessage());
+        }
+        log.warn("Error sending callback {} to URL {} (attempt {}), retrying in {} ms: {}", record.getId(),
+                record.getUrl(), attempt, delay, e.getMessage());
+        try {
+            retryScheduler.schedule(() -> senderExecutor.execute(() -> send(record)), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException shuttingDown) {
+            // 종료 중이면 파일에 남아 있는 기록이 재시작 시 재생된다
+            log.info("Callback {} left in outbox for replay on restart.", record.getId());
+        }
+    }
+
+    // 408, 429를 제외한 4xx는 재시도해도 결과가 같으므로 포기한다
+    private boolean isPermanentFailure(Throwable e) {
+        if (e instanceof HttpClientErrorException clientError) {
+            HttpStatus status = HttpStatus.resolve(clientError.getStatusCode().value());
+            return status != HttpStatus.REQUEST_TIMEOUT && status != HttpStatus.TOO_MANY_REQUESTS;
+        }
+        return false;
+    }
+
+    private void complete(OutboxRecord record, String state) {
+        pending.remove(record.getId());
+        try {
+            append(new OutboxRecord(record.getId(), state, null, null, null, record.getAttempts()));
+            synchronized (fileLock) {
+                completedSinceCompaction++;
+            }
+        } catch (IOException e) {
+            // 완료 기록이 없으면 재시작 시 한 번 더 전송될 뿐이다
+            log.warn("Could not record completion of callback {}: {}", record.getId(), e.getMessage());
+        }
+    }
+
+    private void append(OutboxRecord record) throws IOException {
+        byte[] line = (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (fileLock) {
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    private void replay(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    OutboxRecord record = objectMapper.readValue(line, OutboxRecord.class);
+                    if (ENQUEUED.equals(record.getState())) {
+                        pending.put(record.getId(), record);
+                    } else if (RETRY.equals(record.getState())) {
+                        OutboxRecord enqueuedRecord = pending.get(record.getId());
+                        if (enqueuedRecord != null) {
+                            enqueuedRecord.setAttempts(Math.max(enqueuedRecord.getAttempts(), record.getAttempts()));
+                        }
+                    } else {
+                        pending.remove(record.getId());
+                    }
+                } catch (IOException e) {
+                    // 기록 도중 종료되어 잘린 마지막 줄
+                    log.warn("Skipping unreadable callback outbox line: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // 종료 직전에 전송 중이었을 수 있으므로 재생도 한 번의 시도로 센다.
+    // 전송 중 프로세스가 죽는 일이 반복되어도(크래시 루프) 최대 시도 횟수에서 멈춘다
+    private void abandonExhaustedReplays() {
+        pending.values().removeIf(record -> {
+            record.setAttempts(record.getAttempts() + 1);
+            if (record.getAttempts() < maxAttempts) {
+                return false;
+            }
+            abandoned.incrementAndGet();
+            log.error("Giving up callback {} to URL {} after {} attempt(s) across restarts", record.getId(),
+                    record.getUrl(), record.getAttempts());
+            return true;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${callback.outbox.compact-interval-ms:60000}")
+    public void compact() {
+        synchronized (fileLock) {
+            if (completedSinceCompaction < compactThreshold) {
+                return;
+            }
+            try {
+                rewrite(Paths.get(outboxPath));
+            } catch (IOException e) {
+                log.error("Error compacting callback outbox {}: {}", outboxPath, e.getMessage(), e);
+            }
+        }
+    }
+
+    // fileLock을 잡은 상태에서 호출: 미전송 항목만 담은 새 파일로 교체하고 append 채널을 다시 연다
+    private void rewrite(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (OutboxRecord record : pending.values()) {
+                out.write(ByteBuffer.wrap((objectMapper.writeValueAsString(record) + "\n")
+                        .getBytes(StandardCharsets.UTF_8)));
+            }
+            out.force(true);
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        completedSinceCompaction = 0;
+    }
+
+    @Override
+    public String statsName() {
+        return "callbackOutbox";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pending.size());
+        stats.put("enqueued", enqueued.get());
+        stats.put("delivered", delivered.get());
+        stats.put("retries", retries.get());
+        stats.put("abandoned", abandoned.get());
+        stats.put("replayed", replayed.get());
+        return stats;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class OutboxRecord {
+        private String id;
+        private String state;
+        private String channel;
+        private String url;
+        private String payload;
+        private int attempts;
+    }
+}
@@ -4,17 +4,25 @@ import com.lumidiary.ai.dto.GeminiPromptRequest;
 import com.lumidiary.ai.dto.GeminiResponse;
 import com.lumidiary.ai.dto.VisionRequest;
 import com.lumidiary.ai.dto.Metadata;
+import com.lumidiary.ai.dto.VisionPayloadPlan;
+import com.lumidiary.ai.util.GeminiResponseDecoder;
 import com.lumidiary.ai.util.PromptBuilder;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import okio.BufferedSource;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.function.Consumer;
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class GeminiApiClient {
@@ -22,67 +30,125 @@ public class GeminiApiClient {
     @Value("${gemini.api-key}")
     private String apiKey;
 
+    // 모델 엔드포인트. 로컬 가짜 서버로 바꿔 테스트할 수 있도록 설정으로 분리
+    @Value("${gemini.model-url:https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash-001}")
+    private String modelUrl;
+
+    private final OkHttpClient okHttpClient;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
+    // compressedImageMap: 이미지 ID → 이미 압축된 이미지 바이트, mimeType: 압축 포맷
+    // plan: 프롬프트에 넣을 랜드마크/위치 문구 (null이면 메타데이터 전체 사용)
     public GeminiResponse requestToGemini(VisionRequest input,
                                           Map<String, Metadata> metadataMap,
-                                          Map<String, byte[]> imageBytesMap) throws IOException {
-        GeminiPromptRequest promptRequest = PromptBuilder.buidVisionPrompt(input, metadataMap, imageBytesMap);
-        String json = objectMapper.writeValueAsString(promptRequest);
+                                          Map<String, ByteBuffer> compressedImageMap,
+                                          String mimeType,
+                                          VisionPayloadPlan plan) throws IOException {
+        GeminiPromptRequest promptRequest = PromptBuilder.buidVisionPrompt(input, metadataMap, compressedImageMap, mimeType, plan);
 
-        // 요청 본문 출력
-        System.out.println("🎯 Gemini 요청 JSON = \n" + json);
+        // 이미지가 포함된 요청은 문자열로 만들지 않고 소켓으로 바로 스트리밍
+        log.debug("Gemini 요청: 이미지 {}장", compressedImageMap.size());
 
-        OkHttpClient client = new OkHttpClient();
-        RequestBody body = RequestBody.create(json, MediaType.get("application/json; charset=utf-8"));
+        RequestBody body = new JsonRequestBody(objectMapper.writer(), promptRequest);
         Request request = new Request.Builder()
-                .url(GEMINI_URL + apiKey)
+                .url(modelUrl + ":generateContent?key=" + apiKey)
                 .post(body)
                 .build();
 
-        try (Response response = client.newCall(request).execute()) {
+        try (Response response = okHttpClient.newCall(request).execute()) {
             if (!response.isSuccessful()) {
                 String errorBody = response.body() != null ? response.body().string() : "";
                 throw new IOException("Gemini API 호출 실패: " + response + " Error: " + errorBody);
             }
-            String result = response.body().string();
-            JsonNode root = objectMapper.readTree(result);
-            String rawText = root
-                    .path("candidates").get(0)
-                    .path("content")
-                    .path("parts").get(0)
-                    .path("text").asText();
-
-            System.out.println("🎯 Gemini 응답 텍스트 = \n" + rawText);
-            String cleaned = rawText
-                    .replaceAll("(?s)```json\\s*", "")
-                    .replaceAll("```", "").trim();
-            return objectMapper.readValue(cleaned, GeminiResponse.class);
+            // 응답 봉투를 문자열/트리로 만들지 않고 스트림에서 바로 텍스트 파트를 꺼냄
+            String rawText = GeminiResponseDecoder.extractText(response.body().byteStream(), objectMapper);
+            log.debug("Gemini 응답 텍스트: {}", rawText);
+            return GeminiResponseDecoder.bind(rawText, objectMapper, GeminiResponse.class);
         }
     }
 
-    public String sendPromptRaw(GeminiPromptRequest request) throws IOException {
-        String json = objectMapper.writeValueAsString(request);
-
-        // 요청 본문 출력
-        System.out.println("🎯 Gemini 요청 JSON = \n" + json);
+    // 응답 텍스트(JSON)를 type으로 바인딩하여 반환
+    public <T> T sendPrompt(GeminiPromptRequest request, Class<T> type) throws IOException {
+        // 프롬프트 요청도 문자열로 만들지 않고 소켓으로 바로 스트리밍
+        log.debug("Gemini 프롬프트 요청: 응답 타입 {}", type.getSimpleName());
 
-        OkHttpClient client = new OkHttpClient();
-        RequestBody body = RequestBody.create(json, MediaType.get("application/json; charset=utf-8"));
+        RequestBody body = new JsonRequestBody(objectMapper.writer(), request);
         Request httpRequest = new Request.Builder()
-                .url(GEMINI_URL + apiKey)
+                .url(modelUrl + ":generateContent?key=" + apiKey)
                 .post(body)
                 .build();
 
-        try (Response response = client.newCall(httpRequest).execute()) {
+        try (Response response = okHttpClient.newCall(httpRequest).execute()) {
+            if (!response.isSuccessful()) {
+                String errorBody = response.body() != null ? response.body().string() : "";
+                throw new IOException("Gemini API 호출 실패: " + response + " Error: " + errorBody);
+            }
+            String rawText = GeminiResponseDecoder.extractText(response.body().byteStream(), objectMapper);
+            log.debug("원본 Gemini 응답: {}", rawText);
+            return GeminiResponseDecoder.bind(rawText, objectMapper, type);
+        }
+    }
+
+    // streamGenerateContent 버전. 텍스트 조각이 도착할 때마다 onText를 호출하고, 이어 붙인 전체 텍스트를 바인딩
+    public GeminiResponse streamVision(VisionRequest input,
+                                       Map<String, Metadata> metadataMap,
+                                       Map<String, ByteBuffer> compressedImageMap,
+                                       String mimeType,
+                                       VisionPayloadPlan plan,
+                                       Consumer<String> onText) throws IOException {
+        GeminiPromptRequest promptRequest = PromptBuilder.buidVisionPrompt(input, metadataMap, compressedImageMap, mimeType, plan);
+        log.debug("Gemini 스트리밍 요청: 이미지 {}장", compressedImageMap.size());
+        String text = streamText(promptRequest, onText);
+        return GeminiResponseDecoder.bind(text, objectMapper, GeminiResponse.class);
+    }
+
+    public <T> T streamPrompt(GeminiPromptRequest request, Class<T> type, Consumer<String> onText) throws IOException {
+        String text = streamText(request, onText);
+        return GeminiResponseDecoder.bind(text, objectMapper, type);
+    }
+
+    // alt=sse 응답의 각 data 이벤트는 generateContent와 같은 봉투이며, 텍스트 파트에 이번 조각만 담겨 있다
+    private String streamText(GeminiPromptRequest promptRequest, Consumer<String> onText) throws IOException {
+        Request request = new Request.Builder()
+                .url(modelUrl + ":streamGenerateContent?alt=sse&key=" + apiKey)
+                .post(new JsonRequestBody(objectMapper.writer(), promptRequest))
+                .build();
+
+        try (Response response = okHttpClient.newCall(request).execute()) {
             if (!response.isSuccessful()) {
                 String errorBody = response.body() != null ? response.body().string() : "";
                 throw new IOException("Gemini API 호출 실패: " + response + " Error: " + errorBody);
             }
-            return response.body().string();
+            StringBuilder fullText = new StringBuilder();
+            StringBuilder data = new StringBuilder();
+            BufferedSource source = response.body().source();
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                if (line.isEmpty()) {
+                    dispatchEvent(data, fullText, onText);
+                } else if (line.startsWith("data:")) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+                }
+            }
+            dispatchEvent(data, fullText, onText);
+            log.debug("Gemini 스트리밍 응답 텍스트 ({}자) = \n{}", fullText.length(), fullText);
+            return fullText.toString();
         }
     }
 
-    private static final String GEMINI_URL =
-            "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash-001:generateContent?key=";
+    private void dispatchEvent(StringBuilder data, StringBuilder fullText, Consumer<String> onText) throws IOException {
+        if (data.length() == 0) {
+            return;
+        }
+        String text = GeminiResponseDecoder.findText(
+                new ByteArrayInputStream(data.toString().getBytes(StandardCharsets.UTF_8)), objectMapper);
+        data.setLength(0);
+        if (text != null && !text.isEmpty()) {
+            fullText.append(text);
+            onText.accept(text);
+        }
+    }
 }
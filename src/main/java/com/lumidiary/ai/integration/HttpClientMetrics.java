@@ -0,0 +1,112 @@
+package com.lumidiary.ai.integration;
+
+import com.lumidiary.ai.util.StatsProvider;
+import lombok.RequiredArgsConstructor;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 공유 HTTP 전송 계층의 지표.
+ * OkHttp(Gemini) 쪽은 EventListener로 연결 생성/재사용을, RestTemplate(Maps, 콜백) 쪽은 인터셉터로 호출 수를 센다.
+ */
+@Component
+@RequiredArgsConstructor
+public class HttpClientMetrics extends EventListener implements ClientHttpRequestInterceptor, StatsProvider {
+
+    private final ConnectionPool connectionPool;
+
+    private final AtomicLong callsStarted = new AtomicLong();
+    private final AtomicLong callsFailed = new AtomicLong();
+    private final AtomicLong connectionsAcquired = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong http2Connections = new AtomicLong();
+    private final AtomicLong tlsHandshakes = new AtomicLong();
+
+    private final AtomicLong restRequests = new AtomicLong();
+    private final AtomicLong restFailures = new AtomicLong();
+    private final AtomicLong restTotalMillis = new AtomicLong();
+
+    @Override
+    public void callStart(Call call) {
+        callsStarted.incrementAndGet();
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        callsFailed.incrementAndGet();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        tlsHandshakes.incrementAndGet();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        connectionsCreated.incrementAndGet();
+        if (protocol == Protocol.HTTP_2) {
+            http2Connections.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        connectionsAcquired.incrementAndGet();
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        restRequests.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            return execution.execute(request, body);
+        } catch (IOException e) {
+            restFailures.incrementAndGet();
+            throw e;
+        } finally {
+            restTotalMillis.addAndGet((System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "http";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long acquired = connectionsAcquired.get();
+        long created = connectionsCreated.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("okhttp.calls", callsStarted.get());
+        stats.put("okhttp.callsFailed", callsFailed.get());
+        stats.put("okhttp.connectionsAcquired", acquired);
+        stats.put("okhttp.connectionsCreated", created);
+        stats.put("okhttp.connectionsReused", Math.max(0, acquired - created));
+        stats.put("okhttp.http2Connections", http2Connections.get());
+        stats.put("okhttp.tlsHandshakes", tlsHandshakes.get());
+        stats.put("okhttp.pool.connections", connectionPool.connectionCount());
+        stats.put("okhttp.pool.idle", connectionPool.idleConnectionCount());
+        long requests = restRequests.get();
+        stats.put("rest.requests", requests);
+        stats.put("rest.failures", restFailures.get());
+        stats.put("rest.avgMillis", requests == 0 ? 0 : restTotalMillis.get() / requests);
+        return stats;
+    }
+}
@@ -0,0 +1,145 @@
+package com.lumidiary.ai.integration;
+
+import com.lumidiary.ai.util.JpegHeaderScanner;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+
+/**
+ * 이미지를 스트리밍으로 내려받는다. 크기 제한을 넘으면 즉시 중단하고,
+ * JPEG 헤더(EXIF/GPS)가 다 도착한 시점에 본문 수신과 별개로 리스너에 알린다.
+ */
+@Component
+@RequiredArgsConstructor
+public class ImageFetcher {
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int READ_CHUNK = 16 * 1024;
+    private static final String ETAG_PREFIX = "etag:";
+    private static final String LAST_MODIFIED_PREFIX = "last-modified:";
+
+    private final RestTemplate restTemplate;
+
+    @Value("${vision.download.max-bytes:20971520}")
+    private long maxBytes;
+
+    // 이 크기 안에서 SOS 마커를 찾지 못하면 헤더 선행 파싱을 포기
+    @Value("${vision.download.max-header-bytes:262144}")
+    private int maxHeaderBytes;
+
+    public interface Listener {
+
+        // 버퍼가 실제로 차지하는 크기가 바뀔 때 (메모리 예산 반영용)
+        default void onBufferAllocated(long bytes) {
+        }
+
+        // JPEG 헤더가 모두 도착했을 때. buffer[0, length)는 이후에도 변경되지 않는다
+        default void onHeader(byte[] buffer, int length) {
+        }
+    }
+
+    // validator: 재검증에 쓸 ETag 또는 Last-Modified (서버가 주지 않았으면 null)
+    public record DownloadedImage(byte[] buffer, int length, String validator) {
+
+        // 복사 없이 받은 바이트를 그대로 읽는 스트림
+        public InputStream openStream() {
+            return new ByteArrayInputStream(buffer, 0, length);
+        }
+    }
+
+    public DownloadedImage fetch(String url, Listener listener) {
+        return fetchIfModified(url, null, listener);
+    }
+
+    /**
+     * validator(이전 응답의 ETag 또는 Last-Modified)가 있으면 조건부 GET으로 요청한다.
+     * 304 Not Modified이면 본문 없이 null을 반환한다.
+     */
+    public DownloadedImage fetchIfModified(String url, String validator, Listener listener) {
+        return restTemplate.execute(url, HttpMethod.GET, request -> {
+            if (validator != null && validator.startsWith(ETAG_PREFIX)) {
+                request.getHeaders().setIfNoneMatch(validator.substring(ETAG_PREFIX.length()));
+            } else if (validator != null && validator.startsWith(LAST_MODIFIED_PREFIX)) {
+                request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, validator.substring(LAST_MODIFIED_PREFIX.length()));
+            }
+        }, response -> {
+            if (response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                return null;
+            }
+            long contentLength = response.getHeaders().getContentLength();
+            if (contentLength > maxBytes) {
+                throw new IOException("이미지 크기 제한 초과: " + contentLength + " > " + maxBytes);
+            }
+            try (InputStream body = response.getBody()) {
+                return read(body, contentLength, validator(response.getHeaders()), listener);
+            }
+        });
+    }
+
+    // 강한 검증자인 ETag를 우선 사용
+    private static String validator(HttpHeaders headers) {
+        String etag = headers.getETag();
+        if (etag != null && !etag.isEmpty()) {
+            return ETAG_PREFIX + etag;
+        }
+        String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+        return lastModified != null ? LAST_MODIFIED_PREFIX + lastModified : null;
+    }
+
+    private DownloadedImage read(InputStream body, long contentLength, String validator,
+                                 Listener listener) throws IOException {
+        // Content-Length를 알면 한 번에 정확히 할당하여 확장 복사를 피한다
+        byte[] buffer = new byte[contentLength > 0 ? (int) contentLength : INITIAL_CAPACITY];
+        listener.onBufferAllocated(buffer.length);
+        JpegHeaderScanner scanner = new JpegHeaderScanner();
+        boolean headerDone = false;
+        int length = 0;
+
+        while (true) {
+            // 요청의 다른 이미지가 실패해 작업이 취소되면 남은 본문을 받지 않는다
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("이미지 다운로드 취소");
+            }
+            if (length == buffer.length) {
+                // 버퍼가 찼을 때만 한 바이트를 미리 읽어 끝인지 확인 (Content-Length와 정확히 맞으면 확장하지 않음)
+                int next = body.read();
+                if (next < 0) {
+                    break;
+                }
+                if (length >= maxBytes) {
+                    throw new IOException("이미지 크기 제한 초과: > " + maxBytes);
+                }
+                buffer = Arrays.copyOf(buffer, (int) Math.min(maxBytes, (long) buffer.length * 2));
+                listener.onBufferAllocated(buffer.length);
+                buffer[length++] = (byte) next;
+                continue;
+            }
+            int read = body.read(buffer, length, Math.min(READ_CHUNK, buffer.length - length));
+            if (read < 0) {
+                break;
+            }
+            length += read;
+
+            if (!headerDone) {
+                int headerLength = scanner.scan(buffer, length);
+                if (headerLength > 0) {
+                    headerDone = true;
+                    listener.onHeader(buffer, headerLength);
+                } else if (headerLength == JpegHeaderScanner.NOT_JPEG || length > maxHeaderBytes) {
+                    headerDone = true;
+                }
+            }
+        }
+        return new DownloadedImage(buffer, length, validator);
+    }
+}
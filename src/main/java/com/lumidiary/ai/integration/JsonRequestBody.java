@@ -0,0 +1,47 @@
+package com.lumidiary.ai.integration;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+
+/**
+ * 요청 객체를 문자열로 만들지 않고 Jackson 제너레이터로 소켓 싱크에 바로 직렬화하는 RequestBody.
+ * 이미지(ByteBuffer)는 Jackson의 ByteBufferSerializer가 base64로 쓴다. 힙 버퍼는 내부 배열을
+ * writeBinary(array, offset, len)로 바로 쓰고, 디스크 캐시의 매핑 버퍼처럼 배열이 없으면
+ * asReadOnlyBuffer()를 ByteBufferBackedInputStream으로 감싸 writeBinary(InputStream, len)로 흘려 보내므로
+ * 어느 경우에도 이미지 전체가 힙에 복사되거나 문자열로 만들어지지 않는다.
+ * 재시도 시 writeTo가 다시 호출되어도 같은 내용을 다시 쓸 수 있다.
+ */
+public class JsonRequestBody extends RequestBody {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private final ObjectWriter writer;
+    private final Object value;
+
+    public JsonRequestBody(ObjectWriter writer, Object value) {
+        // 싱크는 OkHttp가 닫으므로 직렬화가 끝나도 닫지 않는다
+        this.writer = writer.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.value = value;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public long contentLength() {
+        // 미리 알 수 없으므로 청크/HTTP2 프레임 단위로 전송
+        return -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        writer.writeValue(sink.outputStream(), value);
+    }
+}
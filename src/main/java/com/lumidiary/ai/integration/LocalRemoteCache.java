@@ -0,0 +1,28 @@
+package com.lumidiary.ai.integration;
+
+/**
+ * 단일 인스턴스 실행과 테스트용 공유 계층. 같은 프로세스의 SharedCacheStore를 그대로 사용한다.
+ */
+public class LocalRemoteCache implements RemoteCache {
+
+    private final SharedCacheStore store;
+
+    public LocalRemoteCache(SharedCacheStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return store.get(key);
+    }
+
+    @Override
+    public void put(String key, byte[] value, long ttlMs) {
+        store.put(key, value, ttlMs);
+    }
+
+    @Override
+    public String mode() {
+        return "local";
+    }
+}
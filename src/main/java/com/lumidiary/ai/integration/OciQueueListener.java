@@ -6,35 +6,58 @@ import com.lumidiary.ai.dto.DigestResponse;
 import com.lumidiary.ai.dto.GeminiResponse;
 import com.lumidiary.ai.dto.VisionRequest;
 import com.lumidiary.ai.service.DigestService;
+import com.lumidiary.ai.service.TwoLevelCache;
+import com.lumidiary.ai.service.TwoLevelCacheFactory;
 import com.lumidiary.ai.service.VisionService;
+import com.lumidiary.ai.util.StatsProvider;
 import com.oracle.bmc.queue.QueueClient;
 import com.oracle.bmc.queue.model.GetMessage;
 import com.oracle.bmc.queue.model.MessageMetadata;
-import com.oracle.bmc.queue.requests.DeleteMessageRequest;
 import com.oracle.bmc.queue.requests.GetMessagesRequest;
 import com.oracle.bmc.queue.responses.GetMessagesResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * OCI Queue 소비자.
+ * 메시지는 fetch → decode → work(vision/digest) → callback → delete 단계로 흘러가며,
+ * decode/work/callback 단계는 별도의 제한된 스레드 풀을, delete는 QueueMessageDeleter의 배치 스레드를 사용한다. 처리 중인 메시지 수가 max-in-flight에 도달하면 폴링을 멈춘다.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class OciQueueListener {
+public class OciQueueListener implements StatsProvider {
+
+    private static final int MAX_MESSAGES_PER_FETCH = 10;
 
     private final QueueClient queueClient;
     private final VisionService visionService;
     private final DigestService digestService;
     private final ObjectMapper objectMapper;
-    private final RestTemplate restTemplate;
+    private final CallbackOutbox callbackOutbox;
+    private final QueueLeaseRenewer leaseRenewer;
+    private final QueueMessageDeleter messageDeleter;
+    private final TwoLevelCacheFactory cacheFactory;
 
     @Value("${oci.queue.ocid}")
     private String queueOcid;
@@ -51,94 +74,270 @@ public class OciQueueListener {
     @Value("${oci.queue.digest.callback-url}")
     private String digestCallbackUrl;
 
+    @Value("${oci.queue.visibility-seconds:60}")
+    private int visibilitySeconds;
+
+    @Value("${oci.queue.pipeline.max-in-flight:20}")
+    private int maxInFlight;
+
+    @Value("${oci.queue.pipeline.decode-threads:2}")
+    private int decodeThreads;
+
+    // 0 이면 CPU 코어 수를 사용
+    @Value("${oci.queue.pipeline.work-threads:0}")
+    private int workThreads;
+
+    @Value("${oci.queue.pipeline.callback-threads:4}")
+    private int callbackThreads;
+
+    // 결과를 아웃박스에 기록한 메시지 ID를 기억하여, 삭제 전에 재전송되면 다시 처리하지 않고 삭제만 한다
+    // 공유 캐시 계층에 기록하므로 다른 레플리카가 다시 받은 경우에도 걸러진다
+    @Value("${oci.queue.dedupe.max-size:10000}")
+    private int dedupeMaxSize;
+
+    @Value("${oci.queue.dedupe.ttl-ms:86400000}")
+    private long dedupeTtlMs;
+
+    private TwoLevelCache<Boolean> deliveredMessages;
+    // 처리 중에 가시성 시간이 지나 같은 메시지가 다시 온 경우 두 번째 것은 건너뛴다 (처리가 끝나면 위 캐시로 정리됨)
+    private final Set<String> processingMessages = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong pollsSkipped = new AtomicLong();
+    private final AtomicLong redeliveriesAcknowledged = new AtomicLong();
+    private final AtomicLong redeliveriesSkipped = new AtomicLong();
+
+    private ExecutorService decodeExecutor;
+    private ExecutorService workExecutor;
+    private ExecutorService callbackExecutor;
+
+    @PostConstruct
+    public void startPipeline() {
+        int effectiveWorkThreads = workThreads > 0 ? workThreads : Runtime.getRuntime().availableProcessors();
+        decodeExecutor = newStagePool("queue-decode-", decodeThreads);
+        workExecutor = newStagePool("queue-work-", effectiveWorkThreads);
+        callbackExecutor = newStagePool("queue-callback-", callbackThreads);
+        deliveredMessages = cacheFactory.create("queue-delivered", dedupeMaxSize, dedupeTtlMs, Boolean.class);
+        log.info("Queue pipeline started (max in-flight: {}, decode: {}, work: {}, callback: {})",
+                maxInFlight, decodeThreads, effectiveWorkThreads, callbackThreads);
+    }
+
+    // 처리 중인 메시지 수가 maxInFlight로 제한되므로 큐 용량을 넘는 일은 없다
+    private ExecutorService newStagePool(String namePrefix, int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxInFlight)), new CustomizableThreadFactory(namePrefix));
+    }
+
+    @PreDestroy
+    public void stopPipeline() throws InterruptedException {
+        for (ExecutorService executor : List.of(decodeExecutor, workExecutor, callbackExecutor)) {
+            executor.shutdown();
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
     @Scheduled(fixedDelayString = "${oci.queue.polling.delay:5000}", initialDelayString = "${oci.queue.polling.initial-delay:1000}")
     public void pollQueue() {
         log.debug("Polling Queue: {}", queueOcid);
         try {
-            GetMessagesRequest getMessagesRequest = GetMessagesRequest.builder()
-                    .queueId(queueOcid)
-                    .visibilityInSeconds(60)
-                    .limit(10)
-                    .timeoutInSeconds(20)
-                    .build();
-
-            GetMessagesResponse response = queueClient.getMessages(getMessagesRequest);
-            List<GetMessage> messages = response.getGetMessages().getMessages();
-
-            for (GetMessage message : messages) {
-                String channelId = null;
-                MessageMetadata metadata = message.getMetadata();
-                if (metadata != null) {
-                    channelId = metadata.getChannelId();
+            // 가득 찬 배치를 받았고 여유가 남아 있으면 다음 폴링 주기를 기다리지 않고 바로 다시 가져온다
+            int fetched;
+            int limit;
+            do {
+                int capacity = maxInFlight - inFlight.get();
+                if (capacity <= 0) {
+                    pollsSkipped.incrementAndGet();
+                    log.debug("Pipeline saturated ({} in flight), skipping poll.", inFlight.get());
+                    return;
                 }
+                limit = Math.min(MAX_MESSAGES_PER_FETCH, capacity);
+                fetched = fetchAndDispatch(limit);
+            } while (fetched == limit);
+        } catch (Exception e) {
+            log.error("Error polling Queue ({}): {}", queueOcid, e.getMessage(), e);
+        }
+    }
 
-                String messageContent = message.getContent();
-                String receipt = message.getReceipt();
-                String messageId = String.valueOf(message.getId());
+    private int fetchAndDispatch(int limit) {
+        GetMessagesRequest getMessagesRequest = GetMessagesRequest.builder()
+                .queueId(queueOcid)
+                .visibilityInSeconds(visibilitySeconds)
+                .limit(limit)
+                .timeoutInSeconds(20)
+                .build();
 
-                log.info("Received message from Queue (ID: {}), Receipt: {}, Determined Channel ID: {}", messageId,
-                        receipt, channelId);
+        GetMessagesResponse response = queueClient.getMessages(getMessagesRequest);
+        List<GetMessage> messages = response.getGetMessages().getMessages();
 
-                if (channelId == null) {
-                    log.warn(
-                            "Channel ID could not be determined for message ID: {}. Ensure OciQueueTestController sets it correctly. Skipping message.",
-                            messageId);
-                    continue;
-                }
+        for (GetMessage message : messages) {
+            received.incrementAndGet();
+            dispatch(message);
+        }
+        return messages.size();
+    }
 
-                try {
-                    if (diaryChannelIdentifier.equalsIgnoreCase(channelId)) {
-                        log.info("Message (ID: {}) identified for DIARY channel.", messageId);
-                        VisionRequest visionRequest = objectMapper.readValue(messageContent, VisionRequest.class);
-                        GeminiResponse visionResponse = visionService.analyze(visionRequest);
-                        String visionCallbackUrl = diaryCallbackUrl + visionRequest.getId();
-                        sendCallback(visionCallbackUrl, visionResponse);
-                        log.info("Successfully processed DIARY message ID: {}, sent to callback URL: {}", messageId, visionCallbackUrl);
-                    } else if (digestChannelIdentifier.equalsIgnoreCase(channelId)) {
-                        log.info("Message (ID: {}) identified for DIGEST channel.", messageId);
-                        DigestRequest digestRequest = objectMapper.readValue(messageContent, DigestRequest.class);
-                        DigestResponse digestResponse = digestService.createDigest(digestRequest);
-                        sendCallback(digestCallbackUrl, digestResponse);
-                        log.info("Successfully processed DIGEST message ID: {}", messageId);
-                    } else {
-                        log.warn("Unknown Channel ID '{}' for message ID: {}. Skipping message.", channelId, messageId);
-                    }
-                    deleteMessage(queueOcid, receipt);
-                } catch (Exception e) {
-                    log.error("Error processing message ID: {} (Channel ID: {}): {}", messageId, channelId,
-                            e.getMessage(), e);
-                }
-            }
-        } catch (Exception e) {
-            log.error("Error polling Queue ({}): {}", queueOcid, e.getMessage(), e);
+    private void dispatch(GetMessage message) {
+        String channelId = null;
+        MessageMetadata metadata = message.getMetadata();
+        if (metadata != null) {
+            channelId = metadata.getChannelId();
+        }
+
+        PipelineMessage task = new PipelineMessage(String.valueOf(message.getId()), message.getReceipt(),
+                channelId, message.getContent());
+
+        log.info("Received message from Queue (ID: {}), Receipt: {}, Determined Channel ID: {}", task.messageId,
+                task.receipt, channelId);
+
+        if (channelId == null) {
+            log.warn(
+                    "Channel ID could not be determined for message ID: {}. Ensure OciQueueTestController sets it correctly. Skipping message.",
+                    task.messageId);
+            return;
+        }
+
+        if (deliveredMessages.getIfPresent(task.messageId) != null) {
+            redeliveriesAcknowledged.incrementAndGet();
+            log.info("Message ID: {} was already processed, deleting redelivery without reprocessing.",
+                    task.messageId);
+            inFlight.incrementAndGet();
+            messageDeleter.delete(task.receipt, task.messageId)
+                    .whenComplete((ignored, error) -> inFlight.decrementAndGet());
+            return;
+        }
+        if (!processingMessages.add(task.messageId)) {
+            redeliveriesSkipped.incrementAndGet();
+            log.info("Message ID: {} is still being processed, skipping redelivery.", task.messageId);
+            return;
+        }
+
+        inFlight.incrementAndGet();
+        leaseRenewer.track(task.receipt, task.messageId, visibilitySeconds);
+        try {
+            CompletableFuture.supplyAsync(() -> decode(task), decodeExecutor)
+                    .thenApplyAsync(this::process, workExecutor)
+                    .thenApplyAsync(this::deliver, callbackExecutor)
+                    .thenCompose(this::acknowledge)
+                    .whenComplete((ignored, error) -> {
+                        leaseRenewer.release(task.receipt);
+                        processingMessages.remove(task.messageId);
+                        inFlight.decrementAndGet();
+                        if (error != null) {
+                            failed.incrementAndGet();
+                            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                    ? error.getCause() : error;
+                            log.error("Error processing message ID: {} (Channel ID: {}): {}", task.messageId,
+                                    task.channelId, cause.getMessage(), cause);
+                        } else {
+                            completed.incrementAndGet();
+                        }
+                    });
+        } catch (RuntimeException e) {
+            leaseRenewer.release(task.receipt);
+            processingMessages.remove(task.messageId);
+            inFlight.decrementAndGet();
+            throw e;
         }
     }
 
-    private void sendCallback(String callbackUrl, Object payload) {
+    private PipelineMessage decode(PipelineMessage task) {
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<Object> entity = new HttpEntity<>(payload, headers);
-            log.info("Sending POST callback to URL: {} with payload size: {}", callbackUrl,
-                    objectMapper.writeValueAsString(payload).length());
-            restTemplate.postForEntity(callbackUrl, entity, String.class);
-            log.info("Successfully sent callback to URL: {}", callbackUrl);
+            if (diaryChannelIdentifier.equalsIgnoreCase(task.channelId)) {
+                log.info("Message (ID: {}) identified for DIARY channel.", task.messageId);
+                task.request = objectMapper.readValue(task.content, VisionRequest.class);
+            } else if (digestChannelIdentifier.equalsIgnoreCase(task.channelId)) {
+                log.info("Message (ID: {}) identified for DIGEST channel.", task.messageId);
+                task.request = objectMapper.readValue(task.content, DigestRequest.class);
+            } else {
+                log.warn("Unknown Channel ID '{}' for message ID: {}. Skipping message.", task.channelId,
+                        task.messageId);
+            }
+            return task;
         } catch (Exception e) {
-            log.error("Error sending callback to URL {}: {}", callbackUrl, e.getMessage(), e);
+            throw new CompletionException(e);
         }
     }
 
-    private void deleteMessage(String queueOcid, String messageReceipt) {
+    private PipelineMessage process(PipelineMessage task) {
         try {
-            DeleteMessageRequest deleteMessageRequest = DeleteMessageRequest.builder()
-                    .queueId(queueOcid)
-                    .messageReceipt(messageReceipt)
-                    .build();
-            queueClient.deleteMessage(deleteMessageRequest);
-            log.info("Successfully deleted message with receipt: {} from queue: {}", messageReceipt, queueOcid);
+            if (task.request instanceof VisionRequest visionRequest) {
+                GeminiResponse visionResponse = visionService.analyze(visionRequest);
+                task.result = visionResponse;
+                task.callbackChannel = CallbackBatchSender.DIARY_CHANNEL;
+                task.callbackUrl = diaryCallbackUrl + visionRequest.getId();
+            } else if (task.request instanceof DigestRequest digestRequest) {
+                DigestResponse digestResponse = digestService.createDigest(digestRequest);
+                task.result = digestResponse;
+                task.callbackChannel = CallbackBatchSender.DIGEST_CHANNEL;
+                task.callbackUrl = digestCallbackUrl;
+            }
+            return task;
         } catch (Exception e) {
-            log.error("Error deleting message with receipt {} from queue {}: {}", messageReceipt, queueOcid,
-                    e.getMessage(), e);
+            throw new CompletionException(e);
+        }
+    }
+
+    // 결과를 디스크 아웃박스에 기록하면 전달 단계는 끝난다. 실제 전송은 아웃박스가 비동기로 재시도한다
+    private PipelineMessage deliver(PipelineMessage task) {
+        if (task.result != null) {
+            try {
+                callbackOutbox.enqueue(task.callbackChannel, task.callbackUrl, task.result);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+            log.info("Successfully processed message ID: {}, queued callback to URL: {}", task.messageId,
+                    task.callbackUrl);
+        }
+        deliveredMessages.put(task.messageId, Boolean.TRUE);
+        return task;
+    }
+
+    // 배치 삭제에 receipt를 넘기고, 해당 receipt의 삭제 결과가 나올 때까지 in-flight로 유지
+    private CompletableFuture<Void> acknowledge(PipelineMessage task) {
+        return messageDeleter.delete(task.receipt, task.messageId);
+    }
+
+    @Override
+    public String statsName() {
+        return "queue";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.get());
+        stats.put("maxInFlight", maxInFlight);
+        stats.put("received", received.get());
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        stats.put("pollsSkipped", pollsSkipped.get());
+        stats.put("redeliveriesAcknowledged", redeliveriesAcknowledged.get());
+        stats.put("redeliveriesSkipped", redeliveriesSkipped.get());
+        stats.put("deliveredMessagesTracked", deliveredMessages.size());
+        return stats;
+    }
+
+    // 파이프라인 단계 사이를 이동하는 메시지 상태
+    private static class PipelineMessage {
+        private final String messageId;
+        private final String receipt;
+        private final String channelId;
+        private final String content;
+        private Object request;
+        private Object result;
+        private String callbackChannel;
+        private String callbackUrl;
+
+        private PipelineMessage(String messageId, String receipt, String channelId, String content) {
+            this.messageId = messageId;
+            this.receipt = receipt;
+            this.channelId = channelId;
+            this.content = content;
         }
     }
 }
@@ -0,0 +1,162 @@
+package com.lumidiary.ai.integration;
+
+import com.lumidiary.ai.util.StatsProvider;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 공유 OkHttpClient의 동시 호출 수 제한.
+ * OkHttp Dispatcher의 maxRequests는 enqueue()에만 적용되고 이 서비스는 모두 execute()로 호출하므로,
+ * 애플리케이션 인터셉터에서 전체/호스트별 세마포어로 직접 제한한다.
+ * 허가는 응답 본문을 닫을 때 반환하므로 스트리밍 응답을 읽는 동안에도 한 호출로 센다.
+ */
+@Component
+public class OkHttpConcurrencyLimiter implements Interceptor, StatsProvider {
+
+    private final int maxCalls;
+    private final int maxCallsPerHost;
+    private final Semaphore calls;
+    private final Map<String, Semaphore> hostCalls = new ConcurrentHashMap<>();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong waited = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public OkHttpConcurrencyLimiter(@Value("${http.client.concurrency.max-calls:64}") int maxCalls,
+                                    @Value("${http.client.concurrency.max-calls-per-host:16}") int maxCallsPerHost) {
+        this.maxCalls = maxCalls;
+        this.maxCallsPerHost = maxCallsPerHost;
+        this.calls = new Semaphore(maxCalls, true);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        // 호출 전체 타임아웃(callTimeout)까지만 자리를 기다린다. 0이면 제한 없이 기다림
+        long timeoutNanos = chain.call().timeout().timeoutNanos();
+        Semaphore host = hostCalls.computeIfAbsent(chain.request().url().host(),
+                h -> new Semaphore(maxCallsPerHost, true));
+        acquire(host, timeoutNanos);
+        try {
+            acquire(calls, timeoutNanos);
+        } catch (IOException e) {
+            host.release();
+            throw e;
+        }
+
+        Runnable release = new Runnable() {
+            private final AtomicBoolean released = new AtomicBoolean();
+
+            @Override
+            public void run() {
+                if (released.compareAndSet(false, true)) {
+                    calls.release();
+                    host.release();
+                }
+            }
+        };
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        ResponseBody body = response.body();
+        if (body == null) {
+            release.run();
+            return response;
+        }
+        return response.newBuilder().body(new ReleasingBody(body, release)).build();
+    }
+
+    private void acquire(Semaphore semaphore, long timeoutNanos) throws IOException {
+        if (semaphore.tryAcquire()) {
+            return;
+        }
+        waiting.incrementAndGet();
+        waited.incrementAndGet();
+        try {
+            if (timeoutNanos <= 0) {
+                semaphore.acquire();
+            } else if (!semaphore.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                timedOut.incrementAndGet();
+                throw new InterruptedIOException("HTTP 동시 호출 한도 대기 시간 초과");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("HTTP 동시 호출 한도 대기 중 중단");
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    // 본문 소스를 닫을 때(Response.close 포함) 허가를 반환
+    private static final class ReleasingBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        private ReleasingBody(ResponseBody delegate, Runnable release) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release.run();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "okHttpConcurrency";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxCalls", maxCalls);
+        stats.put("maxCallsPerHost", maxCallsPerHost);
+        stats.put("active", maxCalls - calls.availablePermits());
+        stats.put("waiting", waiting.get());
+        stats.put("waited", waited.get());
+        stats.put("timedOut", timedOut.get());
+        return stats;
+    }
+}
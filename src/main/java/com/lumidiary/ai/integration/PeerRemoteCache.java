@@ -0,0 +1,162 @@
+package com.lumidiary.ai.integration;
+
+import com.lumidiary.ai.util.ConsistentHashRing;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 레플리카들이 공유 캐시를 나눠 맡는 구현. 헤드리스 서비스 DNS로 찾은 파드 IP들로 일관 해시 링을 만들고,
+ * 각 키는 링에서 정해진 한 파드의 SharedCacheStore에 저장된다(/internal/cache). 자기 몫의 키는 HTTP 없이 바로 처리한다.
+ * 파드가 늘거나 줄면 옮겨 가는 키만 한 번 미스가 난다.
+ */
+@Slf4j
+public class PeerRemoteCache implements RemoteCache {
+
+    private static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+
+    private final SharedCacheStore store;
+    private final OkHttpClient client;
+    private final String peerService;
+    private final int peerPort;
+    private final String selfAddress;
+    private final int virtualNodes;
+    private final ScheduledExecutorService refresher;
+
+    private volatile List<String> peers = List.of();
+    private volatile ConsistentHashRing ring = new ConsistentHashRing(List.of(), 1);
+
+    private final AtomicLong localOperations = new AtomicLong();
+    private final AtomicLong peerOperations = new AtomicLong();
+    private final AtomicLong peerErrors = new AtomicLong();
+    private final AtomicLong membershipChanges = new AtomicLong();
+
+    public PeerRemoteCache(SharedCacheStore store, OkHttpClient client, String peerService, int peerPort,
+                           String selfAddress, int virtualNodes, long refreshMs) {
+        this.store = store;
+        this.client = client;
+        this.peerService = peerService;
+        this.peerPort = peerPort;
+        this.selfAddress = selfAddress;
+        this.virtualNodes = virtualNodes;
+        refreshPeers();
+        refresher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("shared-cache-peers-"));
+        refresher.scheduleWithFixedDelay(this::refreshPeers, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+    }
+
+    // DNS 조회에 실패하면 이전 링을 유지
+    private void refreshPeers() {
+        try {
+            List<String> resolved = Arrays.stream(InetAddress.getAllByName(peerService))
+                    .map(InetAddress::getHostAddress)
+                    .sorted()
+                    .toList();
+            if (!resolved.equals(peers)) {
+                log.info("Shared cache peers changed: {} -> {} (self: {})", peers, resolved, selfAddress);
+                peers = resolved;
+                ring = new ConsistentHashRing(resolved, virtualNodes);
+                membershipChanges.incrementAndGet();
+            }
+        } catch (UnknownHostException e) {
+            log.warn("Failed to resolve shared cache peers ({}): {}", peerService, e.getMessage());
+        }
+    }
+
+    // 자기 자신이 담당이거나 아직 피어를 모르면 null
+    private String owner(String key) {
+        String node = ring.nodeFor(key);
+        return node == null || node.equals(selfAddress) ? null : node;
+    }
+
+    private String url(String owner, String key) {
+        return "http://" + owner + ":" + peerPort + "/internal/cache/" + key;
+    }
+
+    @Override
+    public byte[] get(String key) throws IOException {
+        String owner = owner(key);
+        if (owner == null) {
+            localOperations.incrementAndGet();
+            return store.get(key);
+        }
+        peerOperations.incrementAndGet();
+        try (Response response = client.newCall(new Request.Builder().url(url(owner, key)).get().build()).execute()) {
+            if (response.code() == 404) {
+                return null;
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("공유 캐시 조회 실패 (" + owner + "): HTTP " + response.code());
+            }
+            return response.body().bytes();
+        } catch (IOException e) {
+            peerErrors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] value, long ttlMs) throws IOException {
+        // 받는 쪽이 413으로 거절할 값은 보내지 않는다
+        if (value.length > store.maxValueBytes()) {
+            return;
+        }
+        String owner = owner(key);
+        if (owner == null) {
+            localOperations.incrementAndGet();
+            store.put(key, value, ttlMs);
+            return;
+        }
+        send(owner, new Request.Builder().url(url(owner, key) + "?ttlMs=" + ttlMs)
+                .put(RequestBody.create(value, OCTET_STREAM)).build());
+    }
+
+    private void send(String owner, Request request) throws IOException {
+        peerOperations.incrementAndGet();
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("공유 캐시 요청 실패 (" + owner + "): HTTP " + response.code());
+            }
+        } catch (IOException e) {
+            peerErrors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    @Override
+    public String mode() {
+        return "peers";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("self", selfAddress);
+        stats.put("peers", peers);
+        stats.put("membershipChanges", membershipChanges.get());
+        stats.put("localOperations", localOperations.get());
+        stats.put("peerOperations", peerOperations.get());
+        stats.put("peerErrors", peerErrors.get());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+}
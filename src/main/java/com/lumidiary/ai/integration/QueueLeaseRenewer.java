@@ -0,0 +1,156 @@
+package com.lumidiary.ai.integration;
+
+import com.lumidiary.ai.util.StatsProvider;
+import com.oracle.bmc.queue.QueueClient;
+import com.oracle.bmc.queue.model.UpdateMessagesDetails;
+import com.oracle.bmc.queue.model.UpdateMessagesDetailsEntry;
+import com.oracle.bmc.queue.model.UpdateMessagesResult;
+import com.oracle.bmc.queue.model.UpdateMessagesResultEntry;
+import com.oracle.bmc.queue.requests.UpdateMessagesRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 처리 중인 메시지의 visibility timeout을 만료 전에 연장한다.
+ * 처리가 오래 걸려도 메시지가 다시 보이게 되어 다른 레플리카가 중복 처리하는 일을 막는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QueueLeaseRenewer implements StatsProvider {
+
+    // UpdateMessages 배치 API의 요청당 최대 엔트리 수
+    private static final int MAX_BATCH_SIZE = 20;
+
+    private final QueueClient queueClient;
+
+    @Value("${oci.queue.ocid}")
+    private String queueOcid;
+
+    // 남은 visibility가 이 값 이하가 되면 연장
+    @Value("${oci.queue.lease.renew-before-seconds:20}")
+    private int renewBeforeSeconds;
+
+    // 한 번 연장할 때 새로 설정할 visibility
+    @Value("${oci.queue.lease.extension-seconds:60}")
+    private int extensionSeconds;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    private final AtomicLong renewals = new AtomicLong();
+    private final AtomicLong renewalFailures = new AtomicLong();
+    private final AtomicLong leasesLost = new AtomicLong();
+
+    // 메시지를 받은 직후 호출. visibilitySeconds는 GetMessages 요청에 사용한 값
+    public void track(String receipt, String messageId, int visibilitySeconds) {
+        leases.put(receipt, new Lease(messageId, System.currentTimeMillis() + visibilitySeconds * 1000L));
+    }
+
+    // 처리 완료 또는 실패 시 호출하여 더 이상 연장하지 않도록 한다
+    public void release(String receipt) {
+        leases.remove(receipt);
+    }
+
+    @Scheduled(fixedDelayString = "${oci.queue.lease.check-interval-ms:5000}")
+    public void renewExpiringLeases() {
+        long now = System.currentTimeMillis();
+        List<String> due = new ArrayList<>();
+        leases.forEach((receipt, lease) -> {
+            if (lease.expiresAt <= now) {
+                markLost(receipt, lease, "visibility timeout already expired");
+            } else if (lease.expiresAt - now <= renewBeforeSeconds * 1000L) {
+                due.add(receipt);
+            }
+        });
+
+        for (int from = 0; from < due.size(); from += MAX_BATCH_SIZE) {
+            renew(due.subList(from, Math.min(from + MAX_BATCH_SIZE, due.size())));
+        }
+    }
+
+    private void renew(List<String> receipts) {
+        List<UpdateMessagesDetailsEntry> entries = new ArrayList<>();
+        for (String receipt : receipts) {
+            entries.add(UpdateMessagesDetailsEntry.builder()
+                    .receipt(receipt)
+                    .visibilityInSeconds(extensionSeconds)
+                    .build());
+        }
+        long requestedAt = System.currentTimeMillis();
+        try {
+            UpdateMessagesResult result = queueClient.updateMessages(UpdateMessagesRequest.builder()
+                    .queueId(queueOcid)
+                    .updateMessagesDetails(UpdateMessagesDetails.builder().entries(entries).build())
+                    .build()).getUpdateMessagesResult();
+
+            // 결과 엔트리는 요청 엔트리와 같은 순서로 반환된다
+            List<UpdateMessagesResultEntry> resultEntries = result.getEntries();
+            for (int i = 0; i < receipts.size(); i++) {
+                String receipt = receipts.get(i);
+                Lease lease = leases.get(receipt);
+                if (lease == null) {
+                    continue; // 연장 중에 처리가 끝난 경우
+                }
+                UpdateMessagesResultEntry entry = resultEntries != null && i < resultEntries.size()
+                        ? resultEntries.get(i) : null;
+                if (entry != null && entry.getErrorCode() == null) {
+                    lease.expiresAt = requestedAt + extensionSeconds * 1000L;
+                    renewals.incrementAndGet();
+                    log.debug("Extended visibility of message ID: {} by {}s", lease.messageId, extensionSeconds);
+                } else {
+                    renewalFailures.incrementAndGet();
+                    markLost(receipt, lease, entry != null ? entry.getErrorCode() + " " + entry.getErrorMessage()
+                            : "no result entry");
+                }
+            }
+        } catch (Exception e) {
+            // 호출 자체가 실패하면 다음 주기에 다시 시도하고, 그 사이 만료되면 lost로 처리된다
+            renewalFailures.incrementAndGet();
+            log.error("Error extending visibility of {} message(s) in queue {}: {}", receipts.size(), queueOcid,
+                    e.getMessage(), e);
+        }
+    }
+
+    private void markLost(String receipt, Lease lease, String reason) {
+        if (leases.remove(receipt, lease)) {
+            leasesLost.incrementAndGet();
+            log.warn("Lost lease on message ID: {} ({}). It may be redelivered to another consumer.",
+                    lease.messageId, reason);
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "queueLease";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tracked", leases.size());
+        stats.put("renewals", renewals.get());
+        stats.put("renewalFailures", renewalFailures.get());
+        stats.put("leasesLost", leasesLost.get());
+        return stats;
+    }
+
+    private static class Lease {
+        private final String messageId;
+        private volatile long expiresAt;
+
+        private Lease(String messageId, long expiresAt) {
+            this.messageId = messageId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.lumidiary.ai.integration;
+
+import com.lumidiary.ai.util.StatsProvider;
+import com.oracle.bmc.queue.QueueClient;
+import com.oracle.bmc.queue.model.DeleteMessagesDetails;
+import com.oracle.bmc.queue.model.DeleteMessagesDetailsEntry;
+import com.oracle.bmc.queue.model.DeleteMessagesResult;
+import com.oracle.bmc.queue.model.DeleteMessagesResultEntry;
+import com.oracle.bmc.queue.requests.DeleteMessagesRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 처리가 끝난 메시지의 receipt를 모아 DeleteMessages 배치 API로 한 번에 삭제한다.
+ * 배치가 batch-size에 도달하거나 linger-ms가 지나면 전송하며, 실패는 receipt 단위로 future에 전달된다.
+ * 스케줄러에서는 타이머만 돌고 실제 DeleteMessages 호출은 전용 스레드에서 실행하여,
+ * 공유 스케줄러 풀(long polling, lease 연장)을 OCI 호출이 점유하지 않게 한다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QueueMessageDeleter implements StatsProvider {
+
+    // DeleteMessages 배치 API의 요청당 최대 엔트리 수
+    private static final int MAX_BATCH_SIZE = 20;
+
+    private final QueueClient queueClient;
+
+    @Value("${oci.queue.ocid}")
+    private String queueOcid;
+
+    @Value("${oci.queue.delete.batch-size:20}")
+    private int batchSize;
+
+    private final List<PendingDelete> pending = new ArrayList<>();
+    private ExecutorService sender;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        sender = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("queue-delete-"));
+    }
+
+    public CompletableFuture<Void> delete(String receipt, String messageId) {
+        PendingDelete request = new PendingDelete(receipt, messageId);
+        List<PendingDelete> batch = null;
+        synchronized (pending) {
+            pending.add(request);
+            if (pending.size() >= Math.min(batchSize, MAX_BATCH_SIZE)) {
+                batch = drain();
+            }
+        }
+        if (batch != null) {
+            submit(batch);
+        }
+        return request.future;
+    }
+
+    @Scheduled(fixedDelayString = "${oci.queue.delete.linger-ms:200}")
+    public void flush() {
+        List<PendingDelete> batch;
+        synchronized (pending) {
+            batch = drain();
+        }
+        if (!batch.isEmpty()) {
+            submit(batch);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() throws InterruptedException {
+        flush();
+        sender.shutdown();
+        if (!sender.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Queue delete sender did not finish within 10s; remaining receipts will be redelivered");
+        }
+    }
+
+    private void submit(List<PendingDelete> batch) {
+        try {
+            sender.execute(() -> send(batch));
+        } catch (RejectedExecutionException e) {
+            // 종료 중: 삭제하지 못한 메시지는 visibility 만료 후 다시 전달된다
+            for (PendingDelete request : batch) {
+                fail(request, e);
+            }
+        }
+    }
+
+    private List<PendingDelete> drain() {
+        List<PendingDelete> batch = new ArrayList<>(pending);
+        pending.clear();
+        return batch;
+    }
+
+    private void send(List<PendingDelete> batch) {
+        List<DeleteMessagesDetailsEntry> entries = new ArrayList<>();
+        for (PendingDelete request : batch) {
+            entries.add(DeleteMessagesDetailsEntry.builder().receipt(request.receipt).build());
+        }
+        batches.incrementAndGet();
+        try {
+            DeleteMessagesResult result = queueClient.deleteMessages(DeleteMessagesRequest.builder()
+                    .queueId(queueOcid)
+                    .deleteMessagesDetails(DeleteMessagesDetails.builder().entries(entries).build())
+                    .build()).getDeleteMessagesResult();
+
+            // 결과 엔트리는 요청 엔트리와 같은 순서로 반환된다
+            List<DeleteMessagesResultEntry> resultEntries = result.getEntries();
+            for (int i = 0; i < batch.size(); i++) {
+                PendingDelete request = batch.get(i);
+                DeleteMessagesResultEntry entry = resultEntries != null && i < resultEntries.size()
+                        ? resultEntries.get(i) : null;
+                if (entry != null && entry.getErrorCode() == null) {
+                    deleted.incrementAndGet();
+                    request.future.complete(null);
+                } else {
+                    String reason = entry != null ? entry.getErrorCode() + " " + entry.getErrorMessage()
+                            : "no result entry";
+                    fail(request, new IOException("Failed to delete message: " + reason));
+                }
+            }
+            log.info("Deleted batch of {} message(s) from queue: {} (client failures: {}, server failures: {})",
+                    batch.size(), queueOcid, result.getClientFailures(), result.getServerFailures());
+        } catch (Exception e) {
+            log.error("Error deleting batch of {} message(s) from queue {}: {}", batch.size(), queueOcid,
+                    e.getMessage(), e);
+            for (PendingDelete request : batch) {
+                fail(request, e);
+            }
+        }
+    }
+
+    private void fail(PendingDelete request, Exception cause) {
+        failures.incrementAndGet();
+        log.warn("Could not delete message ID: {} (receipt: {}): {}", request.messageId, request.receipt,
+                cause.getMessage());
+        request.future.completeExceptionally(cause);
+    }
+
+    @Override
+    public String statsName() {
+        return "queueDelete";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batches", batches.get());
+        stats.put("deleted", deleted.get());
+        stats.put("failures", failures.get());
+        synchronized (pending) {
+            stats.put("pending", pending.size());
+        }
+        return stats;
+    }
+
+    private static class PendingDelete {
+        private final String receipt;
+        private final String messageId;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingDelete(String receipt, String messageId) {
+            this.receipt = receipt;
+            this.messageId = messageId;
+        }
+    }
+}
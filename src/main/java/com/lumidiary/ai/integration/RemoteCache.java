@@ -0,0 +1,26 @@
+package com.lumidiary.ai.integration;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 레플리카가 함께 쓰는 공유 캐시 계층. 값은 직렬화된 바이트이며 키는 호출 측에서 해시해 넘긴다.
+ * 조회 실패는 IOException으로 알리고, 호출 측은 이를 캐시 미스로 취급한다.
+ */
+public interface RemoteCache {
+
+    // 없거나 만료되었으면 null
+    byte[] get(String key) throws IOException;
+
+    void put(String key, byte[] value, long ttlMs) throws IOException;
+
+    // 통계 표시용 구현 이름
+    String mode();
+
+    default Map<String, Object> stats() {
+        return Map.of();
+    }
+
+    default void close() {
+    }
+}
@@ -0,0 +1,122 @@
+package com.lumidiary.ai.integration;
+
+import com.lumidiary.ai.util.StatsProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 이 인스턴스가 맡은 공유 캐시 조각. peers 모드에서는 일관 해시로 이 인스턴스에 배정된 키를,
+ * local 모드에서는 모든 키를 보관한다. 항목마다 TTL이 다를 수 있어 만료 시각을 값과 함께 둔다.
+ * 항목 수와 값 바이트 합계 둘 다 한도를 두고, 넘으면 가장 오래 쓰이지 않은 항목부터 버린다.
+ */
+@Component
+public class SharedCacheStore implements StatsProvider {
+
+    @Value("${cache.shared.store.max-size:50000}")
+    private int maxSize;
+
+    // 보관하는 값들의 바이트 합계 한도
+    @Value("${cache.shared.store.max-bytes:268435456}")
+    private long maxBytes;
+
+    // 피어가 보낸 값 하나의 최대 크기
+    @Value("${cache.shared.store.max-value-bytes:4194304}")
+    private int maxValueBytes;
+
+    // 요청된 TTL이 이보다 길면 잘라낸다
+    @Value("${cache.shared.store.max-ttl-ms:2592000000}")
+    private long maxTtlMs;
+
+    // 접근 순서로 정렬. entries와 totalBytes는 entries 잠금으로 보호
+    private final LinkedHashMap<String, Stored> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong gets = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private record Stored(byte[] value, long expiresAt) {
+    }
+
+    public int maxValueBytes() {
+        return maxValueBytes;
+    }
+
+    public byte[] get(String key) {
+        gets.incrementAndGet();
+        synchronized (entries) {
+            Stored stored = entries.get(key);
+            if (stored == null) {
+                return null;
+            }
+            if (stored.expiresAt() < System.currentTimeMillis()) {
+                remove(key);
+                return null;
+            }
+            hits.incrementAndGet();
+            return stored.value();
+        }
+    }
+
+    public void put(String key, byte[] value, long ttlMs) {
+        if (value.length > maxValueBytes || value.length > maxBytes) {
+            rejected.incrementAndGet();
+            return;
+        }
+        puts.incrementAndGet();
+        Stored stored = new Stored(value, System.currentTimeMillis() + Math.min(ttlMs, maxTtlMs));
+        synchronized (entries) {
+            Stored previous = entries.put(key, stored);
+            if (previous != null) {
+                totalBytes -= previous.value().length;
+            }
+            totalBytes += value.length;
+            evictIfNeeded();
+        }
+    }
+
+    private void remove(String key) {
+        Stored removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.value().length;
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Stored> eldest = entries.values().iterator();
+        while ((entries.size() > maxSize || totalBytes > maxBytes) && eldest.hasNext()) {
+            totalBytes -= eldest.next().value().length;
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "sharedCacheStore";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("maxBytes", maxBytes);
+        stats.put("gets", gets.get());
+        stats.put("hits", hits.get());
+        stats.put("puts", puts.get());
+        stats.put("rejected", rejected.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+}
@@ -0,0 +1,238 @@
+package com.lumidiary.ai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lumidiary.ai.dto.DigestEntry;
+import com.lumidiary.ai.dto.DigestEntryForPrompt;
+import com.lumidiary.ai.dto.DigestRequestForPrompt;
+import com.lumidiary.ai.util.StatsProvider;
+import com.lumidiary.ai.util.TokenEstimator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 다이제스트 프롬프트의 토큰 수를 추정하고, 요청당 한도를 넘으면 손실이 적은 것부터 차례로 줄인다.
+ * 1) 빈 답변 제거 2) 항목 안의 중복 질문 제거 3) 긴 설명/답변 자르기(점점 짧게) 4) 오래된 항목부터 요약만 남기기
+ * 한도 안에 들어오는 순간 멈추며, 한도 안의 요청은 건드리지 않는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DigestPromptCompactor implements StatsProvider {
+
+    private final ObjectMapper objectMapper;
+
+    // 요청 하나(map-reduce면 모든 호출 합계)의 입력 토큰 한도
+    @Value("${digest.prompt.max-tokens:60000}")
+    private int maxTokens;
+
+    // 자르기 단계의 시작 길이와 최소 길이 (글자 수)
+    @Value("${digest.prompt.truncate-chars:600}")
+    private int truncateChars;
+
+    @Value("${digest.prompt.min-truncate-chars:120}")
+    private int minTruncateChars;
+
+    // 오래된 항목을 요약만 남길 때 하루 요약의 최대 길이
+    @Value("${digest.prompt.condensed-summary-chars:200}")
+    private int condensedSummaryChars;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong compactedRequests = new AtomicLong();
+    private final AtomicLong overBudgetRequests = new AtomicLong();
+    private final AtomicLong tokensBefore = new AtomicLong();
+    private final AtomicLong tokensAfter = new AtomicLong();
+    private final AtomicLong droppedAnswers = new AtomicLong();
+    private final AtomicLong droppedDuplicateQuestions = new AtomicLong();
+    private final AtomicLong truncatedFields = new AtomicLong();
+    private final AtomicLong condensedEntries = new AtomicLong();
+
+    public int estimate(Object payload) {
+        return TokenEstimator.estimateJson(payload, objectMapper);
+    }
+
+    /**
+     * request를 제자리에서 줄인다. originalEntries는 '오래된 항목'을 고르기 위한 날짜 조회용 (같은 순서)
+     * 단계마다 요청 전체를 다시 직렬화하지 않도록, 항목별 추정치를 두고 바뀐 항목의 차이만 합계에 반영한다.
+     * 한도를 넘어 압축을 시도했으면 true (항목 내용이 바뀌었을 수 있음)
+     */
+    public boolean compact(DigestRequestForPrompt request, List<DigestEntry> originalEntries) {
+        requests.incrementAndGet();
+        int before = estimate(request);
+        tokensBefore.addAndGet(before);
+        if (before <= maxTokens) {
+            tokensAfter.addAndGet(before);
+            return false;
+        }
+        compactedRequests.incrementAndGet();
+        List<DigestEntryForPrompt> entries = request.getEntries();
+        Budget budget = new Budget(before, entries);
+
+        dropEmptyAnswers(entries, budget);
+        if (budget.total > maxTokens) {
+            dropDuplicateQuestions(entries, budget);
+        }
+        for (int limit = truncateChars; limit >= minTruncateChars && budget.total > maxTokens; limit /= 2) {
+            truncateLongText(entries, limit, budget);
+        }
+        if (budget.total > maxTokens) {
+            condenseOldestEntries(entries, originalEntries, budget);
+        }
+
+        int after = estimate(request);
+        tokensAfter.addAndGet(after);
+        if (after > maxTokens) {
+            overBudgetRequests.incrementAndGet();
+        }
+        log.info("다이제스트 프롬프트 압축: {} → {} 토큰 (한도 {})", before, after, maxTokens);
+        return true;
+    }
+
+    private void dropEmptyAnswers(List<DigestEntryForPrompt> entries, Budget budget) {
+        for (int i = 0; i < entries.size(); i++) {
+            DigestEntryForPrompt entry = entries.get(i);
+            if (entry.getQuestions() != null) {
+                int size = entry.getQuestions().size();
+                entry.getQuestions().removeIf(q -> q == null || q.getAnswer() == null || q.getAnswer().isBlank());
+                int dropped = size - entry.getQuestions().size();
+                if (dropped > 0) {
+                    droppedAnswers.addAndGet(dropped);
+                    budget.update(i, entry);
+                }
+            }
+        }
+    }
+
+    // 같은 항목 안에서 질문 문구가 같으면 첫 번째 것만 남김
+    private void dropDuplicateQuestions(List<DigestEntryForPrompt> entries, Budget budget) {
+        for (int i = 0; i < entries.size(); i++) {
+            DigestEntryForPrompt entry = entries.get(i);
+            if (entry.getQuestions() != null) {
+                Set<String> seen = new HashSet<>();
+                int size = entry.getQuestions().size();
+                entry.getQuestions().removeIf(q -> q.getQuestion() != null && !seen.add(q.getQuestion().strip()));
+                int dropped = size - entry.getQuestions().size();
+                if (dropped > 0) {
+                    droppedDuplicateQuestions.addAndGet(dropped);
+                    budget.update(i, entry);
+                }
+            }
+        }
+    }
+
+    private void truncateLongText(List<DigestEntryForPrompt> entries, int limit, Budget budget) {
+        for (int i = 0; i < entries.size(); i++) {
+            DigestEntryForPrompt entry = entries.get(i);
+            boolean changed = false;
+            if (entry.getImageDescriptions() != null) {
+                for (DigestEntryForPrompt.ImageDescriptionForPrompt description : entry.getImageDescriptions()) {
+                    String text = description.getDescription();
+                    description.setDescription(truncate(text, limit));
+                    changed |= description.getDescription() != text;
+                }
+            }
+            if (entry.getQuestions() != null) {
+                for (DigestEntry.Question question : entry.getQuestions()) {
+                    String answer = question.getAnswer();
+                    question.setAnswer(truncate(answer, limit));
+                    changed |= question.getAnswer() != answer;
+                }
+            }
+            String summary = entry.getOverallDaySummary();
+            entry.setOverallDaySummary(truncate(summary, limit * 2));
+            changed |= entry.getOverallDaySummary() != summary;
+            if (changed) {
+                budget.update(i, entry);
+            }
+        }
+    }
+
+    // 날짜가 오래된 항목부터 이미지 설명과 질문을 빼고 짧은 하루 요약과 감정만 남긴다
+    private void condenseOldestEntries(List<DigestEntryForPrompt> entries, List<DigestEntry> originalEntries,
+                                       Budget budget) {
+        List<Integer> oldestFirst = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            oldestFirst.add(i);
+        }
+        oldestFirst.sort(Comparator.comparing(i -> dateKey(originalEntries, entries.get(i).getIndex())));
+        for (int i : oldestFirst) {
+            if (budget.total <= maxTokens) {
+                return;
+            }
+            DigestEntryForPrompt entry = entries.get(i);
+            entry.setImageDescriptions(null);
+            entry.setQuestions(null);
+            entry.setOverallDaySummary(truncate(entry.getOverallDaySummary(), condensedSummaryChars));
+            budget.update(i, entry);
+            condensedEntries.incrementAndGet();
+        }
+    }
+
+    // ISO 날짜는 앞 10자리 문자열 비교로 정렬 가능. 날짜가 없으면 가장 나중으로
+    private static String dateKey(List<DigestEntry> originalEntries, int index) {
+        String date = index < originalEntries.size() ? originalEntries.get(index).getDate() : null;
+        if (date == null || date.length() < 10) {
+            return "\uFFFF";
+        }
+        return date.substring(0, 10);
+    }
+
+    private String truncate(String text, int limit) {
+        if (text == null || text.length() <= limit) {
+            return text;
+        }
+        truncatedFields.incrementAndGet();
+        return text.substring(0, limit) + "…";
+    }
+
+    @Override
+    public String statsName() {
+        return "digestCompaction";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxTokens", maxTokens);
+        stats.put("requests", requests.get());
+        stats.put("compactedRequests", compactedRequests.get());
+        stats.put("overBudgetRequests", overBudgetRequests.get());
+        stats.put("estimatedTokensBefore", tokensBefore.get());
+        stats.put("estimatedTokensAfter", tokensAfter.get());
+        stats.put("droppedEmptyAnswers", droppedAnswers.get());
+        stats.put("droppedDuplicateQuestions", droppedDuplicateQuestions.get());
+        stats.put("truncatedFields", truncatedFields.get());
+        stats.put("condensedEntries", condensedEntries.get());
+        return stats;
+    }
+
+    // 요청 전체 추정치를 항목별 추정치의 변화량으로 갱신 (항목 밖의 키·구두점 몫은 처음 값에 그대로 포함)
+    private class Budget {
+        private final int[] entryTokens;
+        private int total;
+
+        private Budget(int total, List<DigestEntryForPrompt> entries) {
+            this.total = total;
+            this.entryTokens = new int[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                entryTokens[i] = estimate(entries.get(i));
+            }
+        }
+
+        private void update(int position, DigestEntryForPrompt entry) {
+            int tokens = estimate(entry);
+            total += tokens - entryTokens[position];
+            entryTokens[position] = tokens;
+        }
+    }
+}
@@ -3,11 +3,24 @@ package com.lumidiary.ai.service;
 import com.lumidiary.ai.dto.*;
 import com.lumidiary.ai.integration.GeminiApiClient;
 import com.lumidiary.ai.util.PromptBuilder;
+import com.lumidiary.ai.util.PromptType;
+import com.lumidiary.ai.util.StatsProvider;
+import com.lumidiary.ai.util.StreamingJsonFieldParser;
+import com.lumidiary.ai.util.TokenEstimator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
@@ -15,24 +28,126 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @RequiredArgsConstructor
-public class DigestService {
+public class DigestService implements StatsProvider {
 
     private final GeminiApiClient geminiApiClient;
     private final ObjectMapper objectMapper;
+    private final DigestPromptCompactor promptCompactor;
+    private final TwoLevelCacheFactory cacheFactory;
+
+    // 한 번에 보내기엔 큰 다이제스트를 청크로 나누어 map-reduce로 생성할지 여부
+    @Value("${digest.map-reduce.enabled:true}")
+    private boolean mapReduceEnabled;
+
+    // 청크 하나의 추정 토큰 한도. 전체가 이보다 작으면 기존처럼 한 번에 호출
+    @Value("${digest.map-reduce.chunk-tokens:8000}")
+    private int chunkTokens;
+
+    // 동시에 실행할 map 호출 수 (모든 요청이 공유)
+    @Value("${digest.map-reduce.parallelism:4}")
+    private int mapParallelism;
+
+    // 항목 내용 해시 → 항목 요약. 겹치는 기간의 다이제스트를 다시 만들 때 바뀐 항목만 요약
+    @Value("${digest.summary-cache.enabled:true}")
+    private boolean summaryCacheEnabled;
+
+    @Value("${digest.summary-cache.max-size:50000}")
+    private int summaryCacheMaxSize;
+
+    @Value("${digest.summary-cache.ttl-ms:2592000000}")
+    private long summaryCacheTtlMs;
+
+    private ExecutorService mapExecutor;
+    // 레플리카 간 공유 (재시도가 다른 파드로 가도 적중)
+    private TwoLevelCache<String> summaryCache;
+
+    private final AtomicLong summaryHits = new AtomicLong();
+    private final AtomicLong summaryMisses = new AtomicLong();
+    private final AtomicLong incrementalDigests = new AtomicLong();
+    private final AtomicLong tokensSaved = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(mapParallelism, mapParallelism, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("digest-map-"));
+        executor.allowCoreThreadTimeOut(true);
+        mapExecutor = executor;
+        summaryCache = cacheFactory.create("digest-summary", summaryCacheMaxSize, summaryCacheTtlMs, String.class);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        mapExecutor.shutdown();
+    }
 
     public DigestResponse createDigest(DigestRequest request) throws IOException {
+        return createDigest(request, null);
+    }
+
+    // listener가 있으면 스트리밍으로 호출하여 제목, 요약, 감정, 항목별 요약이 완성되는 대로 전달
+    public DigestResponse createDigest(DigestRequest request, PartialResultListener listener) throws IOException {
         // Gemini에게 보낼 요청 객체 생성
         DigestRequestForPrompt requestForPrompt = preparePromptRequest(request);
-        
-        // Gemini API 호출
-        GeminiPromptRequest prompt = PromptBuilder.buildDigestPrompt(requestForPrompt, objectMapper);
-        String jsonResponse = geminiApiClient.sendPromptRaw(prompt);
-        
-        // JSON 응답 파싱
-        JsonNode responseNode = parseResponseJson(jsonResponse);
+
+        List<DigestEntryForPrompt> entries = requestForPrompt.getEntries();
+
+        // 내용 해시로 이전에 만든 항목 요약을 찾아, 바뀐 항목만 모델에 보낸다
+        List<String> summaryKeys = summaryCacheEnabled ? summaryKeys(entries, request.getUserLocale()) : List.of();
+        Map<Integer, String> cachedSummaries = lookupCachedSummaries(entries, summaryKeys);
+
+        List<DigestEntryForPrompt> pending = new ArrayList<>();
+        for (DigestEntryForPrompt entry : entries) {
+            if (cachedSummaries.containsKey(entry.getIndex())) {
+                if (listener != null) {
+                    emitEntrySummary(request, entry.getIndex(), cachedSummaries.get(entry.getIndex()), listener);
+                }
+            } else {
+                pending.add(entry);
+            }
+        }
+
+        // 실제로 모델에 보낼 항목만 요청당 토큰 한도에 맞게 압축 (캐시 키는 압축 전 내용 기준)
+        // 압축으로 내용이 바뀐 항목의 요약은 원래 내용의 요약이 아니므로 캐시에 넣지 않는다
+        DigestRequestForPrompt outgoing = new DigestRequestForPrompt();
+        outgoing.setEntries(pending);
+        outgoing.setUser_locale(request.getUserLocale());
+        Set<Integer> compactedIndexes = Set.of();
+        if (promptCompactor.compact(outgoing, request.getEntries()) && !summaryKeys.isEmpty()) {
+            compactedIndexes = changedEntries(pending, summaryKeys, request.getUserLocale());
+        }
+
+        JsonNode responseNode;
+        if (!cachedSummaries.isEmpty()) {
+            incrementalDigests.incrementAndGet();
+            List<List<DigestEntryForPrompt>> chunks = pending.isEmpty() ? List.of() : splitIntoChunks(pending);
+            responseNode = generateMapReduce(request, entries, chunks, cachedSummaries, listener);
+        } else {
+            // 항목이 많으면 토큰 기준으로 나누어 map-reduce, 아니면 한 번에 호출
+            List<List<DigestEntryForPrompt>> chunks = mapReduceEnabled
+                    ? splitIntoChunks(entries)
+                    : List.of(entries);
+            if (chunks.size() > 1) {
+                responseNode = generateMapReduce(request, entries, chunks, Map.of(), listener);
+            } else {
+                responseNode = generate(PromptBuilder.buildDigestPrompt(outgoing, objectMapper), request, listener);
+                // 모델이 돌려준 인덱스를 map 단계와 같은 규칙으로 검증한 뒤에 조립/캐시에 쓴다
+                if (responseNode.isObject()) {
+                    ((ObjectNode) responseNode).set("entrySummaries",
+                            remapEntrySummaries(responseNode.path("entrySummaries"), pending));
+                }
+            }
+        }
+        storeSummaries(responseNode, summaryKeys, cachedSummaries, compactedIndexes);
         
         // 최종 응답 조립
         DigestResponse response = assembleResponse(responseNode, request.getEntries());
@@ -43,6 +158,249 @@ public class DigestService {
         return response;
     }
     
+    // 응답 텍스트를 JsonNode로 바로 디코딩 (listener가 있으면 스트리밍)
+    private JsonNode generate(GeminiPromptRequest prompt, DigestRequest request,
+                              PartialResultListener listener) throws IOException {
+        if (listener == null) {
+            return geminiApiClient.sendPrompt(prompt, JsonNode.class);
+        }
+        StreamingJsonFieldParser parser = new StreamingJsonFieldParser(objectMapper.getFactory(),
+                (path, value) -> forwardDigestField(request, path, value, listener));
+        return geminiApiClient.streamPrompt(prompt, JsonNode.class, parser::feed);
+    }
+
+    // 항목 순서를 유지하면서 추정 토큰 수가 chunkTokens를 넘지 않도록 묶는다. 전체가 한도 안이면 청크 하나
+    private List<List<DigestEntryForPrompt>> splitIntoChunks(List<DigestEntryForPrompt> entries) {
+        List<List<DigestEntryForPrompt>> chunks = new ArrayList<>();
+        List<DigestEntryForPrompt> current = new ArrayList<>();
+        int currentTokens = 0;
+        for (DigestEntryForPrompt entry : entries) {
+            int tokens = estimateTokens(entry);
+            if (!current.isEmpty() && currentTokens + tokens > chunkTokens) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(entry);
+            currentTokens += tokens;
+        }
+        chunks.add(current);
+        return chunks;
+    }
+
+    private int estimateTokens(DigestEntryForPrompt entry) {
+        return promptCompactor.estimate(entry);
+    }
+
+    // 항목 내용(인덱스 제외), 언어, 항목 요약을 만드는 프롬프트(단일 호출/map) 버전으로 만든 SHA-256 키
+    // 기간이 달라 인덱스가 바뀌어도 같은 항목이면 같은 키이고, 프롬프트를 고치면 이전 요약은 적중하지 않는다
+    private List<String> summaryKeys(List<DigestEntryForPrompt> entries, String userLocale) {
+        List<String> keys = new ArrayList<>();
+        String promptVersion = PromptBuilder.promptVersion(PromptType.DIGEST)
+                + PromptBuilder.promptVersion(PromptType.DIGEST_MAP);
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            for (DigestEntryForPrompt entry : entries) {
+                ObjectNode content = objectMapper.valueToTree(entry);
+                content.remove("index");
+                sha256.update(promptVersion.getBytes(StandardCharsets.UTF_8));
+                sha256.update((byte) 0);
+                sha256.update(String.valueOf(userLocale).getBytes(StandardCharsets.UTF_8));
+                sha256.update((byte) 0);
+                keys.add(HexFormat.of().formatHex(sha256.digest(objectMapper.writeValueAsBytes(content))));
+            }
+        } catch (Exception e) {
+            // 키를 만들 수 없으면 캐시 없이 진행
+            return List.of();
+        }
+        return keys;
+    }
+
+    private Map<Integer, String> lookupCachedSummaries(List<DigestEntryForPrompt> entries, List<String> keys) {
+        Map<Integer, String> cached = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            String summary = summaryCache.getIfPresent(keys.get(i));
+            if (summary == null) {
+                summaryMisses.incrementAndGet();
+            } else {
+                summaryHits.incrementAndGet();
+                DigestEntryForPrompt entry = entries.get(i);
+                cached.put(entry.getIndex(), summary);
+                // 다시 보내지 않은 입력과 다시 생성하지 않은 출력만큼 절약
+                tokensSaved.addAndGet(estimateTokens(entry) + TokenEstimator.estimate(summary));
+            }
+        }
+        return cached;
+    }
+
+    // 압축 후 키가 압축 전 키와 달라진 항목의 인덱스
+    private Set<Integer> changedEntries(List<DigestEntryForPrompt> pending, List<String> originalKeys,
+                                        String userLocale) {
+        List<String> keys = summaryKeys(pending, userLocale);
+        if (keys.isEmpty()) {
+            // 키를 다시 만들 수 없으면 모두 바뀐 것으로 본다
+            Set<Integer> all = new HashSet<>();
+            pending.forEach(entry -> all.add(entry.getIndex()));
+            return all;
+        }
+        Set<Integer> changed = new HashSet<>();
+        for (int i = 0; i < pending.size(); i++) {
+            int index = pending.get(i).getIndex();
+            if (index < 0 || index >= originalKeys.size() || !originalKeys.get(index).equals(keys.get(i))) {
+                changed.add(index);
+            }
+        }
+        return changed;
+    }
+
+    // 새로 생성된 항목 요약만 캐시에 저장 (압축된 항목 제외)
+    private void storeSummaries(JsonNode responseNode, List<String> keys, Map<Integer, String> cachedSummaries,
+                                Set<Integer> compactedIndexes) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        for (JsonNode summaryNode : responseNode.path("entrySummaries")) {
+            int index = summaryNode.path("index").asInt(-1);
+            if (index >= 0 && index < keys.size() && summaryNode.has("summary")
+                    && !cachedSummaries.containsKey(index) && !compactedIndexes.contains(index)) {
+                summaryCache.put(keys.get(index), summaryNode.get("summary").asText());
+            }
+        }
+    }
+
+    /**
+     * map: 청크마다 항목별 요약과 청크 요약을 병렬로 생성
+     * reduce: 청크 요약들(과 캐시된 항목 요약)로 제목, 요약, 감정, 인사이트를 생성하고
+     * 항목별 요약을 합쳐 단일 호출과 같은 모양으로 만든다
+     */
+    private JsonNode generateMapReduce(DigestRequest request, List<DigestEntryForPrompt> entries,
+                                       List<List<DigestEntryForPrompt>> chunks, Map<Integer, String> cachedSummaries,
+                                       PartialResultListener listener) throws IOException {
+        // 청크 하나가 실패하면 나머지 Future를 취소해 아직 대기 중인 청크는 Gemini를 호출하지 않게 한다
+        List<Future<JsonNode>> futures = new ArrayList<>();
+        for (List<DigestEntryForPrompt> chunk : chunks) {
+            futures.add(mapExecutor.submit(() -> mapChunk(request, chunk, listener)));
+        }
+
+        ArrayNode entrySummaries = objectMapper.createArrayNode();
+        List<DigestReduceRequestForPrompt.ChunkNote> notes = new ArrayList<>();
+        try {
+            for (Future<JsonNode> future : futures) {
+                JsonNode mapResult = future.get();
+                entrySummaries.addAll((ArrayNode) mapResult.get("entrySummaries"));
+                DigestReduceRequestForPrompt.ChunkNote note = new DigestReduceRequestForPrompt.ChunkNote();
+                note.setChunkSummary(mapResult.path("chunkSummary").asText(""));
+                note.setActivities(mapResult.path("activities").asText(""));
+                note.setSpecialMoments(mapResult.path("specialMoments").asText(""));
+                notes.add(note);
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("다이제스트 map 단계 실패: " + cause, cause);
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("다이제스트 map 단계 중단");
+        }
+
+        cachedSummaries.forEach((index, summary) -> entrySummaries.addObject().put("index", index).put("summary", summary));
+
+        DigestReduceRequestForPrompt reduceRequest = new DigestReduceRequestForPrompt();
+        reduceRequest.setChunks(notes);
+        List<DigestReduceRequestForPrompt.EntryNote> entryNotes = new ArrayList<>();
+        for (DigestEntryForPrompt entry : entries) {
+            DigestReduceRequestForPrompt.EntryNote entryNote = new DigestReduceRequestForPrompt.EntryNote();
+            entryNote.setIndex(entry.getIndex());
+            entryNote.setEmotion(entry.getEmotion());
+            // 청크 요약에 포함되지 않은 캐시 항목은 항목 요약을 직접 전달
+            entryNote.setSummary(cachedSummaries.get(entry.getIndex()));
+            entryNotes.add(entryNote);
+        }
+        reduceRequest.setEntries(entryNotes);
+        reduceRequest.setUser_locale(request.getUserLocale());
+
+        JsonNode reduced = generate(PromptBuilder.buildDigestReducePrompt(reduceRequest, objectMapper), request, listener);
+        ObjectNode merged = reduced.isObject() ? ((ObjectNode) reduced).deepCopy() : objectMapper.createObjectNode();
+        merged.set("entrySummaries", entrySummaries);
+        return merged;
+    }
+
+    // 청크 하나의 항목별 요약 생성. 모델이 청크 안에서 인덱스를 다시 매긴 경우 위치 기준으로 원래 인덱스를 복원
+    private JsonNode mapChunk(DigestRequest request, List<DigestEntryForPrompt> chunk,
+                              PartialResultListener listener) throws IOException {
+        DigestRequestForPrompt chunkRequest = new DigestRequestForPrompt();
+        chunkRequest.setEntries(chunk);
+        chunkRequest.setUser_locale(request.getUserLocale());
+        JsonNode result = geminiApiClient.sendPrompt(
+                PromptBuilder.buildDigestMapPrompt(chunkRequest, objectMapper), JsonNode.class);
+
+        ArrayNode summaries = remapEntrySummaries(result.path("entrySummaries"), chunk);
+        if (listener != null) {
+            for (JsonNode summaryNode : summaries) {
+                emitEntrySummary(request, summaryNode.get("index").asInt(), summaryNode.get("summary").asText(),
+                        listener);
+            }
+        }
+
+        ObjectNode normalized = result.isObject() ? ((ObjectNode) result).deepCopy() : objectMapper.createObjectNode();
+        normalized.set("entrySummaries", summaries);
+        return normalized;
+    }
+
+    // 돌려받은 인덱스가 모두 보낸 항목의 원래 인덱스이고 중복이 없을 때만 그대로 믿고, 아니면 위치로 매핑
+    private ArrayNode remapEntrySummaries(JsonNode summariesNode, List<DigestEntryForPrompt> sent) {
+        Set<Integer> sentIndexes = new HashSet<>();
+        sent.forEach(entry -> sentIndexes.add(entry.getIndex()));
+        Set<Integer> returnedIndexes = new HashSet<>();
+        boolean trustIndexes = true;
+        for (JsonNode summaryNode : summariesNode) {
+            int index = summaryNode.path("index").asInt(-1);
+            if (!sentIndexes.contains(index) || !returnedIndexes.add(index)) {
+                trustIndexes = false;
+                break;
+            }
+        }
+
+        ArrayNode summaries = objectMapper.createArrayNode();
+        for (int position = 0; position < summariesNode.size(); position++) {
+            JsonNode summaryNode = summariesNode.get(position);
+            if (!summaryNode.has("summary") || (!trustIndexes && position >= sent.size())) {
+                continue;
+            }
+            int index = trustIndexes ? summaryNode.get("index").asInt() : sent.get(position).getIndex();
+            summaries.addObject().put("index", index).put("summary", summaryNode.get("summary").asText());
+        }
+        return summaries;
+    }
+
+    // /title, /summary, /overallEmotion, /entrySummaries/{i}/summary 를 부분 결과로 전달
+    // 항목 요약은 배열 위치를 항목 인덱스로 간주 (최종 응답은 index 필드 기준으로 다시 매핑)
+    private void forwardDigestField(DigestRequest request, String path, String value, PartialResultListener listener) {
+        String[] segments = path.split("/");
+        if (segments.length == 2 && Set.of("title", "summary", "overallEmotion").contains(segments[1])) {
+            listener.onPartial(segments[1], Map.of("value", value));
+        } else if (segments.length == 4 && "entrySummaries".equals(segments[1]) && "summary".equals(segments[3])) {
+            emitEntrySummary(request, Integer.parseInt(segments[2]), value, listener);
+        }
+    }
+
+    private void emitEntrySummary(DigestRequest request, int index, String summary, PartialResultListener listener) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("index", index);
+        if (index >= 0 && index < request.getEntries().size()) {
+            data.put("id", request.getEntries().get(index).getId());
+        }
+        data.put("summary", summary);
+        listener.onPartial("entrySummary", data);
+    }
+
     private DigestRequestForPrompt preparePromptRequest(DigestRequest request) {
         List<DigestEntryForPrompt> entriesForPrompt = new ArrayList<>();
         
@@ -67,7 +425,18 @@ public class DigestService {
             }
             
             entryForPrompt.setOverallDaySummary(originalEntry.getOverallDaySummary());
-            entryForPrompt.setQuestions(originalEntry.getQuestions());
+            // 압축 단계에서 수정하므로 원본 요청과 공유하지 않도록 복사
+            if (originalEntry.getQuestions() != null) {
+                List<DigestEntry.Question> questions = new ArrayList<>();
+                for (DigestEntry.Question originalQuestion : originalEntry.getQuestions()) {
+                    DigestEntry.Question question = new DigestEntry.Question();
+                    question.setIndex(originalQuestion.getIndex());
+                    question.setQuestion(originalQuestion.getQuestion());
+                    question.setAnswer(originalQuestion.getAnswer());
+                    questions.add(question);
+                }
+                entryForPrompt.setQuestions(questions);
+            }
             
             entriesForPrompt.add(entryForPrompt);
         }
@@ -79,30 +448,6 @@ public class DigestService {
         return requestForPrompt;
     }
     
-    private JsonNode parseResponseJson(String jsonResponse) throws IOException {
-        try {
-            // Gemini 응답에서 실제 콘텐츠(text) 추출
-            JsonNode root = objectMapper.readTree(jsonResponse);
-            String rawText = root
-                    .path("candidates").get(0)
-                    .path("content")
-                    .path("parts").get(0)
-                    .path("text").asText();
-                
-            // JSON 포맷이 코드 블록으로 감싸져 있을 수 있으므로 제거
-            String cleaned = rawText
-                    .replaceAll("(?s)```json\\s*", "")
-                    .replaceAll("```", "").trim();
-                
-            System.out.println("원본 Gemini 응답: " + cleaned);
-                
-            // 응답 텍스트를 JsonNode로 파싱
-            return objectMapper.readTree(cleaned);
-        } catch (Exception e) {
-            throw new IOException("Failed to parse Gemini response: " + e.getMessage() + "\nFull response: " + jsonResponse, e);
-        }
-    }
-    
     private DigestResponse assembleResponse(JsonNode responseNode, List<DigestEntry> originalEntries) {
         DigestResponse response = new DigestResponse();
         
@@ -266,4 +611,23 @@ public class DigestService {
         
         return period;
     }
+
+    @Override
+    public String statsName() {
+        return "digestSummaryCache";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hits = summaryHits.get();
+        long lookups = hits + summaryMisses.get();
+        stats.put("size", summaryCache.size());
+        stats.put("hits", hits);
+        stats.put("misses", summaryMisses.get());
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        stats.put("incrementalDigests", incrementalDigests.get());
+        stats.put("estimatedTokensSaved", tokensSaved.get());
+        return stats;
+    }
 }
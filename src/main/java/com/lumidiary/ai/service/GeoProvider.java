@@ -0,0 +1,18 @@
+package com.lumidiary.ai.service;
+
+import com.lumidiary.ai.dto.Landmark;
+
+import java.util.List;
+
+/**
+ * 좌표 → 주소, 주변 랜드마크 조회 제공자.
+ * MetadataService는 @Order 순서대로 제공자를 시도하고, null을 반환하면 다음 제공자로 넘어간다.
+ */
+public interface GeoProvider {
+
+    // 주소를 모르거나 품질 기준에 못 미치면 null
+    String getAddress(double latitude, double longitude);
+
+    // 결과를 신뢰할 수 없으면 null (빈 리스트는 "주변에 랜드마크 없음"이라는 확정 결과)
+    List<Landmark> getNearbyLandmarks(double latitude, double longitude, int radius);
+}
@@ -0,0 +1,132 @@
+package com.lumidiary.ai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.lumidiary.ai.dto.Landmark;
+import com.lumidiary.ai.util.Geohash;
+import com.lumidiary.ai.util.LruCache;
+import com.lumidiary.ai.util.StatsProvider;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Google Geocoding / Places 기반 제공자. 로컬 인덱스로 답하지 못한 조회만 여기까지 온다.
+ * 결과는 geohash 셀 단위로 캐시하며, 실패는 예외로 전달되어 캐시되지 않는다.
+ */
+@Order(100)
+@Service
+@RequiredArgsConstructor
+public class GoogleGeoProvider implements GeoProvider, StatsProvider {
+
+    private final RestTemplate restTemplate;
+    private final TwoLevelCacheFactory cacheFactory;
+
+    @Value("${google.maps.api-key}")
+    private String googleMapsApiKey;
+
+    @Value("${geo.cache.precision:8}")
+    private int geohashPrecision;
+
+    @Value("${geo.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    @Value("${geo.cache.address-ttl-ms:604800000}")
+    private long addressTtlMs;
+
+    @Value("${geo.cache.landmark-ttl-ms:86400000}")
+    private long landmarkTtlMs;
+
+    // 레플리카 간 공유하여 같은 셀을 파드마다 따로 조회하지 않는다
+    private TwoLevelCache<String> addressCache;
+    private TwoLevelCache<List<Landmark>> landmarkCache;
+
+    @PostConstruct
+    public void initCaches() {
+        addressCache = cacheFactory.create("geo-address", cacheMaxSize, addressTtlMs, String.class);
+        landmarkCache = cacheFactory.create("geo-landmarks", cacheMaxSize, landmarkTtlMs,
+                cacheFactory.listType(Landmark.class));
+    }
+
+    @Override
+    public String getAddress(double lat, double lng) {
+        return load(addressCache, cellKey(lat, lng), () -> fetchAddress(lat, lng));
+    }
+
+    @Override
+    public List<Landmark> getNearbyLandmarks(double lat, double lng, int radius) {
+        return load(landmarkCache, cellKey(lat, lng) + ":" + radius, () -> fetchNearbyLandmarks(lat, lng, radius));
+    }
+
+    private <V> V load(TwoLevelCache<V> cache, String key, LruCache.Loader<V> loader) {
+        try {
+            return cache.get(key, loader);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private String cellKey(double lat, double lng) {
+        return Geohash.encode(lat, lng, geohashPrecision);
+    }
+
+    private String fetchAddress(double lat, double lng) {
+        String url = UriComponentsBuilder.fromHttpUrl("https://maps.googleapis.com/maps/api/geocode/json")
+                .queryParam("latlng", lat + "," + lng)
+                .queryParam("key", googleMapsApiKey)
+                .toUriString();
+        JsonNode response = restTemplate.getForObject(url, JsonNode.class);
+        if (response.has("results") && response.get("results").size() > 0) {
+            return response.get("results").get(0).get("formatted_address").asText();
+        }
+        return "주소 정보 없음";
+    }
+
+    private List<Landmark> fetchNearbyLandmarks(double lat, double lng, int radius) {
+        String url = UriComponentsBuilder.fromHttpUrl("https://maps.googleapis.com/maps/api/place/nearbysearch/json")
+                .queryParam("location", lat + "," + lng)
+                .queryParam("radius", radius)
+                .queryParam("fields", "place_id,name,vicinity,geometry")
+                .queryParam("key", googleMapsApiKey)
+                .toUriString();
+        List<Landmark> landmarks = new ArrayList<>();
+        JsonNode response = restTemplate.getForObject(url, JsonNode.class);
+        if (response.has("results")) {
+            for (JsonNode result : response.get("results")) {
+                JsonNode location = result.path("geometry").path("location");
+                Landmark landmark = Landmark.builder()
+                        .id(result.has("place_id") ? result.get("place_id").asText() : null)
+                        .name(result.has("name") ? result.get("name").asText() : null)
+                        .latitude(location.has("lat") ? location.get("lat").asDouble() : null)
+                        .longitude(location.has("lng") ? location.get("lng").asDouble() : null)
+                        .build();
+                landmarks.add(landmark);
+            }
+        }
+        // 캐시된 리스트가 호출자에 의해 수정되지 않도록 불변으로 보관
+        return List.copyOf(landmarks);
+    }
+
+    @Override
+    public String statsName() {
+        return "googleGeo";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("addressCache", addressCache.stats());
+        stats.put("landmarkCache", landmarkCache.stats());
+        return stats;
+    }
+}
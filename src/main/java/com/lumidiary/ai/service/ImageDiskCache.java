@@ -0,0 +1,409 @@
+package com.lumidiary.ai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lumidiary.ai.dto.Landmark;
+import com.lumidiary.ai.dto.Metadata;
+import com.lumidiary.ai.util.StatsProvider;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 다운로드한 이미지의 압축본과 메타데이터를 URL 기준으로 보관하는 로컬 디스크 캐시.
+ * 레코드는 메모리 매핑된 고정 크기 세그먼트 파일에 이어 쓰고, 읽을 때는 매핑된 영역의 읽기 전용 뷰를 돌려주므로
+ * 압축 이미지가 힙으로 복사되지 않는다. 항목마다 ETag/Last-Modified를 함께 저장하여 조건부 GET으로 재검증한다.
+ *
+ * 용량을 넘으면 가장 오래된 세그먼트를 지운다. 그 세그먼트에서 마지막으로 쓰인 뒤 읽힌 항목은
+ * 활성 세그먼트로 옮겨 한 번 더 기회를 주므로(second chance) 전체적으로 LRU에 가깝게 동작한다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageDiskCache implements StatsProvider {
+
+    // 레코드 형식이 바뀔 때마다 표식을 바꾼다. 이전 형식(인코더 MIME 타입 없음)의 세그먼트는 기동 시 지운다
+    private static final int MAGIC = 0x4C4D4944;
+    private static final int LEGACY_MAGIC = 0x4C4D4943;
+    private static final int RECORD_HEADER = 8;
+    private static final int CONTENT_HASH_BYTES = 32;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private final ObjectMapper objectMapper;
+    // 메타데이터 직렬화용. 응답에는 빠지는 랜드마크 좌표도 보관한다
+    private ObjectMapper metadataMapper;
+
+    @Value("${vision.disk-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${vision.disk-cache.path:./data/image-cache}")
+    private String cachePath;
+
+    @Value("${vision.disk-cache.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${vision.disk-cache.max-bytes:1073741824}")
+    private long maxBytes;
+
+    // data는 매핑된 세그먼트의 읽기 전용 뷰 (힙 복사 없음)
+    public record CachedImage(String validator, String mimeType, int maxDimension, int quality, long dHash,
+                              byte[] contentHash, Metadata metadata, ByteBuffer data) {
+
+        // 같은 인코더(포맷)와 해상도/품질로 압축된 항목인지
+        public boolean matches(String mimeType, int maxDimension, int quality) {
+            return this.mimeType.equals(mimeType) && this.maxDimension == maxDimension && this.quality == quality;
+        }
+    }
+
+    private final Object lock = new Object();
+    // URL → 항목. 접근 순서로 정렬
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private Path directory;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong promotions = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        private Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    // 레코드 위치와 작은 필드만 힙에 둔다
+    private static final class Entry {
+        private Segment segment;
+        private int offset;
+        private int recordLength;
+        private int dataOffset;
+        private int dataLength;
+        private final String validator;
+        private final String mimeType;
+        private final int maxDimension;
+        private final int quality;
+        private final long dHash;
+        private final byte[] contentHash;
+        private final Metadata metadata;
+        // 마지막으로 쓰인 뒤 읽혔는지 (세그먼트 회수 시 살려 둘지 결정)
+        private boolean referenced;
+
+        private Entry(String validator, String mimeType, int maxDimension, int quality, long dHash,
+                      byte[] contentHash, Metadata metadata) {
+            this.validator = validator;
+            this.mimeType = mimeType;
+            this.maxDimension = maxDimension;
+            this.quality = quality;
+            this.dHash = dHash;
+            this.contentHash = contentHash;
+            this.metadata = metadata;
+        }
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        metadataMapper = objectMapper.copy().addMixIn(Landmark.class, Landmark.WithCoordinates.class);
+        if (!enabled) {
+            return;
+        }
+        directory = Paths.get(cachePath);
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(p -> segmentId(p) >= 0).toList();
+        }
+        synchronized (lock) {
+            for (Path file : files) {
+                Segment segment = mapSegment(segmentId(file), file);
+                segments.put(segment.id, segment);
+            }
+            Iterator<Segment> it = segments.values().iterator();
+            while (it.hasNext()) {
+                Segment segment = it.next();
+                if (segment.buffer.getInt(0) == LEGACY_MAGIC) {
+                    log.info("Discarding cache segment {} written in the previous record format", segment.path);
+                    segment.channel.close();
+                    Files.deleteIfExists(segment.path);
+                    it.remove();
+                    continue;
+                }
+                scan(segment);
+            }
+            active = segments.isEmpty() ? roll() : segments.lastEntry().getValue();
+            evictIfNeeded();
+        }
+        log.info("Image disk cache ready at {} ({} entries in {} segment(s))", directory.toAbsolutePath(),
+                index.size(), segments.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (lock) {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        }
+    }
+
+    public CachedImage lookup(String url) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (lock) {
+            Entry entry = index.get(url);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            entry.referenced = true;
+            ByteBuffer data = entry.segment.buffer.slice(entry.dataOffset, entry.dataLength).asReadOnlyBuffer();
+            return new CachedImage(entry.validator, entry.mimeType, entry.maxDimension, entry.quality, entry.dHash,
+                    entry.contentHash, entry.metadata, data);
+        }
+    }
+
+    // 재검증할 validator가 없는 응답은 저장하지 않는다. 같은 URL을 다시 저장하면 이전 레코드를 대체한다
+    // 실패해도 요청 처리에는 영향이 없다
+    public void store(String url, String validator, String mimeType, int maxDimension, int quality, long dHash,
+                      byte[] contentHash, Metadata metadata, byte[] data) {
+        if (!enabled || validator == null) {
+            return;
+        }
+        try {
+            byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+            byte[] validatorBytes = validator.getBytes(StandardCharsets.UTF_8);
+            byte[] mimeTypeBytes = mimeType.getBytes(StandardCharsets.UTF_8);
+            byte[] metadataBytes = metadataMapper.writeValueAsBytes(metadata);
+            int bodyLength = 4 + urlBytes.length + 4 + validatorBytes.length + 4 + mimeTypeBytes.length
+                    + 4 + 4 + 8 + CONTENT_HASH_BYTES
+                    + 4 + metadataBytes.length + 4 + data.length;
+            if (RECORD_HEADER + bodyLength > segmentBytes || contentHash.length != CONTENT_HASH_BYTES) {
+                return;
+            }
+            synchronized (lock) {
+                // 회수 중 옮겨 온 항목이 새 세그먼트를 채웠을 수 있으므로 들어갈 때까지 반복
+                while (active.writePosition + RECORD_HEADER + bodyLength > segmentBytes) {
+                    active = roll();
+                    evictIfNeeded();
+                }
+                int offset = active.writePosition;
+                ByteBuffer out = active.buffer.duplicate();
+                out.position(offset + 4);
+                out.putInt(bodyLength);
+                putBytes(out, urlBytes);
+                putBytes(out, validatorBytes);
+                putBytes(out, mimeTypeBytes);
+                out.putInt(maxDimension);
+                out.putInt(quality);
+                out.putLong(dHash);
+                out.put(contentHash);
+                putBytes(out, metadataBytes);
+                out.putInt(data.length);
+                int dataOffset = out.position();
+                out.put(data);
+                // 본문을 다 쓴 뒤 표식을 기록하여, 중간에 죽으면 재시작 시 이 레코드를 무시한다
+                out.putInt(offset, MAGIC);
+                active.writePosition = out.position();
+
+                Entry entry = new Entry(validator, mimeType, maxDimension, quality, dHash, contentHash, metadata);
+                entry.segment = active;
+                entry.offset = offset;
+                entry.recordLength = RECORD_HEADER + bodyLength;
+                entry.dataOffset = dataOffset;
+                entry.dataLength = data.length;
+                index.put(url, entry);
+                stores.incrementAndGet();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to store image in disk cache ({}): {}", url, e.getMessage());
+        }
+    }
+
+    // 합계가 한도를 넘으면 가장 오래된 세그먼트부터 회수. 활성 세그먼트는 지우지 않는다
+    private void evictIfNeeded() {
+        while ((long) segments.size() * segmentBytes > maxBytes && segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active) {
+                break;
+            }
+            Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator();
+            List<Entry> survivors = new ArrayList<>();
+            // 앞서 살리기로 한 항목들이 차지할 자리까지 더해서 활성 세그먼트에 들어가는지 본다
+            long reservedPosition = active.writePosition;
+            while (it.hasNext()) {
+                Entry entry = it.next().getValue();
+                if (entry.segment != oldest) {
+                    continue;
+                }
+                if (entry.referenced && reservedPosition + entry.recordLength <= segmentBytes) {
+                    reservedPosition += entry.recordLength;
+                    survivors.add(entry);
+                } else {
+                    it.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+            for (Entry entry : survivors) {
+                promote(entry);
+            }
+            segments.remove(oldest.id);
+            try {
+                oldest.channel.close();
+                // 이미 반환한 뷰는 매핑이 유지되는 동안 계속 읽을 수 있다
+                Files.deleteIfExists(oldest.path);
+            } catch (IOException e) {
+                log.warn("Failed to delete cache segment {}: {}", oldest.path, e.getMessage());
+            }
+        }
+    }
+
+    // 레코드를 매핑된 버퍼끼리 그대로 복사하여 활성 세그먼트 끝으로 옮긴다
+    private void promote(Entry entry) {
+        int offset = active.writePosition;
+        ByteBuffer source = entry.segment.buffer.slice(entry.offset, entry.recordLength);
+        ByteBuffer out = active.buffer.duplicate();
+        out.position(offset);
+        out.put(source);
+        active.writePosition = out.position();
+        entry.dataOffset = offset + (entry.dataOffset - entry.offset);
+        entry.offset = offset;
+        entry.segment = active;
+        entry.referenced = false;
+        promotions.incrementAndGet();
+    }
+
+    private Segment roll() throws IOException {
+        int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        Segment segment = mapSegment(id, directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment mapSegment(int id, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        return new Segment(id, path, channel, buffer);
+    }
+
+    // 재시작 시 세그먼트를 앞에서부터 읽어 색인을 복구. 뒤에 쓰인 레코드가 같은 URL의 앞 레코드를 대체한다
+    private void scan(Segment segment) {
+        ByteBuffer in = segment.buffer.duplicate();
+        int position = 0;
+        try {
+            while (position + RECORD_HEADER <= segmentBytes && in.getInt(position) == MAGIC) {
+                int bodyLength = in.getInt(position + 4);
+                in.position(position + RECORD_HEADER);
+                String url = new String(getBytes(in), StandardCharsets.UTF_8);
+                String validator = new String(getBytes(in), StandardCharsets.UTF_8);
+                String mimeType = new String(getBytes(in), StandardCharsets.UTF_8);
+                int maxDimension = in.getInt();
+                int quality = in.getInt();
+                long dHash = in.getLong();
+                byte[] contentHash = new byte[CONTENT_HASH_BYTES];
+                in.get(contentHash);
+                Metadata metadata = metadataMapper.readValue(getBytes(in), Metadata.class);
+                int dataLength = in.getInt();
+
+                Entry entry = new Entry(validator, mimeType, maxDimension, quality, dHash, contentHash, metadata);
+                entry.segment = segment;
+                entry.offset = position;
+                entry.recordLength = RECORD_HEADER + bodyLength;
+                entry.dataOffset = in.position();
+                entry.dataLength = dataLength;
+                index.put(url, entry);
+                position += RECORD_HEADER + bodyLength;
+            }
+        } catch (Exception e) {
+            log.warn("Cache segment {} is truncated at offset {}: {}", segment.path, position, e.getMessage());
+        }
+        segment.writePosition = position;
+    }
+
+    private static void putBytes(ByteBuffer out, byte[] bytes) {
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    private static byte[] getBytes(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static int segmentId(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "imageDiskCache";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get();
+        synchronized (lock) {
+            stats.put("entries", index.size());
+            stats.put("segments", segments.size());
+            stats.put("mappedBytes", (long) segments.size() * segmentBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+        stats.put("stores", stores.get());
+        stats.put("promotions", promotions.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+}
@@ -0,0 +1,165 @@
+package com.lumidiary.ai.service;
+
+import com.lumidiary.ai.util.StatsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Vision 파이프라인 전체가 공유하는 원본 이미지 바이트 예산.
+ * 다운로드 전에 예산을 예약하고, 예산이 바닥나면 새 다운로드는 메모리를 할당하지 않고 기다린다.
+ * 원본은 압축 직후 반환하며, 단계별(원본/압축본) 보유 바이트를 게이지로 노출한다.
+ */
+@Slf4j
+@Component
+public class ImageMemoryBudget implements StatsProvider {
+
+    public enum Stage {
+        ORIGINAL, COMPRESSED
+    }
+
+    private final long budgetBytes;
+    private final long acquireTimeoutMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long reservedBytes;
+
+    private final Map<Stage, AtomicLong> gauges = new EnumMap<>(Stage.class);
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong peakReservedBytes = new AtomicLong();
+
+    public ImageMemoryBudget(@Value("${vision.memory.budget-bytes:268435456}") long budgetBytes,
+                             @Value("${vision.memory.acquire-timeout-ms:60000}") long acquireTimeoutMs) {
+        this.budgetBytes = budgetBytes;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        for (Stage stage : Stage.values()) {
+            gauges.put(stage, new AtomicLong());
+        }
+    }
+
+    /**
+     * 원본 다운로드용 예산을 예약한다. 예산이 부족하면 다른 요청이 반환할 때까지 기다린다.
+     * 아무것도 예약되지 않은 상태라면 예산보다 큰 요청도 허용하여 교착을 막는다.
+     */
+    public Reservation reserve(long bytes) throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+        lock.lock();
+        try {
+            boolean waited = false;
+            while (reservedBytes > 0 && reservedBytes + bytes > budgetBytes) {
+                if (!waited) {
+                    waits.incrementAndGet();
+                    waited = true;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    timeouts.incrementAndGet();
+                    throw new TimeoutException("이미지 메모리 예산 대기 시간 초과 (" + bytes + " bytes)");
+                }
+                released.awaitNanos(remaining);
+            }
+            add(bytes);
+        } finally {
+            lock.unlock();
+        }
+        gauges.get(Stage.ORIGINAL).addAndGet(bytes);
+        return new Reservation(bytes);
+    }
+
+    public void track(Stage stage, long bytes) {
+        gauges.get(stage).addAndGet(bytes);
+    }
+
+    public void untrack(Stage stage, long bytes) {
+        gauges.get(stage).addAndGet(-bytes);
+    }
+
+    private void add(long bytes) {
+        reservedBytes += bytes;
+        peakReservedBytes.accumulateAndGet(reservedBytes, Math::max);
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            reservedBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        gauges.get(Stage.ORIGINAL).addAndGet(-bytes);
+    }
+
+    @Override
+    public String statsName() {
+        return "imageMemory";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("budgetBytes", budgetBytes);
+        lock.lock();
+        try {
+            stats.put("reservedBytes", reservedBytes);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("peakReservedBytes", peakReservedBytes.get());
+        gauges.forEach((stage, gauge) -> stats.put(stage.name().toLowerCase() + "Bytes", gauge.get()));
+        stats.put("waits", waits.get());
+        stats.put("timeouts", timeouts.get());
+        return stats;
+    }
+
+    /**
+     * 원본 이미지 하나에 대한 예약. 실제 크기를 알게 되면 resize로 맞추고, 원본을 버리는 즉시 close한다.
+     */
+    public class Reservation implements AutoCloseable {
+
+        private long bytes;
+        private boolean closed;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        // 이미 할당된 메모리를 반영하는 것이므로 늘어날 때도 기다리지 않는다
+        public void resize(long actualBytes) {
+            long delta = actualBytes - bytes;
+            if (delta == 0) {
+                return;
+            }
+            lock.lock();
+            try {
+                add(delta);
+                if (delta < 0) {
+                    released.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+            gauges.get(Stage.ORIGINAL).addAndGet(delta);
+            bytes = actualBytes;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.lumidiary.ai.service;
+
+import com.lumidiary.ai.dto.Landmark;
+import com.lumidiary.ai.util.PoiKdTree;
+import com.lumidiary.ai.util.StatsProvider;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 오프라인 장소/POI 데이터셋 기반 제공자.
+ * 데이터셋은 "latitude, longitude, id, name, address" 순서의 탭 구분 파일이며('#'으로 시작하는 줄은 무시),
+ * 기동이 끝나면 백그라운드에서 PoiKdTree로 인덱싱한다. 인덱스가 준비되기 전이나 품질 기준을 만족하지 못하면
+ * null을 반환해 Google로 넘긴다.
+ */
+@Slf4j
+@Order(0)
+@Service
+@RequiredArgsConstructor
+public class LocalGeoProvider implements GeoProvider, StatsProvider {
+
+    private final ResourceLoader resourceLoader;
+
+    // 비어 있으면 로컬 조회를 사용하지 않는다
+    @Value("${geo.local.poi-file:}")
+    private String poiFile;
+
+    // 이 거리 안에 주소가 있는 지점이 있어야 로컬 주소를 사용
+    @Value("${geo.local.address-max-distance-m:100}")
+    private double addressMaxDistanceMeters;
+
+    // 반경 안에 최소 이만큼의 지점이 있어야 로컬 랜드마크를 사용
+    @Value("${geo.local.min-landmarks:3}")
+    private int minLandmarks;
+
+    @Value("${geo.local.max-landmarks:20}")
+    private int maxLandmarks;
+
+    private volatile PoiKdTree index;
+    private volatile boolean loadFailed;
+    private volatile long buildMillis;
+
+    private final AtomicLong addressHits = new AtomicLong();
+    private final AtomicLong addressMisses = new AtomicLong();
+    private final AtomicLong landmarkHits = new AtomicLong();
+    private final AtomicLong landmarkMisses = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong queryNanos = new AtomicLong();
+    private final AtomicLong notReady = new AtomicLong();
+
+    @Override
+    public String getAddress(double lat, double lng) {
+        PoiKdTree tree = currentIndex();
+        if (tree == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            // 주소가 없는 지점이 더 가까이 많이 있어도 놓치지 않도록 주소가 있는 지점만 대상으로 최근접 검색
+            int point = tree.nearestWithField(lat, lng, addressMaxDistanceMeters, PoiKdTree.FIELD_ADDRESS);
+            if (point < 0) {
+                addressMisses.incrementAndGet();
+                return null;
+            }
+            addressHits.incrementAndGet();
+            return tree.field(point, PoiKdTree.FIELD_ADDRESS);
+        } finally {
+            recordQuery(start);
+        }
+    }
+
+    @Override
+    public List<Landmark> getNearbyLandmarks(double lat, double lng, int radius) {
+        PoiKdTree tree = currentIndex();
+        if (tree == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            int[] points = tree.withinRadius(lat, lng, radius, maxLandmarks);
+            if (points.length < minLandmarks) {
+                landmarkMisses.incrementAndGet();
+                return null;
+            }
+            List<Landmark> landmarks = new ArrayList<>(points.length);
+            for (int point : points) {
+                landmarks.add(Landmark.builder()
+                        .id(tree.field(point, PoiKdTree.FIELD_ID))
+                        .name(tree.field(point, PoiKdTree.FIELD_NAME))
+                        .latitude(tree.latitude(point))
+                        .longitude(tree.longitude(point))
+                        .build());
+            }
+            landmarkHits.incrementAndGet();
+            return landmarks;
+        } finally {
+            recordQuery(start);
+        }
+    }
+
+    private void recordQuery(long startNanos) {
+        queries.incrementAndGet();
+        queryNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+
+    // 인덱스가 아직 없으면 기다리지 않고 null (호출 측은 다음 제공자로 넘어간다)
+    private PoiKdTree currentIndex() {
+        PoiKdTree current = index;
+        if (current == null && isConfigured() && !loadFailed) {
+            notReady.incrementAndGet();
+        }
+        return current;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (!isConfigured()) {
+            return;
+        }
+        ExecutorService loader = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("poi-index-"));
+        loader.execute(this::loadIndex);
+        loader.shutdown();
+    }
+
+    private boolean isConfigured() {
+        return poiFile != null && !poiFile.isEmpty();
+    }
+
+    private void loadIndex() {
+        try {
+            index = buildIndex();
+        } catch (Exception e) {
+            loadFailed = true;
+            log.error("Failed to load POI dataset from {}: {}", poiFile, e.getMessage(), e);
+        }
+    }
+
+    private PoiKdTree buildIndex() throws Exception {
+        long start = System.currentTimeMillis();
+        PoiKdTree.Builder builder = new PoiKdTree.Builder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                resourceLoader.getResource(poiFile).getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split("\t", -1);
+                if (columns.length < 4) {
+                    continue;
+                }
+                builder.add(Double.parseDouble(columns[0]), Double.parseDouble(columns[1]), columns[2], columns[3],
+                        columns.length > 4 ? columns[4] : null);
+            }
+        }
+        PoiKdTree tree = builder.build();
+        buildMillis = System.currentTimeMillis() - start;
+        log.info("Indexed {} POIs from {} in {} ms (~{} KB)", tree.size(), poiFile, buildMillis,
+                tree.memoryBytes() / 1024);
+        return tree;
+    }
+
+    @Override
+    public String statsName() {
+        return "localGeo";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        PoiKdTree tree = index;
+        long queryCount = queries.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("points", tree != null ? tree.size() : 0);
+        stats.put("memoryBytes", tree != null ? tree.memoryBytes() : 0);
+        stats.put("buildMillis", buildMillis);
+        stats.put("loadFailed", loadFailed);
+        stats.put("notReady", notReady.get());
+        stats.put("addressHits", addressHits.get());
+        stats.put("addressMisses", addressMisses.get());
+        stats.put("landmarkHits", landmarkHits.get());
+        stats.put("landmarkMisses", landmarkMisses.get());
+        stats.put("avgQueryMicros", queryCount == 0 ? 0 : queryNanos.get() / queryCount / 1000);
+        return stats;
+    }
+}
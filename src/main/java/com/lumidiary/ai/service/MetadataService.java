@@ -6,7 +6,10 @@ import com.drew.metadata.exif.GpsDirectory;
 import com.lumidiary.ai.dto.Landmark;
 import com.lumidiary.ai.dto.Location;
 import com.lumidiary.ai.dto.Metadata;
+import com.lumidiary.ai.util.Geohash;
+import com.lumidiary.ai.util.StatsProvider;
 import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -18,22 +21,55 @@ import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
 @Service
 @RequiredArgsConstructor
-public class MetadataService {
+public class MetadataService implements StatsProvider {
 
     private final RestTemplate restTemplate;
+    private final OfflineTimeZoneResolver offlineTimeZoneResolver;
+    // @Order 순서: 로컬 인덱스 → Google
+    private final List<GeoProvider> geoProviders;
+    private final TwoLevelCacheFactory cacheFactory;
 
     @Value("${google.maps.api-key}")
     private String googleMapsApiKey;
 
+    // 좌표를 이 정밀도의 geohash 셀로 묶어 캐시 (8 ≈ 38m × 19m)
+    @Value("${geo.cache.precision:8}")
+    private int geohashPrecision;
+
+    // 오프라인 경계 인덱스로 시간대를 찾지 못했을 때 Google Time Zone API 사용 여부
+    @Value("${geo.timezone.google-fallback:true}")
+    private boolean timeZoneGoogleFallback;
+
+    @Value("${geo.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    @Value("${geo.cache.time-zone-ttl-ms:2592000000}")
+    private long timeZoneTtlMs;
+
+    // 레플리카 간 공유 (TimeZone은 ID 문자열로 직렬화됨)
+    private TwoLevelCache<TimeZone> timeZoneCache;
+
+    @PostConstruct
+    public void initCaches() {
+        timeZoneCache = cacheFactory.create("geo-timezone", cacheMaxSize, timeZoneTtlMs, TimeZone.class);
+    }
+
     // Modified method: accepts image bytes instead of MultipartFile
     public Metadata extractMetadata(byte[] imageBytes) throws Exception {
+        return extractMetadata(new ByteArrayInputStream(imageBytes));
+    }
+
+    // JPEG는 SOS 마커까지의 헤더만 있어도 EXIF/GPS를 모두 읽을 수 있다
+    public Metadata extractMetadata(InputStream imageStream) throws Exception {
         Metadata.MetadataBuilder builder = Metadata.builder();
-        try (InputStream input = new ByteArrayInputStream(imageBytes)) {
+        try (InputStream input = imageStream) {
             com.drew.metadata.Metadata meta = ImageMetadataReader.readMetadata(input);
             
             // GPS 정보 추출
@@ -79,66 +115,87 @@ public class MetadataService {
     
     // 좌표로부터 시간대 정보를 가져오는 메소드
     private TimeZone getTimeZoneFromCoordinates(double lat, double lng) {
-        String url = UriComponentsBuilder.fromHttpUrl("https://maps.googleapis.com/maps/api/timezone/json")
-                .queryParam("location", lat + "," + lng)
-                .queryParam("timestamp", System.currentTimeMillis() / 1000)
-                .queryParam("key", googleMapsApiKey)
-                .toUriString();
-                
+        TimeZone offline = offlineTimeZoneResolver.resolve(lat, lng);
+        if (offline != null) {
+            return offline;
+        }
+        if (!timeZoneGoogleFallback) {
+            return TimeZone.getDefault();
+        }
         try {
-            JsonNode response = restTemplate.getForObject(url, JsonNode.class);
-            if (response != null && response.has("timeZoneId")) {
-                String timeZoneId = response.get("timeZoneId").asText();
-                return TimeZone.getTimeZone(timeZoneId);
-            }
+            return timeZoneCache.get(cellKey(lat, lng), () -> fetchTimeZone(lat, lng));
         } catch (Exception e) {
             System.err.println("시간대 조회 실패: " + e.getMessage());
         }
-        
         return TimeZone.getDefault();
     }
-    
+
     private String getAddressFromCoordinates(double lat, double lng) {
-        String url = UriComponentsBuilder.fromHttpUrl("https://maps.googleapis.com/maps/api/geocode/json")
-                .queryParam("latlng", lat + "," + lng)
-                .queryParam("key", googleMapsApiKey)
-                .toUriString();
-        try {
-            JsonNode response = restTemplate.getForObject(url, JsonNode.class);
-            if (response.has("results") && response.get("results").size() > 0) {
-                return response.get("results").get(0).get("formatted_address").asText();
+        Exception lastError = null;
+        for (GeoProvider provider : geoProviders) {
+            try {
+                String address = provider.getAddress(lat, lng);
+                if (address != null) {
+                    return address;
+                }
+            } catch (Exception e) {
+                lastError = e;
             }
-        } catch (Exception e) {
-            return "주소 조회 실패: " + e.getMessage();
         }
-        return "주소 정보 없음";
+        return lastError != null ? "주소 조회 실패: " + lastError.getMessage() : "주소 정보 없음";
     }
-    
+
     private List<Landmark> getNearbyLandmarks(double lat, double lng, int radius) {
-        String url = UriComponentsBuilder.fromHttpUrl("https://maps.googleapis.com/maps/api/place/nearbysearch/json")
-                .queryParam("location", lat + "," + lng)
-                .queryParam("radius", radius)
-                .queryParam("fields", "place_id,name,vicinity")
-                .queryParam("key", googleMapsApiKey)
-                .toUriString();
-        List<Landmark> landmarks = new ArrayList<>();
-        try {
-            JsonNode response = restTemplate.getForObject(url, JsonNode.class);
-            if (response.has("results")) {
-                for (JsonNode result : response.get("results")) {
-                    Landmark landmark = Landmark.builder()
-                            .id(result.has("place_id") ? result.get("place_id").asText() : null)
-                            .name(result.has("name") ? result.get("name").asText() : null)
-                            .build();
-                    landmarks.add(landmark);
+        Exception lastError = null;
+        for (GeoProvider provider : geoProviders) {
+            try {
+                List<Landmark> landmarks = provider.getNearbyLandmarks(lat, lng, radius);
+                if (landmarks != null) {
+                    return landmarks;
                 }
+            } catch (Exception e) {
+                lastError = e;
             }
-        } catch (Exception e) {
+        }
+        List<Landmark> landmarks = new ArrayList<>();
+        if (lastError != null) {
             landmarks.add(Landmark.builder()
                     .id("error")
-                    .name("조회 실패: " + e.getMessage())
+                    .name("조회 실패: " + lastError.getMessage())
                     .build());
         }
         return landmarks;
     }
+
+    private String cellKey(double lat, double lng) {
+        return Geohash.encode(lat, lng, geohashPrecision);
+    }
+
+    // 실패는 예외로 던져 캐시에 남지 않도록 한다
+    private TimeZone fetchTimeZone(double lat, double lng) {
+        String url = UriComponentsBuilder.fromHttpUrl("https://maps.googleapis.com/maps/api/timezone/json")
+                .queryParam("location", lat + "," + lng)
+                .queryParam("timestamp", System.currentTimeMillis() / 1000)
+                .queryParam("key", googleMapsApiKey)
+                .toUriString();
+
+        JsonNode response = restTemplate.getForObject(url, JsonNode.class);
+        if (response != null && response.has("timeZoneId")) {
+            String timeZoneId = response.get("timeZoneId").asText();
+            return TimeZone.getTimeZone(timeZoneId);
+        }
+        throw new IllegalStateException("timeZoneId 없음: " + (response != null ? response.path("status").asText() : "null"));
+    }
+
+    @Override
+    public String statsName() {
+        return "geoCache";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("timeZone", timeZoneCache.stats());
+        return stats;
+    }
 }
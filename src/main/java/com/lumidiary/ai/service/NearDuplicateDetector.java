@@ -0,0 +1,116 @@
+package com.lumidiary.ai.service;
+
+import com.lumidiary.ai.dto.Metadata;
+import com.lumidiary.ai.util.DHash;
+import com.lumidiary.ai.util.StatsProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 한 요청 안에서 연사처럼 거의 같은 사진을 묶는다.
+ * dHash 해밍 거리가 임계값 이하이고, 촬영 시각을 둘 다 알면 그 차이도 허용 범위 안일 때 같은 그룹으로 본다.
+ */
+@Component
+public class NearDuplicateDetector implements StatsProvider {
+
+    private static final DateTimeFormatter CAPTURE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Value("${vision.dedupe.enabled:true}")
+    private boolean enabled;
+
+    // 64비트 중 이 개수 이하로 다르면 근접 중복
+    @Value("${vision.dedupe.max-distance:8}")
+    private int maxDistance;
+
+    // 촬영 시각이 이보다 멀면 비슷해 보여도 다른 사진으로 취급
+    @Value("${vision.dedupe.max-seconds-apart:300}")
+    private long maxSecondsApart;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong images = new AtomicLong();
+    private final AtomicLong collapsedImages = new AtomicLong();
+
+    /**
+     * 이미지 순서대로 그룹을 만든다. 각 그룹의 첫 원소(가장 앞선 이미지)가 대표.
+     * 비활성화되어 있으면 모든 이미지가 자기 혼자인 그룹.
+     */
+    public List<List<Integer>> group(List<Long> hashes, List<Metadata> metadata) {
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int i = 0; i < hashes.size(); i++) {
+            List<Integer> match = null;
+            if (enabled) {
+                for (List<Integer> group : groups) {
+                    int representative = group.get(0);
+                    if (DHash.distance(hashes.get(i), hashes.get(representative)) <= maxDistance
+                            && closeInTime(metadata.get(i), metadata.get(representative))) {
+                        match = group;
+                        break;
+                    }
+                }
+            }
+            if (match != null) {
+                match.add(i);
+            } else {
+                List<Integer> group = new ArrayList<>();
+                group.add(i);
+                groups.add(group);
+            }
+        }
+        requests.incrementAndGet();
+        images.addAndGet(hashes.size());
+        collapsedImages.addAndGet(hashes.size() - groups.size());
+        return groups;
+    }
+
+    // 결과 캐시 키에 넣을 설정 요약. 설정이 바뀌면 같은 사진이라도 묶음과 응답이 달라질 수 있다
+    public String settingsKey() {
+        return "dedupe:" + enabled + "/" + maxDistance + "/" + maxSecondsApart;
+    }
+
+    // 촬영 시각을 하나라도 모르면 해시만으로 판단
+    private boolean closeInTime(Metadata a, Metadata b) {
+        LocalDateTime first = captureTime(a);
+        LocalDateTime second = captureTime(b);
+        if (first == null || second == null) {
+            return true;
+        }
+        return Math.abs(Duration.between(first, second).getSeconds()) <= maxSecondsApart;
+    }
+
+    private static LocalDateTime captureTime(Metadata metadata) {
+        if (metadata == null || metadata.getCaptureDate() == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(metadata.getCaptureDate(), CAPTURE_DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "visionDedupe";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxDistance", maxDistance);
+        stats.put("requests", requests.get());
+        stats.put("images", images.get());
+        stats.put("collapsedImages", collapsedImages.get());
+        return stats;
+    }
+}
@@ -0,0 +1,258 @@
+package com.lumidiary.ai.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lumidiary.ai.util.StatsProvider;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 시간대 경계 폴리곤(GeoJSON)으로 좌표의 시간대를 네트워크 호출 없이 찾는다.
+ * 경계 파일은 timezone-boundary-builder 릴리스의 combined GeoJSON(properties.tzid)을 사용하며 (Dockerfile 참고),
+ * 기동이 끝나면 별도 스레드에서 한 번 읽어 1도 격자 인덱스를 만든 뒤 격자 후보 폴리곤에 대해서만 point-in-polygon 검사를 한다.
+ * 파일이 100MB 안팎이라 요청 경로에서 읽지 않으며, 인덱스가 준비되기 전의 조회는 null을 반환해 Google로 넘긴다.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OfflineTimeZoneResolver implements StatsProvider {
+
+    private static final int GRID_COLUMNS = 360;
+    private static final int GRID_ROWS = 180;
+
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+
+    // 비어 있으면 오프라인 조회를 사용하지 않는다
+    @Value("${geo.timezone.boundary-file:}")
+    private String boundaryFile;
+
+    private volatile Index index;
+    private volatile boolean loadFailed;
+
+    private final AtomicLong resolved = new AtomicLong();
+    private final AtomicLong unresolved = new AtomicLong();
+    private final AtomicLong notReady = new AtomicLong();
+
+    /**
+     * 좌표가 속한 시간대를 반환한다. 경계 파일이 없거나 어떤 폴리곤에도 속하지 않으면 null.
+     */
+    public TimeZone resolve(double latitude, double longitude) {
+        Index current = index;
+        if (current == null) {
+            if (isConfigured() && !loadFailed) {
+                notReady.incrementAndGet();
+            }
+            return null;
+        }
+        String tzid = current.lookup(longitude, latitude);
+        if (tzid == null) {
+            unresolved.incrementAndGet();
+            return null;
+        }
+        resolved.incrementAndGet();
+        return TimeZone.getTimeZone(tzid);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (!isConfigured()) {
+            return;
+        }
+        ExecutorService loader = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("timezone-index-"));
+        loader.execute(this::loadIndex);
+        loader.shutdown();
+    }
+
+    private boolean isConfigured() {
+        return boundaryFile != null && !boundaryFile.isEmpty();
+    }
+
+    private void loadIndex() {
+        try {
+            index = buildIndex(resourceLoader.getResource(boundaryFile));
+        } catch (Exception e) {
+            loadFailed = true;
+            log.error("Failed to load time zone boundaries from {}: {}", boundaryFile, e.getMessage(), e);
+        }
+    }
+
+    // 전체 트리를 만들지 않고 feature 단위로 스트리밍 파싱
+    private Index buildIndex(Resource resource) throws Exception {
+        long start = System.currentTimeMillis();
+        List<Polygon> polygons = new ArrayList<>();
+        JsonFactory factory = objectMapper.getFactory();
+        try (InputStream in = resource.getInputStream(); JsonParser parser = factory.createParser(in)) {
+            while (parser.nextToken() != null) {
+                if (parser.currentToken() == JsonToken.FIELD_NAME && "features".equals(parser.currentName())) {
+                    parser.nextToken(); // START_ARRAY
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        JsonNode feature = objectMapper.readTree(parser);
+                        addFeature(feature, polygons);
+                    }
+                    break;
+                }
+            }
+        }
+        Index built = new Index(polygons);
+        log.info("Loaded {} time zone polygons from {} in {} ms", polygons.size(), boundaryFile,
+                System.currentTimeMillis() - start);
+        return built;
+    }
+
+    private void addFeature(JsonNode feature, List<Polygon> polygons) {
+        String tzid = feature.path("properties").path("tzid").asText(null);
+        JsonNode geometry = feature.path("geometry");
+        if (tzid == null || geometry.isMissingNode()) {
+            return;
+        }
+        String type = geometry.path("type").asText();
+        JsonNode coordinates = geometry.path("coordinates");
+        if ("Polygon".equals(type)) {
+            polygons.add(Polygon.of(tzid, coordinates));
+        } else if ("MultiPolygon".equals(type)) {
+            for (JsonNode polygon : coordinates) {
+                polygons.add(Polygon.of(tzid, polygon));
+            }
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "offlineTimeZone";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Index current = index;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", current != null);
+        stats.put("polygons", current != null ? current.polygons.length : 0);
+        stats.put("resolved", resolved.get());
+        stats.put("unresolved", unresolved.get());
+        stats.put("loadFailed", loadFailed);
+        stats.put("notReady", notReady.get());
+        return stats;
+    }
+
+    private static class Index {
+        private final Polygon[] polygons;
+        private final int[][] grid;
+
+        private Index(List<Polygon> polygonList) {
+            this.polygons = polygonList.toArray(new Polygon[0]);
+            List<List<Integer>> cells = new ArrayList<>(GRID_COLUMNS * GRID_ROWS);
+            for (int i = 0; i < GRID_COLUMNS * GRID_ROWS; i++) {
+                cells.add(null);
+            }
+            for (int p = 0; p < polygons.length; p++) {
+                Polygon polygon = polygons[p];
+                for (int row = row(polygon.minY); row <= row(polygon.maxY); row++) {
+                    for (int col = column(polygon.minX); col <= column(polygon.maxX); col++) {
+                        int cell = row * GRID_COLUMNS + col;
+                        if (cells.get(cell) == null) {
+                            cells.set(cell, new ArrayList<>());
+                        }
+                        cells.get(cell).add(p);
+                    }
+                }
+            }
+            this.grid = new int[cells.size()][];
+            for (int i = 0; i < cells.size(); i++) {
+                List<Integer> candidates = cells.get(i);
+                grid[i] = candidates == null ? new int[0]
+                        : candidates.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        private String lookup(double x, double y) {
+            for (int p : grid[row(y) * GRID_COLUMNS + column(x)]) {
+                if (polygons[p].contains(x, y)) {
+                    return polygons[p].tzid;
+                }
+            }
+            return null;
+        }
+
+        private static int column(double x) {
+            return Math.min(GRID_COLUMNS - 1, Math.max(0, (int) Math.floor(x + 180)));
+        }
+
+        private static int row(double y) {
+            return Math.min(GRID_ROWS - 1, Math.max(0, (int) Math.floor(y + 90)));
+        }
+    }
+
+    // 외곽 링과 구멍 링을 even-odd 규칙으로 함께 검사
+    private static class Polygon {
+        private final String tzid;
+        private final double[][] xs;
+        private final double[][] ys;
+        private double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        private double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+
+        private Polygon(String tzid, int ringCount) {
+            this.tzid = tzid;
+            this.xs = new double[ringCount][];
+            this.ys = new double[ringCount][];
+        }
+
+        private static Polygon of(String tzid, JsonNode rings) {
+            Polygon polygon = new Polygon(tzid, rings.size());
+            for (int r = 0; r < rings.size(); r++) {
+                JsonNode ring = rings.get(r);
+                double[] x = new double[ring.size()];
+                double[] y = new double[ring.size()];
+                for (int i = 0; i < ring.size(); i++) {
+                    x[i] = ring.get(i).get(0).asDouble();
+                    y[i] = ring.get(i).get(1).asDouble();
+                    polygon.minX = Math.min(polygon.minX, x[i]);
+                    polygon.maxX = Math.max(polygon.maxX, x[i]);
+                    polygon.minY = Math.min(polygon.minY, y[i]);
+                    polygon.maxY = Math.max(polygon.maxY, y[i]);
+                }
+                polygon.xs[r] = x;
+                polygon.ys[r] = y;
+            }
+            return polygon;
+        }
+
+        private boolean contains(double x, double y) {
+            if (x < minX || x > maxX || y < minY || y > maxY) {
+                return false;
+            }
+            boolean inside = false;
+            for (int r = 0; r < xs.length; r++) {
+                double[] rx = xs[r];
+                double[] ry = ys[r];
+                for (int i = 0, j = rx.length - 1; i < rx.length; j = i++) {
+                    if ((ry[i] > y) != (ry[j] > y)
+                            && x < (rx[j] - rx[i]) * (y - ry[i]) / (ry[j] - ry[i]) + rx[i]) {
+                        inside = !inside;
+                    }
+                }
+            }
+            return inside;
+        }
+    }
+}
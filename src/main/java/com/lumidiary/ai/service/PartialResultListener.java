@@ -0,0 +1,10 @@
+package com.lumidiary.ai.service;
+
+/**
+ * 스트리밍 생성 중 완성된 필드를 바로 전달받는 콜백.
+ * event는 필드 종류(description, title 등), data는 JSON으로 직렬화할 값.
+ */
+@FunctionalInterface
+public interface PartialResultListener {
+    void onPartial(String event, Object data);
+}
@@ -0,0 +1,149 @@
+package com.lumidiary.ai.service;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lumidiary.ai.integration.RemoteCache;
+import com.lumidiary.ai.util.LruCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 인스턴스 로컬 near 캐시(L1) 앞단 + 레플리카 공유 계층(L2).
+ * 조회는 L1 → L2 → loader 순서이며 loader 결과는 두 계층에 모두 기록한다(write-through).
+ * 같은 키의 동시 조회는 인스턴스 안에서 하나로 합쳐진다. 공유 계층 오류는 미스로 취급하여 요청을 실패시키지 않는다.
+ * 공유 계층이 없으면(remote가 null, local 모드) L1만 쓴다.
+ *
+ * 명시적 무효화는 두지 않는다. 키가 입력 내용(이미지 해시, 프롬프트 버전, 좌표 셀 등)에서 나오므로
+ * 같은 키의 값이 바뀌지 않고, 외부 데이터(지오코딩 결과 등)의 변화는 TTL로만 반영한다.
+ */
+@Slf4j
+public class TwoLevelCache<V> {
+
+    private final String namespace;
+    private final LruCache<String, V> near;
+    private final RemoteCache remote;
+    private final ObjectMapper objectMapper;
+    private final JavaType type;
+    private final long remoteTtlMs;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong nearMisses = new AtomicLong();
+    private final AtomicLong remoteHits = new AtomicLong();
+    private final AtomicLong remoteErrors = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    TwoLevelCache(String namespace, int nearMaxSize, long nearTtlMs, long remoteTtlMs, RemoteCache remote,
+                  ObjectMapper objectMapper, JavaType type) {
+        this.namespace = namespace;
+        this.near = new LruCache<>(nearMaxSize, nearTtlMs);
+        this.remote = remote;
+        this.objectMapper = objectMapper;
+        this.type = type;
+        this.remoteTtlMs = remoteTtlMs;
+    }
+
+    public V get(String key, LruCache.Loader<V> loader) throws Exception {
+        lookups.incrementAndGet();
+        return near.get(key, () -> {
+            nearMisses.incrementAndGet();
+            V shared = remoteGet(key);
+            if (shared != null) {
+                return shared;
+            }
+            V value = loader.load();
+            if (value != null) {
+                remotePut(key, value);
+            }
+            return value;
+        });
+    }
+
+    public V getIfPresent(String key) {
+        lookups.incrementAndGet();
+        V value = near.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        nearMisses.incrementAndGet();
+        value = remoteGet(key);
+        if (value != null) {
+            near.put(key, value);
+        }
+        return value;
+    }
+
+    public void put(String key, V value) {
+        near.put(key, value);
+        remotePut(key, value);
+    }
+
+    public int size() {
+        return near.size();
+    }
+
+    private V remoteGet(String key) {
+        if (remote == null) {
+            return null;
+        }
+        try {
+            byte[] bytes = remote.get(remoteKey(key));
+            if (bytes == null) {
+                return null;
+            }
+            remoteHits.incrementAndGet();
+            return objectMapper.readValue(bytes, type);
+        } catch (Exception e) {
+            remoteErrors.incrementAndGet();
+            log.debug("Shared cache read failed for {}: {}", namespace, e.getMessage());
+            return null;
+        }
+    }
+
+    private void remotePut(String key, V value) {
+        if (remote == null) {
+            return;
+        }
+        try {
+            remote.put(remoteKey(key), objectMapper.writeValueAsBytes(value), remoteTtlMs);
+            writes.incrementAndGet();
+        } catch (Exception e) {
+            remoteErrors.incrementAndGet();
+            log.debug("Shared cache write failed for {}: {}", namespace, e.getMessage());
+        }
+    }
+
+    // 네임스페이스를 붙여 해시한 키. 링 위에 고르게 퍼지고 URL 경로에 그대로 쓸 수 있다
+    private String remoteKey(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((namespace + ":" + key).getBytes(StandardCharsets.UTF_8));
+            return namespace + "-" + HexFormat.of().formatHex(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long total = lookups.get();
+        long misses = nearMisses.get();
+        long l2Hits = remoteHits.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", near.size());
+        stats.put("lookups", total);
+        stats.put("l1Hits", total - misses);
+        stats.put("l1HitRate", total == 0 ? 0.0 : (double) (total - misses) / total);
+        stats.put("l2Hits", l2Hits);
+        stats.put("l2HitRate", misses == 0 ? 0.0 : (double) l2Hits / misses);
+        stats.put("misses", misses - l2Hits);
+        stats.put("coalesced", near.stats().get("coalesced"));
+        stats.put("writes", writes.get());
+        stats.put("remoteErrors", remoteErrors.get());
+        return stats;
+    }
+}
@@ -0,0 +1,75 @@
+package com.lumidiary.ai.service;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lumidiary.ai.dto.Landmark;
+import com.lumidiary.ai.integration.LocalRemoteCache;
+import com.lumidiary.ai.integration.RemoteCache;
+import com.lumidiary.ai.util.StatsProvider;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 이름별 2단 캐시를 만들고 계층별 적중률을 한곳에서 보고한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class TwoLevelCacheFactory implements StatsProvider {
+
+    private final RemoteCache remoteCache;
+    private final ObjectMapper objectMapper;
+
+    // 공유 계층이 있으면 L1 항목은 이보다 오래 두지 않는다 (공유 계층에서 만료·축출된 값을 계속 쓰는 최대 시간)
+    @Value("${cache.near.max-ttl-ms:600000}")
+    private long nearMaxTtlMs;
+
+    private final Map<String, TwoLevelCache<?>> caches = new ConcurrentHashMap<>();
+    // 캐시 값 직렬화용. 응답에는 빠지는 랜드마크 좌표도 보관한다
+    private ObjectMapper cacheMapper;
+
+    @PostConstruct
+    public void init() {
+        cacheMapper = objectMapper.copy().addMixIn(Landmark.class, Landmark.WithCoordinates.class);
+    }
+
+    public <V> TwoLevelCache<V> create(String namespace, int maxSize, long ttlMs, Class<V> type) {
+        return create(namespace, maxSize, ttlMs, objectMapper.constructType(type));
+    }
+
+    // local 모드의 공유 계층은 같은 힙의 저장소라 값을 두 번 들고 있게 되므로 L1만 쓴다
+    public <V> TwoLevelCache<V> create(String namespace, int maxSize, long ttlMs, JavaType type) {
+        TwoLevelCache<V> cache = remoteCache instanceof LocalRemoteCache
+                ? new TwoLevelCache<>(namespace, maxSize, ttlMs, ttlMs, null, cacheMapper, type)
+                : new TwoLevelCache<>(namespace, maxSize, Math.min(ttlMs, nearMaxTtlMs), ttlMs, remoteCache,
+                        cacheMapper, type);
+        caches.put(namespace, cache);
+        return cache;
+    }
+
+    public JavaType listType(Class<?> elementType) {
+        return objectMapper.getTypeFactory().constructCollectionType(List.class, elementType);
+    }
+
+    @Override
+    public String statsName() {
+        return "twoLevelCache";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", remoteCache.mode());
+        stats.put("shared", remoteCache.stats());
+        Map<String, Object> perCache = new LinkedHashMap<>();
+        caches.forEach((name, cache) -> perCache.put(name, cache.stats()));
+        stats.put("caches", perCache);
+        return stats;
+    }
+}
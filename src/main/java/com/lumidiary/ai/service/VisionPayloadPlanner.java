@@ -0,0 +1,296 @@
+package com.lumidiary.ai.service;
+
+import com.lumidiary.ai.dto.Landmark;
+import com.lumidiary.ai.dto.Metadata;
+import com.lumidiary.ai.dto.VisionPayloadPlan;
+import com.lumidiary.ai.dto.VisionRequest;
+import com.lumidiary.ai.util.ImageCompressor;
+import com.lumidiary.ai.util.ImageEncoder;
+import com.lumidiary.ai.util.StatsProvider;
+import com.lumidiary.ai.util.TokenEstimator;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 요청당 바이트/토큰 예산 안에서 이미지 해상도·품질과 프롬프트 위치 정보를 정한다.
+ * 이미지 수가 많아 예산을 넘을 것 같으면 품질을 먼저, 그다음 해상도를 낮추고,
+ * 랜드마크는 거리와 원래 순위(관련도)로 점수를 매겨 상위 k개만, 앞 사진과 같은 주소는 생략한다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VisionPayloadPlanner implements StatsProvider {
+
+    // 384px 이하 이미지는 타일 하나로 처리되어 해상도와 관계없이 258토큰
+    private static final int TOKENS_PER_IMAGE = 258;
+    private static final int[] DIMENSIONS = {ImageCompressor.MAX_DIMENSION, 320, 256, 192};
+    private static final int QUALITY_STEP = 10;
+    private static final int RECENT_PLANS = 20;
+    private static final double EARTH_RADIUS_M = 6_371_008.8;
+
+    private final ImageEncoder imageEncoder;
+
+    // 요청 하나의 압축 이미지 합계 한도 (base64 인코딩 전)
+    @Value("${vision.payload.max-bytes:3145728}")
+    private long maxBytes;
+
+    // 이미지 + 이미지별 위치 문구의 토큰 한도 (시스템 프롬프트 제외)
+    @Value("${vision.payload.max-tokens:8000}")
+    private int maxTokens;
+
+    @Value("${vision.payload.max-landmarks:5}")
+    private int maxLandmarks;
+
+    @Value("${vision.payload.min-dimension:192}")
+    private int minDimension;
+
+    @Value("${vision.payload.min-quality:30}")
+    private int minQuality;
+
+    // 계획에 쓰는 픽셀당 바이트 수(기본 품질 기준). 계획이 설정만으로 정해지도록 고정값을 쓴다
+    @Value("${vision.payload.initial-bytes-per-pixel:0.25}")
+    private double initialBytesPerPixel;
+
+    private int defaultQuality;
+
+    // 선호 순서(해상도 → 품질)로 나열한 {해상도, 품질, 이미지당 추정 바이트}. 기동 시 한 번 계산
+    private List<long[]> ladder;
+
+    // 관측한 픽셀당 바이트 수의 이동 평균. 계획에는 쓰지 않고 추정치와 비교하는 지표로만 노출
+    private volatile double observedBytesPerPixel;
+
+    private final AtomicLong plans = new AtomicLong();
+    private final AtomicLong downscaledPlans = new AtomicLong();
+    private final AtomicLong prunedLandmarks = new AtomicLong();
+    private final AtomicLong repeatedLocations = new AtomicLong();
+    private final Deque<Map<String, Object>> recentPlans = new ArrayDeque<>();
+
+    @PostConstruct
+    public void init() {
+        defaultQuality = imageEncoder.quality();
+        minQuality = Math.min(minQuality, defaultQuality);
+        observedBytesPerPixel = initialBytesPerPixel;
+        List<long[]> steps = new ArrayList<>();
+        for (int dimension : DIMENSIONS) {
+            if (dimension < minDimension && dimension != DIMENSIONS[0]) {
+                break;
+            }
+            for (int quality = defaultQuality; quality >= minQuality; quality -= QUALITY_STEP) {
+                steps.add(new long[]{dimension, quality, estimateBytes(dimension, quality)});
+            }
+        }
+        ladder = List.copyOf(steps);
+    }
+
+    /**
+     * 이미지 수만으로 해상도와 품질을 정한다 (다운로드 전에 호출).
+     * 결과는 이미지 수와 설정에만 의존하므로, 같은 요청은 항상 같은 계획이 되어 결과 캐시와 디스크 캐시에 맞는다.
+     */
+    public VisionPayloadPlan plan(int imageCount) {
+        VisionPayloadPlan plan = new VisionPayloadPlan();
+        plan.setImageCount(imageCount);
+        plan.setLandmarkLimit(maxLandmarks);
+        for (long[] step : ladder) {
+            long estimate = imageCount * step[2];
+            plan.setMaxDimension((int) step[0]);
+            plan.setQuality((int) step[1]);
+            plan.setEstimatedBytes(estimate);
+            if (estimate <= maxBytes) {
+                return plan;
+            }
+        }
+        // 가장 작은 설정으로도 넘으면 그대로 진행
+        return plan;
+    }
+
+    // 압축 결과로 픽셀당 바이트 관측치를 갱신 (4:3 비율 가정). 지표용이며 계획에는 반영하지 않는다
+    public void observe(VisionPayloadPlan plan, int compressedBytes) {
+        double pixels = plan.getMaxDimension() * (plan.getMaxDimension() * 0.75);
+        double observed = compressedBytes / pixels / qualityFactor(plan.getQuality());
+        observedBytesPerPixel = observedBytesPerPixel * 0.9 + observed * 0.1;
+    }
+
+    /**
+     * 메타데이터가 모인 뒤 프롬프트에 넣을 랜드마크를 고른다.
+     * 토큰 예산을 넘으면 이미지당 랜드마크 수를 하나씩 줄인다.
+     */
+    public void selectLandmarks(VisionPayloadPlan plan, VisionRequest request, Map<String, Metadata> metadataMap) {
+        Map<String, List<String>> ranked = new LinkedHashMap<>();
+        String previousAddress = null;
+        for (VisionRequest.ImageData image : request.getImages()) {
+            Metadata metadata = metadataMap.get(image.getId());
+            String address = metadata != null && metadata.getLocation() != null
+                    ? metadata.getLocation().getAddress() : null;
+            if (address != null && address.equals(previousAddress)) {
+                plan.getSameLocationAsPrevious().add(image.getId());
+                repeatedLocations.incrementAndGet();
+            }
+            previousAddress = address;
+            ranked.put(image.getId(), rankLandmarks(metadata, address));
+        }
+
+        int limit = maxLandmarks;
+        int tokens = estimateTokens(plan, ranked, limit);
+        while (limit > 0 && tokens > maxTokens) {
+            limit--;
+            tokens = estimateTokens(plan, ranked, limit);
+        }
+        plan.setLandmarkLimit(limit);
+        plan.setEstimatedTokens(tokens);
+        for (Map.Entry<String, List<String>> entry : ranked.entrySet()) {
+            List<String> names = entry.getValue();
+            List<String> selected = names.subList(0, Math.min(limit, names.size()));
+            prunedLandmarks.addAndGet(names.size() - selected.size());
+            plan.getLandmarkNames().put(entry.getKey(), List.copyOf(selected));
+        }
+    }
+
+    // 주소에 이미 들어 있는 이름과 중복 이름은 제외하고, 거리(가까울수록)와 원래 순위(관련도)를 반씩 반영
+    private List<String> rankLandmarks(Metadata metadata, String address) {
+        if (metadata == null || metadata.getNearbyLandmarks() == null) {
+            return List.of();
+        }
+        List<Landmark> landmarks = metadata.getNearbyLandmarks();
+        double maxDistance = 1;
+        for (Landmark landmark : landmarks) {
+            // 좌표가 없는 랜드마크(NaN)가 최대 거리를 NaN으로 만들지 않도록 제외
+            double distance = distance(metadata, landmark);
+            if (!Double.isNaN(distance)) {
+                maxDistance = Math.max(maxDistance, distance);
+            }
+        }
+        List<double[]> scored = new ArrayList<>();
+        for (int i = 0; i < landmarks.size(); i++) {
+            double distance = distance(metadata, landmarks.get(i));
+            double distanceScore = Double.isNaN(distance) ? 0.5 : distance / maxDistance;
+            double rankScore = landmarks.size() > 1 ? (double) i / (landmarks.size() - 1) : 0;
+            scored.add(new double[]{(distanceScore + rankScore) / 2, i});
+        }
+        scored.sort(Comparator.comparingDouble(s -> s[0]));
+
+        Set<String> names = new LinkedHashSet<>();
+        for (double[] score : scored) {
+            Landmark landmark = landmarks.get((int) score[1]);
+            String name = landmark.getName();
+            if (name == null || name.isBlank() || "error".equals(landmark.getId())
+                    || (address != null && address.contains(name))) {
+                continue;
+            }
+            names.add(name);
+        }
+        return new ArrayList<>(names);
+    }
+
+    private static double distance(Metadata metadata, Landmark landmark) {
+        if (metadata.getLocation() == null || landmark.getLatitude() == null || landmark.getLongitude() == null) {
+            return Double.NaN;
+        }
+        double lat1 = Math.toRadians(metadata.getLocation().getLatitude());
+        double lat2 = Math.toRadians(landmark.getLatitude());
+        double dLat = lat2 - lat1;
+        double dLng = Math.toRadians(landmark.getLongitude() - metadata.getLocation().getLongitude());
+        double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    // 이미지 토큰 + 이미지별 위치/랜드마크 문구 토큰 (시스템 프롬프트 제외)
+    private int estimateTokens(VisionPayloadPlan plan, Map<String, List<String>> ranked, int limit) {
+        int tokens = plan.getImageCount() * TOKENS_PER_IMAGE;
+        for (Map.Entry<String, List<String>> entry : ranked.entrySet()) {
+            List<String> names = entry.getValue();
+            tokens += TokenEstimator.estimate(String.join(", ", names.subList(0, Math.min(limit, names.size()))));
+            tokens += 20;
+        }
+        return tokens;
+    }
+
+    private long estimateBytes(int dimension, int quality) {
+        return (long) (dimension * (dimension * 0.75) * initialBytesPerPixel * qualityFactor(quality));
+    }
+
+    // 기본 품질 대비 크기 비율의 대략적인 모델
+    private double qualityFactor(int quality) {
+        return (quality + 20.0) / (defaultQuality + 20.0);
+    }
+
+    /**
+     * 결과 캐시 키에 넣을 계획 요약: 해상도, 품질, 랜드마크 한도와 프롬프트에 들어간 이미지별 위치 정보.
+     * 이미지 ID는 요청마다 다를 수 있으므로 promptImageIds 순서(위치)로 나열한다.
+     */
+    public String settingsKey(VisionPayloadPlan plan, List<String> promptImageIds) {
+        StringBuilder key = new StringBuilder("plan:")
+                .append(plan.getMaxDimension()).append('/')
+                .append(plan.getQuality()).append('/')
+                .append(plan.getLandmarkLimit());
+        for (String id : promptImageIds) {
+            key.append('|').append(plan.getSameLocationAsPrevious().contains(id) ? "same" : "")
+                    .append(':').append(plan.getLandmarkNames().getOrDefault(id, List.of()));
+        }
+        return key.toString();
+    }
+
+    // 실제 압축 결과와 함께 요청의 계획을 기록
+    public void record(VisionPayloadPlan plan, long compressedBytes) {
+        plan.setActualBytes(compressedBytes);
+        plans.incrementAndGet();
+        if (plan.getMaxDimension() < ImageCompressor.MAX_DIMENSION || plan.getQuality() < defaultQuality) {
+            downscaledPlans.incrementAndGet();
+        }
+        log.info("비전 페이로드 계획: 이미지 {}장, {}px q{}, 랜드마크 최대 {}개, 바이트 {} (추정 {}, 한도 {}), 토큰≈{} (한도 {})",
+                plan.getImageCount(), plan.getMaxDimension(), plan.getQuality(), plan.getLandmarkLimit(),
+                compressedBytes, plan.getEstimatedBytes(), maxBytes, plan.getEstimatedTokens(), maxTokens);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("images", plan.getImageCount());
+        summary.put("maxDimension", plan.getMaxDimension());
+        summary.put("quality", plan.getQuality());
+        summary.put("landmarkLimit", plan.getLandmarkLimit());
+        summary.put("estimatedBytes", plan.getEstimatedBytes());
+        summary.put("actualBytes", compressedBytes);
+        summary.put("estimatedTokens", plan.getEstimatedTokens());
+        summary.put("sameLocationAsPrevious", plan.getSameLocationAsPrevious().size());
+        synchronized (recentPlans) {
+            recentPlans.addFirst(summary);
+            if (recentPlans.size() > RECENT_PLANS) {
+                recentPlans.removeLast();
+            }
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "visionPayload";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxBytes", maxBytes);
+        stats.put("maxTokens", maxTokens);
+        stats.put("bytesPerPixel", initialBytesPerPixel);
+        stats.put("observedBytesPerPixel", observedBytesPerPixel);
+        stats.put("plans", plans.get());
+        stats.put("downscaledPlans", downscaledPlans.get());
+        stats.put("prunedLandmarks", prunedLandmarks.get());
+        stats.put("repeatedLocations", repeatedLocations.get());
+        synchronized (recentPlans) {
+            stats.put("recentPlans", new ArrayList<>(recentPlans));
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,105 @@
+package com.lumidiary.ai.service;
+
+import com.lumidiary.ai.dto.GeminiResponse;
+import com.lumidiary.ai.util.LruCache;
+import com.lumidiary.ai.util.StatsProvider;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 같은 이미지 묶음에 대한 Gemini 비전 응답 캐시.
+ * 키는 프롬프트 버전, 로케일, 이미지 원본 바이트 해시(순서 포함)로 만들어 URL이 바뀌어도(서명 URL 등) 재사용된다.
+ * 같은 사진이라도 근접 중복 묶음이나 페이로드 계획(해상도, 품질, 랜드마크)이 다르면 프롬프트가 달라지므로
+ * 묶음 구조와 중복 제거/계획 설정도 키에 넣는다.
+ * 큐 재전송이나 클라이언트 재시도로 같은 요청이 동시에 들어오면 Gemini 호출 하나로 합쳐진다.
+ * 값은 이미지 ID/메타데이터를 붙이기 전의 원래 응답이며, 호출 측은 이를 수정하지 않는다.
+ */
+@Component
+@RequiredArgsConstructor
+public class VisionResultCache implements StatsProvider {
+
+    @Value("${vision.result-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${vision.result-cache.max-size:1000}")
+    private int maxSize;
+
+    @Value("${vision.result-cache.ttl-ms:86400000}")
+    private long ttlMs;
+
+    private final TwoLevelCacheFactory cacheFactory;
+
+    // 레플리카 간 공유되므로 재전송이 다른 파드로 가도 Gemini를 다시 호출하지 않는다
+    private TwoLevelCache<GeminiResponse> cache;
+
+    // 스트리밍 요청은 합치지 않고 저장된 응답이 있을 때만 재생하므로 따로 센다
+    private final AtomicLong replays = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = cacheFactory.create("vision-result", maxSize, ttlMs, GeminiResponse.class);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // groups: 근접 중복 묶음 (이미지 위치 목록), settings: 중복 제거/페이로드 계획 설정 요약
+    public static String key(String promptVersion, String userLocale, List<byte[]> contentHashes,
+                             List<List<Integer>> groups, String settings) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update((promptVersion + "\n" + userLocale + "\n").getBytes(StandardCharsets.UTF_8));
+            for (byte[] contentHash : contentHashes) {
+                sha256.update(contentHash);
+            }
+            sha256.update(("\n" + groups + "\n" + settings).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(sha256.digest());
+        } catch (Exception e) {
+            throw new IllegalStateException("비전 결과 캐시 키 계산 실패", e);
+        }
+    }
+
+    // 없으면 loader로 호출하고 저장. 같은 키의 동시 호출은 하나로 합쳐진다
+    public GeminiResponse get(String key, LruCache.Loader<GeminiResponse> loader) throws Exception {
+        return enabled ? cache.get(key, loader) : loader.load();
+    }
+
+    public GeminiResponse getIfPresent(String key) {
+        GeminiResponse cached = enabled ? cache.getIfPresent(key) : null;
+        if (cached != null) {
+            replays.incrementAndGet();
+        }
+        return cached;
+    }
+
+    public void put(String key, GeminiResponse response) {
+        if (enabled && response != null) {
+            cache.put(key, response);
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "visionResultCache";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.putAll(cache.stats());
+        stats.put("replays", replays.get());
+        return stats;
+    }
+}
@@ -3,45 +3,369 @@ package com.lumidiary.ai.service;
 import com.lumidiary.ai.dto.GeminiResponse;
 import com.lumidiary.ai.dto.VisionRequest;
 import com.lumidiary.ai.dto.Metadata;
+import com.lumidiary.ai.dto.VisionPayloadPlan;
 import com.lumidiary.ai.integration.GeminiApiClient;
+import com.lumidiary.ai.integration.ImageFetcher;
+import com.lumidiary.ai.util.ImageCompressor;
+import com.lumidiary.ai.util.ImageEncoder;
+import com.lumidiary.ai.util.PromptBuilder;
+import com.lumidiary.ai.util.PromptType;
+import com.lumidiary.ai.util.StreamingJsonFieldParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class VisionService {
 
     private final MetadataService metadataService;
     private final GeminiApiClient geminiApiClient;
-    private final RestTemplate restTemplate;
+    private final ImageFetcher imageFetcher;
+    private final ImageEncoder imageEncoder;
+    private final ImageMemoryBudget memoryBudget;
+    private final VisionPayloadPlanner payloadPlanner;
+    private final NearDuplicateDetector duplicateDetector;
+    private final VisionResultCache resultCache;
+    private final ImageDiskCache diskCache;
+    private final ObjectMapper objectMapper;
+
+    // 이미지별 다운로드 → EXIF → 지오코딩 체인을 병렬로 실행할지 여부
+    @Value("${vision.image.parallel.enabled:true}")
+    private boolean parallelEnabled;
+
+    // 모든 요청이 공유하는 이미지 처리 스레드 수
+    @Value("${vision.image.parallel.pool-size:16}")
+    private int poolSize;
+
+    // 요청 하나가 동시에 처리할 수 있는 최대 이미지 수
+    @Value("${vision.image.parallel.per-request:4}")
+    private int perRequestConcurrency;
+
+    // 크기를 알기 전 다운로드 한 건에 대해 미리 잡아 두는 예산
+    @Value("${vision.memory.download-estimate-bytes:4194304}")
+    private long downloadEstimateBytes;
+
+    private ExecutorService imageExecutor;
+    // 본문 수신과 겹쳐서 EXIF 파싱 → 지오코딩을 실행 (이미지 풀과 분리하여 서로 기다리며 막히지 않도록)
+    private ExecutorService metadataExecutor;
+
+    @PostConstruct
+    public void init() {
+        imageExecutor = newPool("vision-image-");
+        metadataExecutor = newPool("vision-metadata-");
+    }
+
+    private ExecutorService newPool(String threadNamePrefix) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory(threadNamePrefix));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        imageExecutor.shutdown();
+        metadataExecutor.shutdown();
+    }
 
     public GeminiResponse analyze(VisionRequest request) throws Exception {
+        return analyze(request, null);
+    }
+
+    /**
+     * listener가 있으면 streamGenerateContent로 호출하여 이미지 설명, 하루 요약, 질문이 완성되는 대로 전달한다.
+     * 반환값은 비스트리밍 호출과 같은 최종 응답.
+     */
+    public GeminiResponse analyze(VisionRequest request, PartialResultListener listener) throws Exception {
         Map<String, Metadata> metadataMap = new HashMap<>();
-        Map<String, byte[]> imageBytesMap = new HashMap<>();
+        // 원본은 압축 직후 버리고 압축본만 보관
+        Map<String, ByteBuffer> compressedImageMap = new HashMap<>();
+
+        // 이미지 수에 맞춰 해상도/품질을 정하고, 메타데이터가 모이면 프롬프트에 넣을 랜드마크를 고른다
+        VisionPayloadPlan plan = payloadPlanner.plan(request.getImages().size());
+        List<ImageResult> results = parallelEnabled && request.getImages().size() > 1
+                ? loadImagesConcurrently(request.getImages(), plan)
+                : loadImagesSequentially(request.getImages(), plan);
+
+        // 연사 등 근접 중복은 그룹의 대표 이미지만 Gemini에 보내고, 결과를 그룹 전체에 나눠 준다
+        List<List<Integer>> groups = duplicateDetector.group(
+                results.stream().map(ImageResult::dHash).toList(),
+                results.stream().map(ImageResult::metadata).toList());
+        VisionRequest promptRequest = representativeRequest(request, groups);
+
+        long compressedBytes = 0;
+        for (ImageResult result : results) {
+            metadataMap.put(result.id(), result.metadata());
+        }
+        for (List<Integer> group : groups) {
+            ImageResult representative = results.get(group.get(0));
+            compressedImageMap.put(representative.id(), representative.compressed());
+            // 디스크 캐시에서 온 매핑 버퍼는 힙 밖이므로 메모리 예산에 넣지 않는다
+            if (representative.compressed().hasArray()) {
+                compressedBytes += representative.compressed().remaining();
+            }
+        }
+        if (groups.size() < results.size()) {
+            log.info("근접 중복 이미지 {}장을 대표 이미지로 묶음 ({}장 → {}장)",
+                    results.size() - groups.size(), results.size(), groups.size());
+        }
+        memoryBudget.track(ImageMemoryBudget.Stage.COMPRESSED, compressedBytes);
+        plan.setImageCount(groups.size());
+        payloadPlanner.selectLandmarks(plan, promptRequest, metadataMap);
+        payloadPlanner.record(plan, compressedBytes);
+
+        // 재전송·재시도로 같은 이미지 묶음이 다시 오면 저장된 응답을 사용 (URL이 아닌 원본 바이트 기준)
+        // 묶음과 계획이 프롬프트를 바꾸므로 함께 키에 넣는다
+        List<String> promptImageIds = promptRequest.getImages().stream().map(VisionRequest.ImageData::getId).toList();
+        String settings = duplicateDetector.settingsKey() + "\n" + payloadPlanner.settingsKey(plan, promptImageIds);
+        String cacheKey = VisionResultCache.key(PromptBuilder.promptVersion(PromptType.VISION),
+                request.getUserLocale(), results.stream().map(ImageResult::contentHash).toList(), groups, settings);
+        GeminiResponse response;
+        try {
+            if (listener == null) {
+                response = resultCache.get(cacheKey, () -> geminiApiClient.requestToGemini(promptRequest, metadataMap,
+                        compressedImageMap, imageEncoder.mimeType(), plan));
+            } else {
+                response = resultCache.getIfPresent(cacheKey);
+                if (response != null) {
+                    replayVision(request, groups, response, listener);
+                } else {
+                    StreamingJsonFieldParser parser = new StreamingJsonFieldParser(objectMapper.getFactory(),
+                            (path, value) -> forwardVisionField(request, groups, path, value, listener));
+                    response = geminiApiClient.streamVision(promptRequest, metadataMap, compressedImageMap,
+                            imageEncoder.mimeType(), plan, parser::feed);
+                    resultCache.put(cacheKey, response);
+                }
+            }
+        } finally {
+            memoryBudget.untrack(ImageMemoryBudget.Stage.COMPRESSED, compressedBytes);
+        }
+        
+        // 요청 시 이미지 순서대로 각 이미지 설명에 ID와 metadata 추가 (대표 이미지의 설명을 그룹 전체에 복사)
+        // 캐시에 있는 응답은 수정하지 않고 새 응답을 만든다
+        List<GeminiResponse.ImageDescription> descriptions = new ArrayList<>();
+        for (int g = 0; g < groups.size() && g < response.getImages().size(); g++) {
+            GeminiResponse.ImageDescription representative = response.getImages().get(g);
+            for (int i : groups.get(g)) {
+                VisionRequest.ImageData image = request.getImages().get(i);
+                GeminiResponse.ImageDescription imgDesc = new GeminiResponse.ImageDescription();
+                imgDesc.setIndex(i);
+                imgDesc.setId(image.getId());
+                imgDesc.setDescription(representative.getDescription());
+                imgDesc.setMetadata(metadataMap.get(image.getId()));
+                descriptions.add(imgDesc);
+            }
+        }
+        descriptions.sort(Comparator.comparingInt(GeminiResponse.ImageDescription::getIndex));
+        GeminiResponse result = new GeminiResponse();
+        result.setImages(descriptions);
+        result.setOverallDaySummary(response.getOverallDaySummary());
+        result.setQuestions(response.getQuestions() != null ? new ArrayList<>(response.getQuestions()) : null);
+        result.setLanguage(response.getLanguage());
+        return result;
+    }
+
+    // 캐시된 응답을 스트리밍 때와 같은 순서의 부분 결과로 보낸다
+    private void replayVision(VisionRequest request, List<List<Integer>> groups, GeminiResponse cached,
+                              PartialResultListener listener) {
+        if (cached.getImages() != null) {
+            for (int g = 0; g < cached.getImages().size(); g++) {
+                String description = cached.getImages().get(g).getDescription();
+                if (description != null) {
+                    forwardVisionField(request, groups, "/images/" + g + "/description", description, listener);
+                }
+            }
+        }
+        if (cached.getOverallDaySummary() != null) {
+            forwardVisionField(request, groups, "/overallDaySummary", cached.getOverallDaySummary(), listener);
+        }
+        if (cached.getQuestions() != null) {
+            for (int i = 0; i < cached.getQuestions().size(); i++) {
+                forwardVisionField(request, groups, "/questions/" + i, cached.getQuestions().get(i), listener);
+            }
+        }
+    }
+
+    // 중복이 없으면 원래 요청 그대로, 있으면 각 그룹의 대표 이미지만 담은 요청
+    private static VisionRequest representativeRequest(VisionRequest request, List<List<Integer>> groups) {
+        if (groups.size() == request.getImages().size()) {
+            return request;
+        }
+        VisionRequest reduced = new VisionRequest();
+        reduced.setId(request.getId());
+        reduced.setUserLocale(request.getUserLocale());
+        reduced.setImages(groups.stream().map(group -> request.getImages().get(group.get(0))).toList());
+        return reduced;
+    }
+
+    // /images/{i}/description, /overallDaySummary, /questions/{i} 만 부분 결과로 전달
+    // 설명의 i는 대표 이미지 기준이므로 그룹에 속한 원래 이미지마다 한 번씩 보낸다
+    private void forwardVisionField(VisionRequest request, List<List<Integer>> groups, String path, String value,
+                                    PartialResultListener listener) {
+        String[] segments = path.split("/");
+        if (segments.length == 4 && "images".equals(segments[1]) && "description".equals(segments[3])) {
+            int groupIndex = Integer.parseInt(segments[2]);
+            if (groupIndex >= groups.size()) {
+                return;
+            }
+            for (int index : groups.get(groupIndex)) {
+                Map<String, Object> data = new LinkedHashMap<>();
+                data.put("index", index);
+                data.put("id", request.getImages().get(index).getId());
+                data.put("description", value);
+                listener.onPartial("description", data);
+            }
+        } else if (segments.length == 2 && "overallDaySummary".equals(segments[1])) {
+            listener.onPartial("overallDaySummary", Map.of("value", value));
+        } else if (segments.length == 3 && "questions".equals(segments[1])) {
+            listener.onPartial("question", Map.of("index", Integer.parseInt(segments[2]), "value", value));
+        }
+    }
+
+    private List<ImageResult> loadImagesSequentially(List<VisionRequest.ImageData> images,
+                                                     VisionPayloadPlan plan) throws Exception {
+        List<ImageResult> results = new ArrayList<>();
+        for (VisionRequest.ImageData image : images) {
+            results.add(loadImage(image, plan));
+        }
+        return results;
+    }
+
+    // 요청당 동시 실행 수를 세마포어로 제한하면서 공유 풀에서 병렬 처리, 결과는 요청 순서대로 반환
+    // 하나가 실패하면 나머지를 cancel(true)로 인터럽트하여 다운로드를 멈추고 메모리 예산을 바로 돌려준다
+    // (CompletableFuture.cancel은 실행 중인 작업을 인터럽트하지 않으므로 submit이 반환하는 Future를 사용)
+    private List<ImageResult> loadImagesConcurrently(List<VisionRequest.ImageData> images,
+                                                     VisionPayloadPlan plan) throws Exception {
+        Semaphore permits = new Semaphore(Math.max(1, perRequestConcurrency));
+        List<Future<ImageResult>> futures = new ArrayList<>();
+        try {
+            for (VisionRequest.ImageData image : images) {
+                permits.acquire();
+                try {
+                    futures.add(imageExecutor.submit(() -> {
+                        try {
+                            return loadImage(image, plan);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
 
-        for (VisionRequest.ImageData image : request.getImages()) {
-            byte[] imageBytes = restTemplate.getForObject(image.getUrl(), byte[].class);
+            List<ImageResult> results = new ArrayList<>();
+            for (Future<ImageResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    // 스트리밍 다운로드 → 메타데이터 추출 → 압축. 원본 바이트는 이 메서드 안에서만 살아 있다
+    // JPEG는 헤더가 도착하는 즉시 메타데이터 추출(지오코딩 포함)을 시작하여 나머지 본문 수신과 겹친다
+    // 같은 포맷·해상도·품질로 디스크 캐시에 있으면 조건부 GET으로 재검증하고, 304이면 다운로드와 압축을 건너뛴다
+    private ImageResult loadImage(VisionRequest.ImageData image, VisionPayloadPlan plan) throws Exception {
+        ImageDiskCache.CachedImage cached = diskCache.lookup(image.getUrl());
+        if (cached != null && !cached.matches(imageEncoder.mimeType(), plan.getMaxDimension(), plan.getQuality())) {
+            cached = null;
+        }
+        try (ImageMemoryBudget.Reservation reservation = memoryBudget.reserve(downloadEstimateBytes)) {
+            AtomicReference<CompletableFuture<Metadata>> earlyMetadata = new AtomicReference<>();
+            String validator = cached != null ? cached.validator() : null;
+            ImageFetcher.Listener listener = new ImageFetcher.Listener() {
+                @Override
+                public void onBufferAllocated(long bytes) {
+                    reservation.resize(bytes);
+                }
+
+                @Override
+                public void onHeader(byte[] buffer, int length) {
+                    earlyMetadata.set(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return metadataService.extractMetadata(new ByteArrayInputStream(buffer, 0, length));
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                    }, metadataExecutor));
+                }
+            };
+            ImageFetcher.DownloadedImage downloaded = imageFetcher.fetchIfModified(image.getUrl(), validator, listener);
+            if (downloaded == null && cached != null) {
+                return new ImageResult(image.getId(), cached.data(), cached.dHash(), cached.contentHash(),
+                        cached.metadata());
+            }
             // 이미지 데이터가 반드시 존재해야 함
-            if (imageBytes == null || imageBytes.length == 0) {
+            if (downloaded == null || downloaded.length() == 0) {
                 throw new Exception("이미지 데이터 다운로드 실패 for image id: " + image.getId());
             }
-            imageBytesMap.put(image.getId(), imageBytes);
 
-            Metadata metadata = metadataService.extractMetadata(imageBytes);
-            metadataMap.put(image.getId(), metadata);
+            // 다른 이미지가 실패해 취소됐으면 CPU를 쓰는 압축 전에 멈춘다
+            if (Thread.interrupted()) {
+                throw new InterruptedException("이미지 처리 취소: " + image.getId());
+            }
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(downloaded.buffer(), 0, downloaded.length());
+            ImageCompressor.CompressedImage compressed = ImageCompressor.compress(downloaded.buffer(),
+                    downloaded.length(), imageEncoder, plan.getMaxDimension(), plan.getQuality());
+            payloadPlanner.observe(plan, compressed.data().length);
+            Metadata metadata = awaitMetadata(earlyMetadata.get(), downloaded);
+            byte[] contentHash = sha256.digest();
+            diskCache.store(image.getUrl(), downloaded.validator(), imageEncoder.mimeType(), plan.getMaxDimension(),
+                    plan.getQuality(), compressed.dHash(), contentHash, metadata, compressed.data());
+            return new ImageResult(image.getId(), ByteBuffer.wrap(compressed.data()), compressed.dHash(), contentHash,
+                    metadata);
         }
-        GeminiResponse response = geminiApiClient.requestToGemini(request, metadataMap, imageBytesMap);
-        
-        // 요청 시 이미지 순서대로 각 이미지 설명에 ID와 metadata 추가
-        for (int i = 0; i < request.getImages().size() && i < response.getImages().size(); i++) {
-            VisionRequest.ImageData image = request.getImages().get(i);
-            GeminiResponse.ImageDescription imgDesc = response.getImages().get(i);
-            imgDesc.setId(image.getId());
-            imgDesc.setMetadata(metadataMap.get(image.getId()));
-        }
-        return response;
+    }
+
+    // 헤더 선행 파싱 결과를 사용하고, 없거나 실패했으면 전체 바이트로 다시 파싱
+    private Metadata awaitMetadata(CompletableFuture<Metadata> earlyMetadata,
+                                   ImageFetcher.DownloadedImage downloaded) throws Exception {
+        if (earlyMetadata != null) {
+            try {
+                return earlyMetadata.get();
+            } catch (ExecutionException e) {
+                // 헤더만으로 읽지 못한 경우 아래에서 전체 파싱
+            }
+        }
+        return metadataService.extractMetadata(downloaded.openStream());
+    }
+
+    // compressed: 새로 압축한 힙 버퍼 또는 디스크 캐시의 매핑된 읽기 전용 뷰
+    private record ImageResult(String id, ByteBuffer compressed, long dHash, byte[] contentHash, Metadata metadata) {
     }
 }
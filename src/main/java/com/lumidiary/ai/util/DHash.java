@@ -0,0 +1,55 @@
+package com.lumidiary.ai.util;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 64비트 difference hash. 이미지를 9×8 회색조 격자로 평균 내고, 가로로 이웃한 칸의 밝기 비교를 비트로 담는다.
+ * 연사처럼 거의 같은 사진은 해밍 거리가 몇 비트 이내로 나온다.
+ */
+public final class DHash {
+
+    private static final int WIDTH = 9;
+    private static final int HEIGHT = 8;
+
+    private DHash() {
+    }
+
+    public static long compute(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] sums = new double[WIDTH * HEIGHT];
+        int[] counts = new int[WIDTH * HEIGHT];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellY = y * HEIGHT / height;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                double luma = 0.299 * ((rgb >> 16) & 0xff) + 0.587 * ((rgb >> 8) & 0xff) + 0.114 * (rgb & 0xff);
+                int cell = cellY * WIDTH + x * WIDTH / width;
+                sums[cell] += luma;
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH - 1; x++) {
+                int left = y * WIDTH + x;
+                hash <<= 1;
+                if (average(sums, counts, left) > average(sums, counts, left + 1)) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static double average(double[] sums, int[] counts, int cell) {
+        return counts[cell] == 0 ? 0 : sums[cell] / counts[cell];
+    }
+}
@@ -0,0 +1,110 @@
+package com.lumidiary.ai.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Gemini generateContent 응답을 트리로 만들지 않고 한 번에 훑어
+ * candidates[0].content.parts[0].text 만 꺼낸 뒤, 코드 펜스를 제거하고 원하는 타입으로 바인딩한다.
+ */
+public class GeminiResponseDecoder {
+
+    private static final String FENCE = "```";
+
+    public static <T> T decode(InputStream envelope, ObjectMapper objectMapper, Class<T> type) throws IOException {
+        String text = extractText(envelope, objectMapper);
+        return bind(text, objectMapper, type);
+    }
+
+    // 이미 꺼낸 모델 출력 텍스트를 바인딩 (스트리밍 응답 조각을 이어 붙인 경우 등)
+    public static <T> T bind(String text, ObjectMapper objectMapper, Class<T> type) throws IOException {
+        String cleaned = stripCodeFence(text);
+        try {
+            return objectMapper.readValue(cleaned, type);
+        } catch (IOException e) {
+            throw new IOException("Failed to parse Gemini response: " + e.getMessage() + "\nText: " + cleaned, e);
+        }
+    }
+
+    // 봉투에서 첫 번째 후보의 첫 번째 텍스트 파트를 찾는다. 다른 필드는 skipChildren으로 건너뜀
+    public static String extractText(InputStream envelope, ObjectMapper objectMapper) throws IOException {
+        String text = findText(envelope, objectMapper);
+        if (text == null) {
+            throw new IOException("Gemini 응답에 텍스트 파트가 없음");
+        }
+        return text;
+    }
+
+    // 텍스트 파트가 없으면 null (스트리밍의 마지막 조각처럼 사용량 정보만 있는 경우)
+    public static String findText(InputStream envelope, ObjectMapper objectMapper) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(envelope)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Gemini 응답이 JSON 객체가 아님");
+            }
+            if (seekField(parser, "candidates") && enterFirstElement(parser)
+                    && seekField(parser, "content") && parser.currentToken() == JsonToken.START_OBJECT
+                    && seekField(parser, "parts") && enterFirstElement(parser)
+                    && seekField(parser, "text") && parser.currentToken() == JsonToken.VALUE_STRING) {
+                return parser.getText();
+            }
+            return null;
+        }
+    }
+
+    // 현재 객체 안에서 이름이 일치하는 필드의 값으로 이동. 없으면 객체 끝에서 false
+    private static boolean seekField(JsonParser parser, String name) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (name.equals(field)) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    // 배열 값이면 첫 번째 원소(객체)의 시작으로 이동
+    private static boolean enterFirstElement(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.START_ARRAY
+                && parser.nextToken() == JsonToken.START_OBJECT;
+    }
+
+    /**
+     * ```json ... ``` 처럼 감싼 코드 펜스를 선형 스캔으로 제거한다.
+     * 앞쪽 펜스는 언어 태그가 있는 줄 끝까지, 뒤쪽 펜스는 닫는 ``` 만 잘라낸다.
+     */
+    public static String stripCodeFence(String text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (text.startsWith(FENCE, start)) {
+            start += FENCE.length();
+            // 언어 태그(json 등)는 공백 전까지 건너뜀
+            while (start < end && !Character.isWhitespace(text.charAt(start))
+                    && text.charAt(start) != '{' && text.charAt(start) != '[') {
+                start++;
+            }
+            if (end - start >= FENCE.length() && text.startsWith(FENCE, end - FENCE.length())) {
+                end -= FENCE.length();
+            }
+            while (start < end && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                end--;
+            }
+        }
+        return text.substring(start, end);
+    }
+}
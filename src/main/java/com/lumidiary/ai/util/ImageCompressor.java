@@ -1,26 +1,143 @@
 package com.lumidiary.ai.util;
 
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.metadata.exif.ExifIFD0Directory;
 import com.sksamuel.scrimage.ImmutableImage;
-import com.sksamuel.scrimage.webp.WebpWriter;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Iterator;
 
 public class ImageCompressor {
 
-    private static final int QUALITY = 50;
+    // Gemini는 양 변이 384px 이하인 이미지를 타일 하나(258토큰)로 처리
+    public static final int MAX_DIMENSION = 384;
+
+    // 서브샘플링 후에도 목표 크기의 이 배수 이상으로 디코딩하여 최종 축소 시 화질을 유지
+    private static final int OVERSAMPLE = 2;
+
+    // 이미지의 긴 쪽 최대 크기를 384px로 리사이즈하고, 주어진 인코더로 변환
+    public static byte[] compressImage(byte[] inputBytes, ImageEncoder encoder) {
+        return compressImage(inputBytes, inputBytes.length, encoder);
+    }
 
-    // 이미지의 긴 쪽 최대 크기를 384px로 리사이즈하고, webp로 변환
-    public static byte[] compressImage(byte[] inputBytes) {
+    // 다운로드 버퍼를 복사하지 않고 앞쪽 length 바이트만 디코딩
+    public static byte[] compressImage(byte[] buffer, int length, ImageEncoder encoder) {
+        return compressImage(buffer, length, encoder, MAX_DIMENSION, encoder.quality());
+    }
+
+    // 긴 쪽을 maxDimension 이하로 줄이고 quality로 인코딩 (요청별 페이로드 계획용)
+    public static byte[] compressImage(byte[] buffer, int length, ImageEncoder encoder, int maxDimension, int quality) {
+        return compress(buffer, length, encoder, maxDimension, quality).data();
+    }
+
+    // 압축본과 함께 축소된 픽셀로 계산한 dHash를 반환 (근접 중복 판정용, 디코딩을 다시 하지 않도록)
+    public static CompressedImage compress(byte[] buffer, int length, ImageEncoder encoder, int maxDimension, int quality) {
         try {
-            ImmutableImage originalImage = ImmutableImage.loader().fromBytes(inputBytes);
-            int originalWidth = originalImage.width;
-            int originalHeight = originalImage.height;
-            int maxDim = Math.max(originalWidth, originalHeight);
-            double scale = (maxDim > 384) ? 384.0 / maxDim : 1.0;
-            
-            ImmutableImage resizedImage = originalImage.scale(scale);
-            return resizedImage.bytes(WebpWriter.DEFAULT.withQ(QUALITY));
+            BufferedImage resized = decodeSubsampled(buffer, length, maxDimension);
+            if (resized == null) {
+                resized = decodeFully(buffer, length, maxDimension);
+            }
+            return new CompressedImage(encoder.encode(resized, quality), DHash.compute(resized));
         } catch (IOException e) {
             throw new RuntimeException("이미지 압축 중 에러 발생", e);
         }
     }
+
+    // 헤더에서 크기만 먼저 읽고, 목표 해상도에 가깝게 서브샘플링하여 디코딩 (전체 픽셀 배열을 만들지 않음)
+    // ImageIO가 읽을 수 없는 형식이면 null
+    private static BufferedImage decodeSubsampled(byte[] buffer, int length, int maxDimension) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(buffer, 0, length))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int maxDim = Math.max(width, height);
+                int step = Math.max(1, maxDim / (maxDimension * OVERSAMPLE));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+
+                // 기존과 같은 출력 크기가 되도록 원본 크기 기준으로 목표 크기를 계산
+                double scale = (maxDim > maxDimension) ? (double) maxDimension / maxDim : 1.0;
+                int targetWidth = (int) (width * scale);
+                int targetHeight = (int) (height * scale);
+                BufferedImage resized = ImmutableImage.fromAwt(decoded).scaleTo(targetWidth, targetHeight).awt();
+                // ImageReader는 EXIF 방향을 적용하지 않으므로, 전체 디코딩 경로(scrimage 로더)와 같게 축소본을 돌린다
+                return orient(resized, readOrientation(buffer, length));
+            } finally {
+                reader.dispose();
+            }
+        } catch (Exception e) {
+            // CMYK JPEG 등 ImageIO가 처리하지 못하는 경우 전체 디코딩으로 대체
+            return null;
+        }
+    }
+
+    // EXIF Orientation 태그 (1~8). 없거나 읽을 수 없으면 1(정방향)
+    static int readOrientation(byte[] buffer, int length) {
+        try {
+            com.drew.metadata.Metadata metadata = ImageMetadataReader.readMetadata(new ByteArrayInputStream(buffer, 0, length));
+            ExifIFD0Directory exif = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+            if (exif != null && exif.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
+                int orientation = exif.getInt(ExifIFD0Directory.TAG_ORIENTATION);
+                return orientation >= 1 && orientation <= 8 ? orientation : 1;
+            }
+        } catch (Exception e) {
+            // 메타데이터가 깨져 있어도 이미지는 정방향으로 처리
+        }
+        return 1;
+    }
+
+    // EXIF 방향대로 회전/반전한 새 이미지. 5~8은 가로세로가 바뀐다
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean transposed = orientation >= 5;
+        BufferedImage oriented = new BufferedImage(transposed ? height : width, transposed ? width : height,
+                image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                switch (orientation) {
+                    case 2 -> oriented.setRGB(width - 1 - x, y, row[x]);
+                    case 3 -> oriented.setRGB(width - 1 - x, height - 1 - y, row[x]);
+                    case 4 -> oriented.setRGB(x, height - 1 - y, row[x]);
+                    case 5 -> oriented.setRGB(y, x, row[x]);
+                    case 6 -> oriented.setRGB(height - 1 - y, x, row[x]);
+                    case 7 -> oriented.setRGB(height - 1 - y, width - 1 - x, row[x]);
+                    default -> oriented.setRGB(y, width - 1 - x, row[x]);
+                }
+            }
+        }
+        return oriented;
+    }
+
+    private static BufferedImage decodeFully(byte[] buffer, int length, int maxDimension) throws IOException {
+        ImmutableImage originalImage = ImmutableImage.loader().fromStream(new ByteArrayInputStream(buffer, 0, length));
+        int originalWidth = originalImage.width;
+        int originalHeight = originalImage.height;
+        int maxDim = Math.max(originalWidth, originalHeight);
+        double scale = (maxDim > maxDimension) ? (double) maxDimension / maxDim : 1.0;
+
+        return originalImage.scale(scale).awt();
+    }
+
+    public record CompressedImage(byte[] data, long dHash) {
+    }
 }
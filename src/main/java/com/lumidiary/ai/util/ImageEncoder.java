@@ -0,0 +1,23 @@
+package com.lumidiary.ai.util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * 리사이즈된 이미지를 Gemini에 보낼 바이트로 인코딩하는 전략.
+ */
+public interface ImageEncoder {
+
+    default byte[] encode(BufferedImage image) throws IOException {
+        return encode(image, quality());
+    }
+
+    // 요청별 페이로드 계획에 따라 품질(0~100)을 낮춰 인코딩할 때 사용
+    byte[] encode(BufferedImage image, int quality) throws IOException;
+
+    // 설정된 기본 품질
+    int quality();
+
+    // Gemini inline_data에 넣을 MIME 타입
+    String mimeType();
+}
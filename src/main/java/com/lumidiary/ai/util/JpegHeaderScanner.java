@@ -0,0 +1,59 @@
+package com.lumidiary.ai.util;
+
+/**
+ * 다운로드 중인 버퍼를 점진적으로 훑어 JPEG 헤더(SOI ~ SOS 마커)가 끝나는 위치를 찾는다.
+ * EXIF/GPS가 들어 있는 APPn 세그먼트는 모두 SOS 앞에 있으므로, 이 구간만 있으면 메타데이터를 읽을 수 있다.
+ */
+public class JpegHeaderScanner {
+
+    public static final int NEED_MORE = -1;
+    public static final int NOT_JPEG = -2;
+
+    private static final int MARKER_SOS = 0xDA;
+
+    private int position = 2;
+    private int result = NEED_MORE;
+
+    /**
+     * @return SOS 마커까지 포함한 헤더 길이, 아직 부족하면 NEED_MORE, JPEG가 아니면 NOT_JPEG
+     */
+    public int scan(byte[] buffer, int length) {
+        if (result != NEED_MORE) {
+            return result;
+        }
+        if (length < 2) {
+            return NEED_MORE;
+        }
+        if ((buffer[0] & 0xFF) != 0xFF || (buffer[1] & 0xFF) != 0xD8) {
+            return result = NOT_JPEG;
+        }
+        while (position + 2 <= length) {
+            if ((buffer[position] & 0xFF) != 0xFF) {
+                return result = NOT_JPEG;
+            }
+            int marker = buffer[position + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // 채움 바이트
+                position++;
+                continue;
+            }
+            if (marker == MARKER_SOS) {
+                return result = position + 2;
+            }
+            if ((marker >= 0xD0 && marker <= 0xD7) || marker == 0x01) {
+                // 길이 필드가 없는 마커
+                position += 2;
+                continue;
+            }
+            if (position + 4 > length) {
+                return NEED_MORE;
+            }
+            int segmentLength = ((buffer[position + 2] & 0xFF) << 8) | (buffer[position + 3] & 0xFF);
+            if (segmentLength < 2) {
+                return result = NOT_JPEG;
+            }
+            position += 2 + segmentLength;
+        }
+        return NEED_MORE;
+    }
+}
@@ -0,0 +1,66 @@
+package com.lumidiary.ai.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * ImageIO 기반 JPEG 인코더. 외부 프로세스나 임시 파일 없이 JVM 안에서 인코딩한다.
+ */
+public class JpegImageEncoder implements ImageEncoder {
+
+    private final int quality;
+
+    // quality는 WebP와 같은 0~100 범위
+    public JpegImageEncoder(int quality) {
+        this.quality = Math.max(0, Math.min(100, quality));
+    }
+
+    @Override
+    public int quality() {
+        return quality;
+    }
+
+    @Override
+    public byte[] encode(BufferedImage image, int quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(Math.max(0, Math.min(100, quality)) / 100f);
+            writer.write(null, new IIOImage(toRgb(image), null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public String mimeType() {
+        return "image/jpeg";
+    }
+
+    // JPEG은 알파 채널을 지원하지 않으므로 흰 배경에 합성
+    private BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+}
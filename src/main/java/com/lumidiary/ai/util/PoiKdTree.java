@@ -0,0 +1,317 @@
+package com.lumidiary.ai.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 지점(POI) 공간 인덱스.
+ * 위경도를 단위 구 위의 3차원 좌표로 바꿔 암묵적(implicit) KD-tree로 정렬해 두고,
+ * 좌표와 문자열을 모두 원시 배열에 보관하여 지점마다 객체를 만들지 않는다.
+ * 문자열(id, 이름, 주소)은 하나의 UTF-8 바이트 배열과 오프셋 배열로 저장한다.
+ */
+public final class PoiKdTree {
+
+    public static final int FIELD_ID = 0;
+    public static final int FIELD_NAME = 1;
+    public static final int FIELD_ADDRESS = 2;
+    private static final int FIELDS = 3;
+
+    private static final double EARTH_RADIUS_M = 6_371_008.8;
+
+    private final int size;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final byte[] strings;
+    private final int[] stringOffsets;
+
+    private PoiKdTree(int size, double[] xs, double[] ys, double[] zs, byte[] strings, int[] stringOffsets) {
+        this.size = size;
+        this.xs = xs;
+        this.ys = ys;
+        this.zs = zs;
+        this.strings = strings;
+        this.stringOffsets = stringOffsets;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // 좌표와 문자열 배열이 차지하는 대략적인 바이트 수
+    public long memoryBytes() {
+        return 3L * size * Double.BYTES + (long) stringOffsets.length * Integer.BYTES + strings.length;
+    }
+
+    public String field(int point, int field) {
+        int slot = point * FIELDS + field;
+        int start = stringOffsets[slot];
+        int end = stringOffsets[slot + 1];
+        return end == start ? null : new String(strings, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    public double latitude(int point) {
+        return Math.toDegrees(Math.asin(Math.max(-1.0, Math.min(1.0, zs[point]))));
+    }
+
+    public double longitude(int point) {
+        return Math.toDegrees(Math.atan2(ys[point], xs[point]));
+    }
+
+    public double distanceMeters(int point, double latitude, double longitude) {
+        double[] p = toUnitVector(latitude, longitude);
+        double chord = Math.sqrt(squared(xs[point] - p[0], ys[point] - p[1], zs[point] - p[2]));
+        return 2 * Math.asin(Math.min(1.0, chord / 2)) * EARTH_RADIUS_M;
+    }
+
+    /**
+     * 가장 가까운 지점의 인덱스, 없으면 -1.
+     */
+    public int nearest(double latitude, double longitude) {
+        if (size == 0) {
+            return -1;
+        }
+        double[] p = toUnitVector(latitude, longitude);
+        double[] best = {Double.MAX_VALUE, -1};
+        nearest(0, size, 0, p, -1, best);
+        return (int) best[1];
+    }
+
+    /**
+     * 반경(m) 안에서 field 값이 있는 가장 가까운 지점의 인덱스, 없으면 -1.
+     * 값이 없는 지점은 후보에서만 빠지고 가지치기는 그대로 적용되므로 개수 제한 없이 정확하다.
+     */
+    public int nearestWithField(double latitude, double longitude, double radiusMeters, int field) {
+        if (size == 0) {
+            return -1;
+        }
+        double[] p = toUnitVector(latitude, longitude);
+        double chord = 2 * Math.sin(Math.min(Math.PI, radiusMeters / EARTH_RADIUS_M) / 2);
+        // 반경 경계를 초기 최선값으로 두어 반경 밖 가지는 처음부터 잘라낸다
+        double[] best = {Math.nextUp(chord * chord), -1};
+        nearest(0, size, 0, p, field, best);
+        return (int) best[1];
+    }
+
+    /**
+     * 반경(m) 안의 지점을 거리순으로 최대 limit개 반환.
+     */
+    public int[] withinRadius(double latitude, double longitude, double radiusMeters, int limit) {
+        double[] p = toUnitVector(latitude, longitude);
+        double chord = 2 * Math.sin(Math.min(Math.PI, radiusMeters / EARTH_RADIUS_M) / 2);
+        IntBuffer found = new IntBuffer();
+        radius(0, size, 0, p, chord * chord, found);
+
+        int[] points = found.toArray();
+        double[] distances = new double[points.length];
+        for (int i = 0; i < points.length; i++) {
+            distances[i] = squared(xs[points[i]] - p[0], ys[points[i]] - p[1], zs[points[i]] - p[2]);
+        }
+        // 결과 수가 적으므로 단순 삽입 정렬
+        for (int i = 1; i < points.length; i++) {
+            int point = points[i];
+            double distance = distances[i];
+            int j = i - 1;
+            while (j >= 0 && distances[j] > distance) {
+                points[j + 1] = points[j];
+                distances[j + 1] = distances[j];
+                j--;
+            }
+            points[j + 1] = point;
+            distances[j + 1] = distance;
+        }
+        return points.length > limit ? Arrays.copyOf(points, limit) : points;
+    }
+
+    // requiredField가 0 이상이면 그 필드 값이 있는 지점만 후보로 삼는다
+    private void nearest(int lo, int hi, int depth, double[] p, int requiredField, double[] best) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double d = squared(xs[mid] - p[0], ys[mid] - p[1], zs[mid] - p[2]);
+        if (d < best[0] && (requiredField < 0 || hasField(mid, requiredField))) {
+            best[0] = d;
+            best[1] = mid;
+        }
+        double diff = p[depth % 3] - coordinate(mid, depth % 3);
+        if (diff < 0) {
+            nearest(lo, mid, depth + 1, p, requiredField, best);
+            if (diff * diff < best[0]) {
+                nearest(mid + 1, hi, depth + 1, p, requiredField, best);
+            }
+        } else {
+            nearest(mid + 1, hi, depth + 1, p, requiredField, best);
+            if (diff * diff < best[0]) {
+                nearest(lo, mid, depth + 1, p, requiredField, best);
+            }
+        }
+    }
+
+    private void radius(int lo, int hi, int depth, double[] p, double chordSquared, IntBuffer found) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (squared(xs[mid] - p[0], ys[mid] - p[1], zs[mid] - p[2]) <= chordSquared) {
+            found.add(mid);
+        }
+        double diff = p[depth % 3] - coordinate(mid, depth % 3);
+        if (diff < 0 || diff * diff <= chordSquared) {
+            radius(lo, mid, depth + 1, p, chordSquared, found);
+        }
+        if (diff >= 0 || diff * diff <= chordSquared) {
+            radius(mid + 1, hi, depth + 1, p, chordSquared, found);
+        }
+    }
+
+    private boolean hasField(int point, int field) {
+        int slot = point * FIELDS + field;
+        return stringOffsets[slot + 1] > stringOffsets[slot];
+    }
+
+    private double coordinate(int point, int axis) {
+        return axis == 0 ? xs[point] : axis == 1 ? ys[point] : zs[point];
+    }
+
+    private static double squared(double dx, double dy, double dz) {
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static double[] toUnitVector(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double lng = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        return new double[]{cosLat * Math.cos(lng), cosLat * Math.sin(lng), Math.sin(lat)};
+    }
+
+    /**
+     * 지점을 순서대로 추가한 뒤 build()로 트리를 만든다.
+     */
+    public static class Builder {
+        private double[] xs = new double[1024];
+        private double[] ys = new double[1024];
+        private double[] zs = new double[1024];
+        private byte[][] fields = new byte[1024 * FIELDS][];
+        private int size;
+
+        public Builder add(double latitude, double longitude, String id, String name, String address) {
+            if (size == xs.length) {
+                int capacity = size * 2;
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                zs = Arrays.copyOf(zs, capacity);
+                fields = Arrays.copyOf(fields, capacity * FIELDS);
+            }
+            double[] v = toUnitVector(latitude, longitude);
+            xs[size] = v[0];
+            ys[size] = v[1];
+            zs[size] = v[2];
+            fields[size * FIELDS + FIELD_ID] = bytes(id);
+            fields[size * FIELDS + FIELD_NAME] = bytes(name);
+            fields[size * FIELDS + FIELD_ADDRESS] = bytes(address);
+            size++;
+            return this;
+        }
+
+        public PoiKdTree build() {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            arrange(order, 0, size, 0);
+
+            double[] tx = new double[size];
+            double[] ty = new double[size];
+            double[] tz = new double[size];
+            int[] offsets = new int[size * FIELDS + 1];
+            int total = 0;
+            for (int i = 0; i < size; i++) {
+                int src = order[i];
+                tx[i] = xs[src];
+                ty[i] = ys[src];
+                tz[i] = zs[src];
+                for (int f = 0; f < FIELDS; f++) {
+                    byte[] value = fields[src * FIELDS + f];
+                    total += value == null ? 0 : value.length;
+                }
+            }
+            byte[] packed = new byte[total];
+            int position = 0;
+            for (int i = 0; i < size; i++) {
+                for (int f = 0; f < FIELDS; f++) {
+                    offsets[i * FIELDS + f] = position;
+                    byte[] value = fields[order[i] * FIELDS + f];
+                    if (value != null) {
+                        System.arraycopy(value, 0, packed, position, value.length);
+                        position += value.length;
+                    }
+                }
+            }
+            offsets[size * FIELDS] = position;
+            return new PoiKdTree(size, tx, ty, tz, packed, offsets);
+        }
+
+        // [lo, hi) 구간의 중앙값이 mid에 오도록 축 기준으로 배치하고 양쪽을 재귀적으로 정리
+        private void arrange(int[] order, int lo, int hi, int depth) {
+            if (hi - lo <= 1) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            double[] axis = depth % 3 == 0 ? xs : depth % 3 == 1 ? ys : zs;
+            select(order, lo, hi - 1, mid, axis);
+            arrange(order, lo, mid, depth + 1);
+            arrange(order, mid + 1, hi, depth + 1);
+        }
+
+        private static void select(int[] order, int left, int right, int k, double[] axis) {
+            while (left < right) {
+                double pivot = axis[order[(left + right) >>> 1]];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (axis[order[i]] < pivot) {
+                        i++;
+                    }
+                    while (axis[order[j]] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        int tmp = order[i];
+                        order[i] = order[j];
+                        order[j] = tmp;
+                        i++;
+                        j--;
+                    }
+                }
+                if (k <= j) {
+                    right = j;
+                } else if (k >= i) {
+                    left = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private static byte[] bytes(String value) {
+            return value == null || value.isEmpty() ? null : value.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class IntBuffer {
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -4,14 +4,18 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lumidiary.ai.dto.GeminiPromptRequest;
 import com.lumidiary.ai.dto.VisionRequest;
 import com.lumidiary.ai.dto.Metadata;
+import com.lumidiary.ai.dto.VisionPayloadPlan;
+import com.lumidiary.ai.dto.DigestReduceRequestForPrompt;
 import com.lumidiary.ai.dto.DigestRequestForPrompt;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -21,6 +25,27 @@ public class PromptBuilder {
     // promptType -> promptText 매핑
     private static final Map<PromptType, String> SYSTEM_PROMPTS = loadSystemPrompts();
 
+    // 프롬프트 문구가 바뀌면 달라지는 버전 (결과 캐시 키에 사용)
+    private static final Map<PromptType, String> PROMPT_VERSIONS = hashPrompts();
+
+    public static String promptVersion(PromptType type) {
+        return PROMPT_VERSIONS.get(type);
+    }
+
+    private static Map<PromptType, String> hashPrompts() {
+        Map<PromptType, String> versions = new HashMap<>();
+        try {
+            for (Map.Entry<PromptType, String> entry : SYSTEM_PROMPTS.entrySet()) {
+                byte[] digest = MessageDigest.getInstance("SHA-256")
+                        .digest(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                versions.put(entry.getKey(), HexFormat.of().formatHex(digest, 0, 8));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("프롬프트 버전 계산 실패", e);
+        }
+        return versions;
+    }
+
     private static Map<PromptType, String> loadSystemPrompts() {
         Map<PromptType, String> prompts = new HashMap<>();
         for (PromptType type : PromptType.values()) {
@@ -43,7 +68,9 @@ public class PromptBuilder {
     
     public static GeminiPromptRequest buidVisionPrompt(VisionRequest request,
                                                        Map<String, Metadata> metadataMap,
-                                                       Map<String, byte[]> imageBytesMap) {
+                                                       Map<String, ByteBuffer> compressedImageMap,
+                                                       String mimeType,
+                                                       VisionPayloadPlan plan) {
         List<GeminiPromptRequest.Content> contents = new ArrayList<>();
         contents.add(new GeminiPromptRequest.Content(
                 "model",
@@ -57,8 +84,14 @@ public class PromptBuilder {
             String location = metadata != null && metadata.getLocation() != null
                     && metadata.getLocation().getAddress() != null
                     ? metadata.getLocation().getAddress() : "위치 정보 없음";
+            // 앞 사진과 같은 주소는 반복하지 않는다
+            if (plan != null && plan.getSameLocationAsPrevious().contains(image.getId())) {
+                location = "the same place as the previous photo";
+            }
             List<String> names = new ArrayList<>();
-            if (metadata != null && metadata.getNearbyLandmarks() != null) {
+            if (plan != null) {
+                names.addAll(plan.getLandmarkNames().getOrDefault(image.getId(), List.of()));
+            } else if (metadata != null && metadata.getNearbyLandmarks() != null) {
                 metadata.getNearbyLandmarks().forEach(lm -> {
                     if (lm.getName() != null && !lm.getName().isEmpty()) {
                         names.add(lm.getName());
@@ -68,15 +101,14 @@ public class PromptBuilder {
             String landmarks = names.isEmpty() ? "명소 정보 없음" : String.join(", ", names);
             String promptText = String.format("Captured at %s in %s. Landmarks: %s", time, location, landmarks);
 
-            byte[] original = imageBytesMap.get(image.getId());
-            byte[] compressed = ImageCompressor.compressImage(original);
-            String inlineData = compressed != null
-                    ? Base64.getEncoder().encodeToString(compressed) : "";
+            ByteBuffer compressed = compressedImageMap.get(image.getId());
+            // 같은 버퍼를 여러 요청이 공유할 수 있으므로 위치가 독립된 뷰를 사용
+            ByteBuffer inlineData = compressed != null ? compressed.duplicate() : ByteBuffer.allocate(0);
 
             GeminiPromptRequest.Part textPart = new GeminiPromptRequest.Part();
             textPart.setText(promptText);
             GeminiPromptRequest.Part imagePart = new GeminiPromptRequest.Part();
-            imagePart.setInline_data(new GeminiPromptRequest.InlineData("image/webp", inlineData));
+            imagePart.setInline_data(new GeminiPromptRequest.InlineData(mimeType, inlineData));
 
             contents.add(new GeminiPromptRequest.Content("user", List.of(textPart, imagePart)));
         }
@@ -86,18 +118,32 @@ public class PromptBuilder {
     }
 
     public static GeminiPromptRequest buildDigestPrompt(DigestRequestForPrompt request, ObjectMapper objectMapper) {
+        return buildJsonPrompt(PromptType.DIGEST, request, objectMapper);
+    }
+
+    // 큰 다이제스트의 map 단계: 항목 일부에 대한 항목별 요약 + 청크 요약
+    public static GeminiPromptRequest buildDigestMapPrompt(DigestRequestForPrompt chunk, ObjectMapper objectMapper) {
+        return buildJsonPrompt(PromptType.DIGEST_MAP, chunk, objectMapper);
+    }
+
+    // 큰 다이제스트의 reduce 단계: 청크 요약들로 제목, 요약, 인사이트 생성
+    public static GeminiPromptRequest buildDigestReducePrompt(DigestReduceRequestForPrompt request, ObjectMapper objectMapper) {
+        return buildJsonPrompt(PromptType.DIGEST_REDUCE, request, objectMapper);
+    }
+
+    private static GeminiPromptRequest buildJsonPrompt(PromptType type, Object payload, ObjectMapper objectMapper) {
         List<GeminiPromptRequest.Content> contents = new ArrayList<>();
-        // 다이제스트 시스템 프롬프트 추가
+        // 시스템 프롬프트 추가
         contents.add(new GeminiPromptRequest.Content(
                 "model",
-                List.of(new GeminiPromptRequest.Part(SYSTEM_PROMPTS.get(PromptType.DIGEST)))
+                List.of(new GeminiPromptRequest.Part(SYSTEM_PROMPTS.get(type)))
         ));
 
         String jsonPayload;
         try {
-            jsonPayload = objectMapper.writeValueAsString(request);
+            jsonPayload = objectMapper.writeValueAsString(payload);
         } catch (Exception e) {
-            throw new RuntimeException("DigestRequestForPrompt를 JSON으로 변환하는데 실패했습니다", e);
+            throw new RuntimeException(payload.getClass().getSimpleName() + "를 JSON으로 변환하는데 실패했습니다", e);
         }
 
         // JSON 페이로드를 포함한 사용자 부분 추가
@@ -5,7 +5,9 @@ import lombok.Getter;
 @Getter
 public enum PromptType {
     VISION("/prompts/vision.txt"),
-    DIGEST("/prompts/digest.txt");
+    DIGEST("/prompts/digest.txt"),
+    DIGEST_MAP("/prompts/digest_map.txt"),
+    DIGEST_REDUCE("/prompts/digest_reduce.txt");
 
     private final String path;
 
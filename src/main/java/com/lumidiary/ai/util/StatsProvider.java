@@ -0,0 +1,15 @@
+package com.lumidiary.ai.util;
+
+import java.util.Map;
+
+/**
+ * 운영 지표(카운터, 게이지)를 노출하는 컴포넌트.
+ * StatsController가 등록된 모든 구현체를 모아 /api/stats 로 응답한다.
+ */
+public interface StatsProvider {
+
+    // 응답 JSON에서 사용할 섹션 이름
+    String statsName();
+
+    Map<String, Object> stats();
+}
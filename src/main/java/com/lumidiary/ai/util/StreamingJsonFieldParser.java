@@ -0,0 +1,80 @@
+package com.lumidiary.ai.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 모델이 조각조각 내보내는 JSON 텍스트를 Jackson 논블로킹 파서에 이어서 먹이고,
+ * 문자열 값이 완성될 때마다 JSON Pointer 경로(/images/0/description 등)와 함께 알린다.
+ * 앞쪽 코드 펜스는 첫 '{' 또는 '[' 전까지 버리고, 루트 값이 닫힌 뒤의 텍스트는 무시한다.
+ * 부분 결과 전달용이므로 파싱 오류가 나면 조용히 멈추고, 최종 바인딩은 호출자가 전체 텍스트로 한다.
+ */
+public class StreamingJsonFieldParser {
+
+    public interface FieldListener {
+        void onField(String path, String value);
+    }
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final FieldListener listener;
+
+    private boolean started;
+    private boolean finished;
+    private int depth;
+
+    public StreamingJsonFieldParser(JsonFactory factory, FieldListener listener) throws IOException {
+        this.parser = factory.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.listener = listener;
+    }
+
+    public void feed(String chunk) {
+        if (finished || chunk.isEmpty()) {
+            return;
+        }
+        String input = chunk;
+        if (!started) {
+            int start = firstValueStart(chunk);
+            if (start < 0) {
+                return;
+            }
+            started = true;
+            input = chunk.substring(start);
+        }
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        JsonToken token;
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    if (--depth == 0) {
+                        finished = true;
+                        return;
+                    }
+                } else if (token == JsonToken.VALUE_STRING) {
+                    listener.onField(parser.getParsingContext().pathAsPointer().toString(), parser.getText());
+                }
+            }
+        } catch (IOException e) {
+            finished = true;
+        }
+    }
+
+    private static int firstValueStart(String chunk) {
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            if (c == '{' || c == '[') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
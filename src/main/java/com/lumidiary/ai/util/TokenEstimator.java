@@ -0,0 +1,36 @@
+package com.lumidiary.ai.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 호출 전에 프롬프트 크기를 가늠하기 위한 토큰 수 추정.
+ * 영문/숫자/기호는 약 4글자당 1토큰, 한글·한자 등 비ASCII 문자는 글자당 1토큰으로 넉넉하게 센다.
+ */
+public class TokenEstimator {
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                ascii++;
+            } else if (!Character.isLowSurrogate(c)) {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + other;
+    }
+
+    // 직렬화된 JSON 기준 (키 이름과 구두점 포함)
+    public static int estimateJson(Object value, ObjectMapper objectMapper) {
+        try {
+            return estimate(objectMapper.writeValueAsString(value));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("토큰 추정을 위한 직렬화 실패", e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.lumidiary.ai.util;
+
+import com.sksamuel.scrimage.ImmutableImage;
+import com.sksamuel.scrimage.webp.WebpWriter;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * scrimage WebpWriter 기반 인코더.
+ * 내부적으로 cwebp 실행 파일을 이미지마다 프로세스로 실행하고 임시 파일을 주고받으므로 호출 비용이 크다.
+ */
+public class WebpImageEncoder implements ImageEncoder {
+
+    private final int quality;
+
+    public WebpImageEncoder(int quality) {
+        this.quality = quality;
+    }
+
+    @Override
+    public byte[] encode(BufferedImage image, int quality) throws IOException {
+        return ImmutableImage.fromAwt(image).bytes(WebpWriter.DEFAULT.withQ(quality));
+    }
+
+    @Override
+    public int quality() {
+        return quality;
+    }
+
+    @Override
+    public String mimeType() {
+        return "image/webp";
+    }
+}
@@ -0,0 +1,132 @@
+package com.lumidiary.ai.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CallbackBatchSenderTest {
+
+    private static final String URL = "http://backend/callback/batch";
+
+    private CallbackBatchSender sender;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (sender != null) {
+            sender.shutdown();
+        }
+    }
+
+    @Test
+    void emptyTwoHundredCompletesEveryItem() throws Exception {
+        sender = start(new FixedBackend(""));
+
+        CompletableFuture<Void> first = sender.submit("diary", "a", "u/a", "{}");
+        CompletableFuture<Void> second = sender.submit("diary", "b", "u/b", "{}");
+
+        assertNull(first.get(5, TimeUnit.SECONDS));
+        assertNull(second.get(5, TimeUnit.SECONDS));
+        assertEquals(2L, sender.stats().get("itemsSent"));
+        assertEquals(0L, sender.stats().get("protocolErrors"));
+    }
+
+    @Test
+    void itemMissingFromResultsIsDeliveredAndCountedAsProtocolError() throws Exception {
+        sender = start(new FixedBackend("{\"results\":[{\"itemId\":\"a\",\"status\":200}]}"));
+
+        CompletableFuture<Void> listed = sender.submit("diary", "a", "u/a", "{}");
+        CompletableFuture<Void> missing = sender.submit("diary", "b", "u/b", "{}");
+
+        assertNull(listed.get(5, TimeUnit.SECONDS));
+        assertNull(missing.get(5, TimeUnit.SECONDS));
+        assertEquals(1L, sender.stats().get("protocolErrors"));
+        assertEquals(0L, sender.stats().get("itemsFailed"));
+    }
+
+    @Test
+    void unreadableBodyIsDeliveredAndCountedAsProtocolError() throws Exception {
+        sender = start(new FixedBackend("<html>ok</html>"));
+
+        CompletableFuture<Void> item = sender.submit("diary", "a", "u/a", "{}");
+        sender.flush();
+
+        assertNull(item.get(5, TimeUnit.SECONDS));
+        assertEquals(1L, sender.stats().get("protocolErrors"));
+    }
+
+    @Test
+    void perItemStatusDecidesRetryOrGiveUp() throws Exception {
+        sender = start(new FixedBackend("{\"results\":[{\"itemId\":\"a\",\"status\":400,\"message\":\"bad\"},"
+                + "{\"itemId\":\"b\",\"status\":503}]}"));
+
+        CompletableFuture<Void> rejected = sender.submit("diary", "a", "u/a", "{}");
+        CompletableFuture<Void> unavailable = sender.submit("diary", "b", "u/b", "{}");
+
+        ExecutionException permanent = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(HttpClientErrorException.class, permanent.getCause());
+        ExecutionException transient_ = assertThrows(ExecutionException.class,
+                () -> unavailable.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, transient_.getCause());
+        assertEquals(2L, sender.stats().get("itemsFailed"));
+    }
+
+    @Test
+    void failedBatchPostIsRetryable() throws Exception {
+        FixedBackend backend = new FixedBackend("");
+        backend.failure = new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+        sender = start(backend);
+
+        CompletableFuture<Void> item = sender.submit("diary", "a", "u/a", "{}");
+        sender.flush();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> item.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    // 두 항목이 모이면 바로 보내도록 max-size를 2로 둔다. linger 타이머는 돌지 않으므로 한 항목은 flush()로 보낸다
+    private static CallbackBatchSender start(RestTemplate restTemplate) {
+        CallbackBatchSender batchSender = new CallbackBatchSender(restTemplate, new ObjectMapper());
+        ReflectionTestUtils.setField(batchSender, "enabled", true);
+        ReflectionTestUtils.setField(batchSender, "maxSize", 2);
+        ReflectionTestUtils.setField(batchSender, "diaryBatchUrl", URL);
+        ReflectionTestUtils.setField(batchSender, "senderThreads", 1);
+        batchSender.init();
+        return batchSender;
+    }
+
+    private static class FixedBackend extends RestTemplate {
+        private final String body;
+        private volatile RuntimeException failure;
+
+        private FixedBackend(String body) {
+            this.body = body;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> ResponseEntity<T> postForEntity(String url, Object request, Class<T> responseType,
+                                                   Object... uriVariables) {
+            assertEquals(URL, url);
+            if (failure != null) {
+                throw failure;
+            }
+            return ResponseEntity.ok((T) body);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.lumidiary.ai.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CallbackOutboxTest {
+
+    private static final String URL = "http://backend/callback";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    private CallbackOutbox outbox;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (outbox != null) {
+            outbox.stop();
+        }
+    }
+
+    @Test
+    void recordsDeliveryTombstoneAndDoesNotResendOnRestart() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        outbox = start(backend, 1_000L);
+
+        outbox.enqueue("diary", URL, Map.of("id", "d1"));
+        awaitTrue(() -> (long) outbox.stats().get("delivered") == 1);
+        outbox.stop();
+
+        List<CallbackOutbox.OutboxRecord> records = readLog();
+        assertEquals(List.of("ENQUEUED", "DELIVERED"), records.stream().map(CallbackOutbox.OutboxRecord::getState).toList());
+        assertEquals(records.get(0).getId(), records.get(1).getId());
+
+        outbox = start(backend, 1_000L);
+        Thread.sleep(100);
+
+        assertEquals(0L, outbox.stats().get("replayed"));
+        assertEquals(1, backend.payloads.size());
+        // 재시작 시 미전송 항목만 남도록 파일을 다시 쓴다
+        assertEquals(List.of(), readLog());
+    }
+
+    @Test
+    void replaysUndeliveredCallbacksAfterRestart() throws Exception {
+        FakeBackend down = new FakeBackend();
+        down.failures.add(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        // 재시도 대기 중에 종료되도록 backoff를 길게 둔다
+        outbox = start(down, 60_000L);
+
+        outbox.enqueue("diary", URL, Map.of("id", "d1"));
+        awaitTrue(() -> (long) outbox.stats().get("retries") == 1);
+        outbox.stop();
+
+        FakeBackend up = new FakeBackend();
+        outbox = start(up, 1_000L);
+        awaitTrue(() -> (long) outbox.stats().get("delivered") == 1);
+
+        assertEquals(1L, outbox.stats().get("replayed"));
+        assertEquals(List.of("{\"id\":\"d1\"}"), up.payloads);
+        assertEquals(List.of("ENQUEUED", "DELIVERED"), readLog().stream().map(CallbackOutbox.OutboxRecord::getState).toList());
+    }
+
+    @Test
+    void retriesTransientFailuresWithBackoff() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        backend.failures.add(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+        backend.failures.add(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS));
+        outbox = start(backend, 10L);
+
+        outbox.enqueue("diary", URL, Map.of("id", "d1"));
+        awaitTrue(() -> (long) outbox.stats().get("delivered") == 1);
+
+        assertEquals(2L, outbox.stats().get("retries"));
+        assertEquals(3, backend.attempts);
+        assertEquals(0, outbox.stats().get("pending"));
+    }
+
+    @Test
+    void persistsAttemptCountAcrossRestarts() throws Exception {
+        FakeBackend down = new FakeBackend();
+        down.failures.add(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        outbox = start(down, 60_000L);
+
+        outbox.enqueue("diary", URL, Map.of("id", "d1"));
+        awaitTrue(() -> (long) outbox.stats().get("retries") == 1);
+        outbox.stop();
+
+        List<CallbackOutbox.OutboxRecord> records = readLog();
+        assertEquals(List.of("ENQUEUED", "RETRY"), records.stream().map(CallbackOutbox.OutboxRecord::getState).toList());
+        assertEquals(1, records.get(1).getAttempts());
+
+        outbox = start(new FakeBackend(), 1_000L);
+        awaitTrue(() -> (long) outbox.stats().get("delivered") == 1);
+        // 실패 1회 + 재시작 시 재생 1회
+        assertEquals(2, readLog().get(0).getAttempts());
+    }
+
+    @Test
+    void abandonsReplayedRecordsThatExhaustedAttempts() throws Exception {
+        String enqueued = objectMapper.writeValueAsString(
+                new CallbackOutbox.OutboxRecord("r1", "ENQUEUED", "diary", URL, "{\"id\":\"d1\"}", 0));
+        String retry = objectMapper.writeValueAsString(
+                new CallbackOutbox.OutboxRecord("r1", "RETRY", null, null, null, 4));
+        Files.writeString(directory.resolve("outbox.log"), enqueued + "\n" + retry + "\n", StandardCharsets.UTF_8);
+        FakeBackend backend = new FakeBackend();
+
+        // 전송 도중 죽는 크래시 루프에서도 재생 자체가 시도로 세어져 maxAttempts(5)에서 멈춘다
+        outbox = start(backend, 10L);
+        Thread.sleep(100);
+
+        assertEquals(1L, outbox.stats().get("abandoned"));
+        assertEquals(0, outbox.stats().get("pending"));
+        assertEquals(0, backend.attempts);
+        assertEquals(List.of(), readLog());
+    }
+
+    @Test
+    void abandonsPermanentFailuresWithTombstone() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        backend.failures.add(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
+        outbox = start(backend, 10L);
+
+        outbox.enqueue("diary", URL, Map.of("id", "d1"));
+        awaitTrue(() -> (long) outbox.stats().get("abandoned") == 1);
+        outbox.stop();
+
+        assertEquals(List.of("ENQUEUED", "ABANDONED"), readLog().stream().map(CallbackOutbox.OutboxRecord::getState).toList());
+        outbox = start(backend, 10L);
+        assertEquals(0L, outbox.stats().get("replayed"));
+        assertEquals(1, backend.attempts);
+    }
+
+    @Test
+    void skipsTruncatedLastLine() throws Exception {
+        String enqueued = objectMapper.writeValueAsString(
+                new CallbackOutbox.OutboxRecord("r1", "ENQUEUED", "diary", URL, "{\"id\":\"d1\"}", 2));
+        Files.writeString(directory.resolve("outbox.log"), enqueued + "\n{\"id\":\"r2\",\"sta", StandardCharsets.UTF_8);
+        FakeBackend backend = new FakeBackend();
+
+        outbox = start(backend, 10L);
+        awaitTrue(() -> (long) outbox.stats().get("delivered") == 1);
+
+        assertEquals(1L, outbox.stats().get("replayed"));
+        assertEquals(List.of("{\"id\":\"d1\"}"), backend.payloads);
+    }
+
+    @Test
+    void compactionKeepsOnlyPendingRecords() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        outbox = start(backend, 1_000L);
+        ReflectionTestUtils.setField(outbox, "compactThreshold", 2);
+
+        outbox.enqueue("diary", URL, Map.of("id", "d1"));
+        awaitCompletedRecords(1);
+        outbox.compact();
+        assertEquals(2, readLog().size());
+
+        outbox.enqueue("diary", URL, Map.of("id", "d2"));
+        awaitCompletedRecords(2);
+        outbox.compact();
+
+        assertEquals(List.of(), readLog());
+    }
+
+    private CallbackOutbox start(RestTemplate restTemplate, long initialBackoffMs) throws Exception {
+        CallbackOutbox callbackOutbox = new CallbackOutbox(restTemplate, objectMapper,
+                new CallbackBatchSender(restTemplate, objectMapper));
+        ReflectionTestUtils.setField(callbackOutbox, "outboxPath", directory.resolve("outbox.log").toString());
+        ReflectionTestUtils.setField(callbackOutbox, "senderThreads", 2);
+        ReflectionTestUtils.setField(callbackOutbox, "initialBackoffMs", initialBackoffMs);
+        ReflectionTestUtils.setField(callbackOutbox, "maxBackoffMs", 60_000L);
+        ReflectionTestUtils.setField(callbackOutbox, "maxAttempts", 5);
+        ReflectionTestUtils.setField(callbackOutbox, "compactThreshold", 1_000);
+        callbackOutbox.start();
+        return callbackOutbox;
+    }
+
+    private List<CallbackOutbox.OutboxRecord> readLog() throws Exception {
+        List<CallbackOutbox.OutboxRecord> records = new ArrayList<>();
+        for (String line : Files.readAllLines(directory.resolve("outbox.log"), StandardCharsets.UTF_8)) {
+            records.add(objectMapper.readValue(line, CallbackOutbox.OutboxRecord.class));
+        }
+        return records;
+    }
+
+    // 전송 카운터는 완료 기록을 쓰기 직전에 오르므로, 압축 전에는 기록된 완료 건수를 기다린다
+    private void awaitCompletedRecords(long count) throws InterruptedException {
+        awaitTrue(() -> (long) ReflectionTestUtils.getField(outbox, "completedSinceCompaction") == count);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("조건이 5초 안에 충족되지 않음");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    // 준비된 예외를 차례로 던진 뒤에는 성공 응답을 돌려주는 백엔드
+    private static class FakeBackend extends RestTemplate {
+        private final List<RuntimeException> failures = new CopyOnWriteArrayList<>();
+        private final List<String> payloads = new CopyOnWriteArrayList<>();
+        private volatile int attempts;
+
+        @Override
+        public synchronized <T> ResponseEntity<T> postForEntity(String url, Object request, Class<T> responseType,
+                                                                Object... uriVariables) {
+            attempts++;
+            if (!failures.isEmpty()) {
+                throw failures.remove(0);
+            }
+            assertEquals(URL, url);
+            payloads.add((String) ((HttpEntity<?>) request).getBody());
+            return ResponseEntity.ok().build();
+        }
+    }
+}
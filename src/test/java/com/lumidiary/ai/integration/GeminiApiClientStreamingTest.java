@@ -0,0 +1,151 @@
+package com.lumidiary.ai.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lumidiary.ai.dto.GeminiPromptRequest;
+import com.lumidiary.ai.util.StreamingJsonFieldParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * streamGenerateContent(alt=sse) 모드를 로컬 가짜 Gemini 서버(JDK HttpServer)에 대고 확인한다.
+ */
+class GeminiApiClientStreamingTest {
+
+    private static final String TEXT = "```json\n{\"title\":\"좋은 한 주\",\"summary\":\"요약 \\\"인용\\\" 입니다\","
+            + "\"entries\":[{\"id\":\"e1\",\"summary\":\"첫째\"},{\"id\":\"e2\",\"summary\":\"둘째\"}]}\n```";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicReference<String> requestUri = new AtomicReference<>();
+    private final CountDownLatch firstChunkDelivered = new CountDownLatch(1);
+    private final AtomicBoolean deliveredBeforeRest = new AtomicBoolean();
+
+    private HttpServer server;
+    private OkHttpClient okHttpClient;
+    private GeminiApiClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/models/fake:streamGenerateContent", this::stream);
+        server.createContext("/models/broken:streamGenerateContent", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = "{\"error\":{\"code\":429}}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(429, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        okHttpClient = new OkHttpClient();
+        client = new GeminiApiClient(okHttpClient);
+        ReflectionTestUtils.setField(client, "apiKey", "test-key");
+        ReflectionTestUtils.setField(client, "modelUrl", "http://localhost:" + server.getAddress().getPort() + "/models/fake");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        okHttpClient.dispatcher().executorService().shutdown();
+        okHttpClient.connectionPool().evictAll();
+    }
+
+    @Test
+    void deliversChunksAsTheyArriveAndBindsFullText() throws Exception {
+        List<String> chunks = new ArrayList<>();
+
+        JsonNode result = client.streamPrompt(prompt(), JsonNode.class, chunk -> {
+            chunks.add(chunk);
+            firstChunkDelivered.countDown();
+        });
+
+        assertEquals("/models/fake:streamGenerateContent?alt=sse&key=test-key", requestUri.get());
+        // 첫 조각은 서버가 나머지를 보내기 전에 전달되어야 한다
+        assertTrue(deliveredBeforeRest.get());
+        assertEquals(chunks(TEXT), chunks);
+        assertEquals("좋은 한 주", result.get("title").asText());
+        assertEquals("둘째", result.get("entries").get(1).get("summary").asText());
+    }
+
+    @Test
+    void feedsPartialFieldsToParser() throws Exception {
+        List<String> fields = new ArrayList<>();
+        StreamingJsonFieldParser parser = new StreamingJsonFieldParser(objectMapper.getFactory(),
+                (path, value) -> fields.add(path + "=" + value));
+
+        client.streamPrompt(prompt(), JsonNode.class, chunk -> {
+            firstChunkDelivered.countDown();
+            parser.feed(chunk);
+        });
+
+        assertEquals(List.of("/title=좋은 한 주", "/summary=요약 \"인용\" 입니다",
+                "/entries/0/id=e1", "/entries/0/summary=첫째",
+                "/entries/1/id=e2", "/entries/1/summary=둘째"), fields);
+    }
+
+    @Test
+    void failsOnErrorStatus() {
+        ReflectionTestUtils.setField(client, "modelUrl", "http://localhost:" + server.getAddress().getPort() + "/models/broken");
+
+        IOException error = assertThrows(IOException.class, () -> client.streamPrompt(prompt(), JsonNode.class, chunk -> {
+        }));
+        assertTrue(error.getMessage().contains("429"), error.getMessage());
+    }
+
+    // 조각마다 generateContent와 같은 봉투를 data 이벤트로 보내고, 마지막에 사용량만 담긴 이벤트를 보낸다
+    private void stream(HttpExchange exchange) throws IOException {
+        requestUri.set(exchange.getRequestURI().toString());
+        exchange.getRequestBody().readAllBytes();
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            List<String> chunks = chunks(TEXT);
+            for (int i = 0; i < chunks.size(); i++) {
+                String envelope = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":"
+                        + objectMapper.writeValueAsString(chunks.get(i)) + "}],\"role\":\"model\"}}]}";
+                out.write(("data: " + envelope + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                if (i == 0) {
+                    deliveredBeforeRest.set(firstChunkDelivered.await(5, TimeUnit.SECONDS));
+                }
+            }
+            out.write("data: {\"usageMetadata\":{\"promptTokenCount\":3}}\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<String> chunks(String text) {
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += 7) {
+            chunks.add(text.substring(i, Math.min(text.length(), i + 7)));
+        }
+        return chunks;
+    }
+
+    private static GeminiPromptRequest prompt() {
+        GeminiPromptRequest request = new GeminiPromptRequest();
+        request.setContents(List.of(new GeminiPromptRequest.Content("user", List.of(new GeminiPromptRequest.Part("요약해 줘")))));
+        return request;
+    }
+}
@@ -0,0 +1,237 @@
+package com.lumidiary.ai.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lumidiary.ai.dto.DigestRequest;
+import com.lumidiary.ai.dto.DigestResponse;
+import com.lumidiary.ai.service.DigestService;
+import com.lumidiary.ai.service.TwoLevelCacheFactory;
+import com.oracle.bmc.queue.QueueClient;
+import com.oracle.bmc.queue.model.GetMessage;
+import com.oracle.bmc.queue.model.GetMessages;
+import com.oracle.bmc.queue.model.MessageMetadata;
+import com.oracle.bmc.queue.requests.GetMessagesRequest;
+import com.oracle.bmc.queue.responses.GetMessagesResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OciQueueListenerTest {
+
+    private static final String QUEUE_OCID = "ocid1.queue.oc1..test";
+    private static final String DIGEST_CALLBACK_URL = "http://backend/digest/callback";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final QueueClient queueClient = mock(QueueClient.class);
+    // 폴링마다 돌려줄 메시지 묶음과, GetMessages 요청에 담긴 limit
+    private final Queue<List<GetMessage>> fetches = new ConcurrentLinkedQueue<>();
+    private final List<Integer> requestedLimits = new CopyOnWriteArrayList<>();
+    private final List<String> callbacks = new CopyOnWriteArrayList<>();
+    private final List<String> deletedReceipts = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger digests = new AtomicInteger();
+    // 다이제스트 처리를 붙잡아 두어 메시지를 in-flight 상태로 유지
+    private volatile CountDownLatch processing = new CountDownLatch(0);
+    private volatile IOException digestFailure;
+
+    private QueueLeaseRenewer leaseRenewer;
+    private OciQueueListener listener;
+
+    @BeforeEach
+    void setUp() {
+        when(queueClient.getMessages(any())).thenAnswer(invocation -> {
+            GetMessagesRequest request = invocation.getArgument(0);
+            assertEquals(QUEUE_OCID, request.getQueueId());
+            requestedLimits.add(request.getLimit());
+            List<GetMessage> messages = fetches.poll();
+            return GetMessagesResponse.builder()
+                    .getMessages(GetMessages.builder().messages(messages != null ? messages : List.of()).build())
+                    .build();
+        });
+
+        DigestService digestService = new DigestService(null, objectMapper, null, null) {
+            @Override
+            public DigestResponse createDigest(DigestRequest request) throws IOException {
+                digests.incrementAndGet();
+                try {
+                    processing.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (digestFailure != null) {
+                    throw digestFailure;
+                }
+                DigestResponse response = new DigestResponse();
+                response.setId(request.getId());
+                return response;
+            }
+        };
+        CallbackOutbox outbox = new CallbackOutbox(null, objectMapper, null) {
+            @Override
+            public void enqueue(String channel, String callbackUrl, Object payload) {
+                callbacks.add(channel + " " + callbackUrl + " " + ((DigestResponse) payload).getId());
+            }
+        };
+        QueueMessageDeleter deleter = new QueueMessageDeleter(queueClient) {
+            @Override
+            public CompletableFuture<Void> delete(String receipt, String messageId) {
+                deletedReceipts.add(receipt);
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        leaseRenewer = new QueueLeaseRenewer(queueClient);
+
+        TwoLevelCacheFactory cacheFactory = new TwoLevelCacheFactory(
+                new LocalRemoteCache(new SharedCacheStore()), objectMapper);
+        ReflectionTestUtils.setField(cacheFactory, "nearMaxTtlMs", 600_000L);
+        cacheFactory.init();
+
+        listener = new OciQueueListener(queueClient, null, digestService, objectMapper, outbox, leaseRenewer,
+                deleter, cacheFactory);
+        ReflectionTestUtils.setField(listener, "queueOcid", QUEUE_OCID);
+        ReflectionTestUtils.setField(listener, "diaryChannelIdentifier", "diary");
+        ReflectionTestUtils.setField(listener, "diaryCallbackUrl", "http://backend/diary/");
+        ReflectionTestUtils.setField(listener, "digestChannelIdentifier", "digest");
+        ReflectionTestUtils.setField(listener, "digestCallbackUrl", DIGEST_CALLBACK_URL);
+        ReflectionTestUtils.setField(listener, "visibilitySeconds", 60);
+        ReflectionTestUtils.setField(listener, "maxInFlight", 3);
+        ReflectionTestUtils.setField(listener, "decodeThreads", 1);
+        ReflectionTestUtils.setField(listener, "workThreads", 3);
+        ReflectionTestUtils.setField(listener, "callbackThreads", 1);
+        ReflectionTestUtils.setField(listener, "dedupeMaxSize", 100);
+        ReflectionTestUtils.setField(listener, "dedupeTtlMs", 600_000L);
+        listener.startPipeline();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        processing.countDown();
+        listener.stopPipeline();
+    }
+
+    @Test
+    void deliversCallbackThenDeletesMessage() throws Exception {
+        fetches.add(List.of(digestMessage(1L, "r1")));
+
+        listener.pollQueue();
+        awaitTrue(() -> (long) listener.stats().get("completed") == 1);
+
+        assertEquals(List.of("digest " + DIGEST_CALLBACK_URL + " d1"), callbacks);
+        assertEquals(List.of("r1"), deletedReceipts);
+        assertEquals(0, listener.stats().get("inFlight"));
+        assertEquals(0, leaseRenewer.stats().get("tracked"));
+    }
+
+    @Test
+    void stopsPollingWhilePipelineIsFull() throws Exception {
+        processing = new CountDownLatch(1);
+        fetches.add(List.of(digestMessage(1L, "r1"), digestMessage(2L, "r2"), digestMessage(3L, "r3")));
+
+        // 여유(3)만큼만 요청하고, 가득 찬 배치를 받은 뒤에는 바로 다시 가져오려다 멈춘다
+        listener.pollQueue();
+        assertEquals(List.of(3), requestedLimits);
+        assertEquals(3, listener.stats().get("inFlight"));
+        assertEquals(1L, listener.stats().get("pollsSkipped"));
+        assertEquals(3, leaseRenewer.stats().get("tracked"));
+
+        listener.pollQueue();
+        assertEquals(List.of(3), requestedLimits);
+        assertEquals(2L, listener.stats().get("pollsSkipped"));
+
+        processing.countDown();
+        awaitTrue(() -> (long) listener.stats().get("completed") == 3);
+        listener.pollQueue();
+        assertEquals(List.of(3, 3), requestedLimits);
+        assertEquals(List.of("r1", "r2", "r3"), deletedReceipts.stream().sorted().toList());
+    }
+
+    @Test
+    void deletesRedeliveryOfAlreadyDeliveredMessageWithoutReprocessing() throws Exception {
+        fetches.add(List.of(digestMessage(1L, "r1")));
+        listener.pollQueue();
+        awaitTrue(() -> (long) listener.stats().get("completed") == 1);
+
+        // 삭제 전에 가시성 시간이 지나 같은 메시지가 새 receipt로 다시 온 경우
+        fetches.add(List.of(digestMessage(1L, "r1-again")));
+        listener.pollQueue();
+        awaitTrue(() -> deletedReceipts.size() == 2);
+
+        assertEquals(1, digests.get());
+        assertEquals(List.of("r1", "r1-again"), deletedReceipts);
+        assertEquals(1L, listener.stats().get("redeliveriesAcknowledged"));
+    }
+
+    @Test
+    void skipsRedeliveryWhileMessageIsStillProcessing() throws Exception {
+        processing = new CountDownLatch(1);
+        fetches.add(List.of(digestMessage(1L, "r1")));
+        listener.pollQueue();
+        awaitTrue(() -> digests.get() == 1);
+
+        fetches.add(List.of(digestMessage(1L, "r1-again")));
+        listener.pollQueue();
+        assertEquals(1L, listener.stats().get("redeliveriesSkipped"));
+
+        processing.countDown();
+        awaitTrue(() -> (long) listener.stats().get("completed") == 1);
+        assertEquals(1, digests.get());
+        assertEquals(List.of("r1"), deletedReceipts);
+    }
+
+    @Test
+    void failedMessageIsNotDeletedAndCanBeReprocessed() throws Exception {
+        digestFailure = new IOException("Gemini unavailable");
+        fetches.add(List.of(digestMessage(1L, "r1")));
+
+        listener.pollQueue();
+        awaitTrue(() -> (long) listener.stats().get("failed") == 1);
+
+        assertEquals(List.of(), callbacks);
+        assertEquals(List.of(), deletedReceipts);
+        assertEquals(0, listener.stats().get("inFlight"));
+        assertEquals(0, leaseRenewer.stats().get("tracked"));
+
+        // 실패한 메시지는 전달 완료로 기록되지 않으므로 다시 오면 처리한다
+        digestFailure = null;
+        fetches.add(List.of(digestMessage(1L, "r1-again")));
+        listener.pollQueue();
+        awaitTrue(() -> (long) listener.stats().get("completed") == 1);
+        assertEquals(List.of("r1-again"), deletedReceipts);
+        assertTrue(callbacks.get(0).endsWith(" d1"));
+    }
+
+    private static GetMessage digestMessage(long id, String receipt) {
+        return GetMessage.builder()
+                .id(id)
+                .receipt(receipt)
+                .content("{\"id\":\"d" + id + "\",\"entries\":[],\"userLocale\":\"ko\"}")
+                .metadata(MessageMetadata.builder().channelId("digest").build())
+                .build();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("조건이 5초 안에 충족되지 않음");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.lumidiary.ai.integration;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OkHttpConcurrencyLimiterTest {
+
+    private HttpServer server;
+    private OkHttpConcurrencyLimiter limiter;
+    private OkHttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ok", exchange -> {
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        limiter = new OkHttpConcurrencyLimiter(1, 1);
+        client = new OkHttpClient.Builder().addInterceptor(limiter).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        client.connectionPool().evictAll();
+    }
+
+    @Test
+    void holdsPermitUntilResponseBodyIsClosed() throws Exception {
+        Response first = client.newCall(request()).execute();
+        assertEquals(1, limiter.stats().get("active"));
+
+        // 첫 응답 본문을 닫기 전까지 두 번째 동기 호출은 기다린다
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> {
+            try (Response response = client.newCall(request()).execute()) {
+                return response.body().string();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(second.isDone());
+        assertEquals(1, limiter.stats().get("waiting"));
+
+        first.close();
+        assertEquals("ok", second.get(5, TimeUnit.SECONDS));
+        assertEquals(0, limiter.stats().get("active"));
+        assertEquals(1L, limiter.stats().get("waited"));
+    }
+
+    @Test
+    void givesUpAfterCallTimeout() throws Exception {
+        OkHttpClient shortClient = client.newBuilder().callTimeout(Duration.ofMillis(100)).build();
+        try (Response ignored = client.newCall(request()).execute()) {
+            assertThrows(InterruptedIOException.class, () -> shortClient.newCall(request()).execute());
+        }
+
+        assertEquals(1L, limiter.stats().get("timedOut"));
+        assertEquals(0, limiter.stats().get("active"));
+    }
+
+    private Request request() {
+        return new Request.Builder().url("http://localhost:" + server.getAddress().getPort() + "/ok").build();
+    }
+}
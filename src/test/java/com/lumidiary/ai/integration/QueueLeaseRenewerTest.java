@@ -0,0 +1,175 @@
+package com.lumidiary.ai.integration;
+
+import com.oracle.bmc.queue.QueueClient;
+import com.oracle.bmc.queue.model.UpdateMessagesDetailsEntry;
+import com.oracle.bmc.queue.model.UpdateMessagesResult;
+import com.oracle.bmc.queue.model.UpdateMessagesResultEntry;
+import com.oracle.bmc.queue.requests.UpdateMessagesRequest;
+import com.oracle.bmc.queue.responses.UpdateMessagesResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueueLeaseRenewerTest {
+
+    private static final String QUEUE_OCID = "ocid1.queue.oc1..test";
+
+    private final QueueClient queueClient = mock(QueueClient.class);
+    // 호출마다 연장을 요청한 receipt 목록
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    private QueueLeaseRenewer renewer;
+
+    @BeforeEach
+    void setUp() {
+        renewer = new QueueLeaseRenewer(queueClient);
+        ReflectionTestUtils.setField(renewer, "queueOcid", QUEUE_OCID);
+        ReflectionTestUtils.setField(renewer, "renewBeforeSeconds", 20);
+        ReflectionTestUtils.setField(renewer, "extensionSeconds", 60);
+    }
+
+    @Test
+    void renewsOnlyLeasesCloseToExpiry() {
+        respondWithSuccess();
+        renewer.track("r1", "m1", 10);
+        renewer.track("r2", "m2", 60);
+
+        renewer.renewExpiringLeases();
+        // 연장된 lease는 다시 60초가 남으므로 다음 주기에는 연장하지 않는다
+        renewer.renewExpiringLeases();
+
+        assertEquals(List.of(List.of("r1")), batches);
+        assertEquals(1L, renewer.stats().get("renewals"));
+        assertEquals(2, renewer.stats().get("tracked"));
+    }
+
+    @Test
+    void splitsRenewalsIntoBatchesOfTwenty() {
+        respondWithSuccess();
+        for (int i = 0; i < 45; i++) {
+            renewer.track("r" + i, "m" + i, 10);
+        }
+
+        renewer.renewExpiringLeases();
+
+        assertEquals(List.of(20, 20, 5), batches.stream().map(List::size).toList());
+        assertEquals(45L, renewer.stats().get("renewals"));
+    }
+
+    @Test
+    void dropsLeasesWhoseEntryFailedOrIsMissing() {
+        // r1 성공, r2 실패, r3은 결과 엔트리 없음
+        respondWith(ok(), failed("InvalidReceipt", "receipt expired"));
+        renewer.track("r1", "m1", 10);
+        renewer.track("r2", "m2", 10);
+        renewer.track("r3", "m3", 10);
+
+        renewer.renewExpiringLeases();
+
+        assertEquals(1L, renewer.stats().get("renewals"));
+        assertEquals(2L, renewer.stats().get("renewalFailures"));
+        assertEquals(2L, renewer.stats().get("leasesLost"));
+        assertEquals(1, renewer.stats().get("tracked"));
+    }
+
+    @Test
+    void expiredLeaseIsLostWithoutCallingQueue() {
+        respondWithSuccess();
+        renewer.track("r1", "m1", 0);
+
+        renewer.renewExpiringLeases();
+
+        assertEquals(List.of(), batches);
+        assertEquals(1L, renewer.stats().get("leasesLost"));
+        assertEquals(0, renewer.stats().get("tracked"));
+    }
+
+    @Test
+    void keepsLeasesForNextCycleWhenCallFails() {
+        when(queueClient.updateMessages(any())).thenThrow(new IllegalStateException("503 Service Unavailable"));
+        renewer.track("r1", "m1", 10);
+
+        renewer.renewExpiringLeases();
+
+        assertEquals(1L, renewer.stats().get("renewalFailures"));
+        assertEquals(0L, renewer.stats().get("leasesLost"));
+        assertEquals(1, renewer.stats().get("tracked"));
+    }
+
+    @Test
+    void doesNotRenewReleasedLeases() {
+        // 연장 요청 중에 처리가 끝난 receipt는 결과와 관계없이 다시 추적하지 않는다
+        when(queueClient.updateMessages(any())).thenAnswer(invocation -> {
+            renewer.release("r2");
+            return success(invocation.getArgument(0));
+        });
+        renewer.track("r1", "m1", 10);
+        renewer.track("r2", "m2", 10);
+        renewer.track("r3", "m3", 10);
+        renewer.release("r3");
+
+        renewer.renewExpiringLeases();
+
+        assertEquals(1L, renewer.stats().get("renewals"));
+        assertEquals(0L, renewer.stats().get("leasesLost"));
+        assertEquals(1, renewer.stats().get("tracked"));
+    }
+
+    private void respondWithSuccess() {
+        when(queueClient.updateMessages(any())).thenAnswer(invocation -> success(invocation.getArgument(0)));
+    }
+
+    private void respondWith(UpdateMessagesResultEntry... entries) {
+        when(queueClient.updateMessages(any())).thenAnswer(invocation -> {
+            record(invocation.getArgument(0));
+            return response(List.of(entries));
+        });
+    }
+
+    private UpdateMessagesResponse success(UpdateMessagesRequest request) {
+        List<UpdateMessagesResultEntry> entries = new ArrayList<>();
+        for (String ignored : record(request)) {
+            entries.add(ok());
+        }
+        return response(entries);
+    }
+
+    private List<String> record(UpdateMessagesRequest request) {
+        assertEquals(QUEUE_OCID, request.getQueueId());
+        List<String> receipts = new ArrayList<>();
+        for (UpdateMessagesDetailsEntry entry : request.getUpdateMessagesDetails().getEntries()) {
+            assertEquals(60, (int) entry.getVisibilityInSeconds());
+            receipts.add(entry.getReceipt());
+        }
+        batches.add(receipts);
+        return receipts;
+    }
+
+    private static UpdateMessagesResponse response(List<UpdateMessagesResultEntry> entries) {
+        int failed = (int) entries.stream().filter(entry -> entry.getErrorCode() != null).count();
+        return UpdateMessagesResponse.builder()
+                .updateMessagesResult(UpdateMessagesResult.builder()
+                        .entries(entries)
+                        .clientFailures(failed)
+                        .serverFailures(0)
+                        .build())
+                .build();
+    }
+
+    private static UpdateMessagesResultEntry ok() {
+        return UpdateMessagesResultEntry.builder().build();
+    }
+
+    private static UpdateMessagesResultEntry failed(String code, String message) {
+        return UpdateMessagesResultEntry.builder().errorCode(code).errorMessage(message).build();
+    }
+}
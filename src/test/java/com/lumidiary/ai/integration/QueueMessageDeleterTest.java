@@ -0,0 +1,161 @@
+package com.lumidiary.ai.integration;
+
+import com.oracle.bmc.queue.QueueClient;
+import com.oracle.bmc.queue.model.DeleteMessagesDetailsEntry;
+import com.oracle.bmc.queue.model.DeleteMessagesResult;
+import com.oracle.bmc.queue.model.DeleteMessagesResultEntry;
+import com.oracle.bmc.queue.requests.DeleteMessagesRequest;
+import com.oracle.bmc.queue.responses.DeleteMessagesResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueueMessageDeleterTest {
+
+    private static final String QUEUE_OCID = "ocid1.queue.oc1..test";
+
+    private final QueueClient queueClient = mock(QueueClient.class);
+    // 호출마다 받은 receipt 목록
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    private QueueMessageDeleter deleter;
+
+    @BeforeEach
+    void setUp() {
+        deleter = new QueueMessageDeleter(queueClient);
+        ReflectionTestUtils.setField(deleter, "queueOcid", QUEUE_OCID);
+        ReflectionTestUtils.setField(deleter, "batchSize", 3);
+        deleter.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        deleter.flushOnShutdown();
+    }
+
+    @Test
+    void completesEachReceiptFromItsResultEntry() throws Exception {
+        respondWith(ok(), failed("InvalidReceipt", "receipt expired"), ok());
+
+        CompletableFuture<Void> first = deleter.delete("r1", "m1");
+        CompletableFuture<Void> second = deleter.delete("r2", "m2");
+        CompletableFuture<Void> third = deleter.delete("r3", "m3");
+
+        assertNull(first.get(5, TimeUnit.SECONDS));
+        assertNull(third.get(5, TimeUnit.SECONDS));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, error.getCause());
+        assertTrue(error.getCause().getMessage().contains("InvalidReceipt"), error.getCause().getMessage());
+
+        assertEquals(List.of(List.of("r1", "r2", "r3")), batches);
+        assertEquals(2L, deleter.stats().get("deleted"));
+        assertEquals(1L, deleter.stats().get("failures"));
+    }
+
+    @Test
+    void failsReceiptsWithoutResultEntry() throws Exception {
+        respondWith(ok());
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            futures.add(deleter.delete("r" + i, "m" + i));
+        }
+
+        assertNull(futures.get(0).get(5, TimeUnit.SECONDS));
+        for (CompletableFuture<Void> future : futures.subList(1, 3)) {
+            ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertTrue(error.getCause().getMessage().contains("no result entry"));
+        }
+    }
+
+    @Test
+    void failsWholeBatchWhenCallFails() {
+        RuntimeException outage = new IllegalStateException("503 Service Unavailable");
+        when(queueClient.deleteMessages(any())).thenThrow(outage);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            futures.add(deleter.delete("r" + i, "m" + i));
+        }
+
+        for (CompletableFuture<Void> future : futures) {
+            ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertEquals(outage, error.getCause());
+        }
+        assertEquals(3L, deleter.stats().get("failures"));
+    }
+
+    @Test
+    void flushSendsPartialBatch() throws Exception {
+        respondWith(ok(), ok());
+
+        CompletableFuture<Void> first = deleter.delete("r1", "m1");
+        CompletableFuture<Void> second = deleter.delete("r2", "m2");
+        assertEquals(2, deleter.stats().get("pending"));
+
+        deleter.flush();
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(List.of("r1", "r2")), batches);
+        assertEquals(0, deleter.stats().get("pending"));
+    }
+
+    @Test
+    void failsReceiptsQueuedAfterShutdown() throws Exception {
+        respondWith(ok());
+        deleter.flushOnShutdown();
+
+        CompletableFuture<Void> late = deleter.delete("r1", "m1");
+        deleter.flush();
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> late.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+        assertEquals(List.of(), batches);
+    }
+
+    private void respondWith(DeleteMessagesResultEntry... entries) {
+        when(queueClient.deleteMessages(any())).thenAnswer(invocation -> {
+            DeleteMessagesRequest request = invocation.getArgument(0);
+            assertEquals(QUEUE_OCID, request.getQueueId());
+            batches.add(request.getDeleteMessagesDetails().getEntries().stream()
+                    .map(DeleteMessagesDetailsEntry::getReceipt).toList());
+            List<DeleteMessagesResultEntry> results = List.of(entries);
+            int failed = (int) results.stream().filter(entry -> entry.getErrorCode() != null).count();
+            return DeleteMessagesResponse.builder()
+                    .deleteMessagesResult(DeleteMessagesResult.builder()
+                            .entries(results)
+                            .clientFailures(failed)
+                            .serverFailures(0)
+                            .build())
+                    .build();
+        });
+    }
+
+    private static DeleteMessagesResultEntry ok() {
+        return DeleteMessagesResultEntry.builder().build();
+    }
+
+    private static DeleteMessagesResultEntry failed(String code, String message) {
+        return DeleteMessagesResultEntry.builder().errorCode(code).errorMessage(message).build();
+    }
+}
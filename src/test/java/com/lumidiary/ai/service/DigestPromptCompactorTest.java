@@ -0,0 +1,162 @@
+package com.lumidiary.ai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lumidiary.ai.dto.DigestEntry;
+import com.lumidiary.ai.dto.DigestEntryForPrompt;
+import com.lumidiary.ai.dto.DigestRequestForPrompt;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DigestPromptCompactorTest {
+
+    private static final int ENTRIES = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private DigestPromptCompactor compactor;
+    private List<DigestEntry> originals;
+    private DigestRequestForPrompt request;
+
+    @BeforeEach
+    void setUp() {
+        compactor = new DigestPromptCompactor(objectMapper);
+        ReflectionTestUtils.setField(compactor, "truncateChars", 600);
+        ReflectionTestUtils.setField(compactor, "minTruncateChars", 120);
+        ReflectionTestUtils.setField(compactor, "condensedSummaryChars", 200);
+
+        // 항목 0이 가장 최근, 항목 9가 가장 오래된 일기
+        originals = new ArrayList<>();
+        List<DigestEntryForPrompt> entries = new ArrayList<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            DigestEntry original = new DigestEntry();
+            original.setDate(String.format("2025-03-%02dT09:00:00", ENTRIES - i));
+            originals.add(original);
+            entries.add(entry(i));
+        }
+        request = new DigestRequestForPrompt();
+        request.setEntries(entries);
+        request.setUser_locale("ko");
+    }
+
+    @Test
+    void leavesRequestUnderBudgetUntouched() throws Exception {
+        setMaxTokens(compactor.estimate(request));
+        String before = objectMapper.writeValueAsString(request);
+
+        assertFalse(compactor.compact(request, originals));
+        assertEquals(before, objectMapper.writeValueAsString(request));
+    }
+
+    @Test
+    void dropsEmptyAnswersAndDuplicateQuestionsFirst() {
+        int before = compactor.estimate(request);
+        setMaxTokens(before - 1);
+
+        assertTrue(compactor.compact(request, originals));
+
+        for (DigestEntryForPrompt entry : request.getEntries()) {
+            // 빈 답변 하나만 빠지면 한도 안에 들어오므로 다음 단계(중복 질문 제거, 자르기)는 일어나지 않는다
+            assertEquals(3, entry.getQuestions().size());
+            assertEquals(2, entry.getQuestions().stream().filter(q -> q.getQuestion().equals("무엇이 좋았나요?")).count());
+        }
+        assertEquals((long) ENTRIES, compactor.stats().get("droppedEmptyAnswers"));
+        assertEquals(0L, compactor.stats().get("truncatedFields"));
+    }
+
+    @Test
+    void truncatesLongTextBeforeCondensing() {
+        DigestRequestForPrompt deduplicated = copyWithoutEmptyAndDuplicateQuestions();
+        setMaxTokens(compactor.estimate(deduplicated) - 1);
+
+        compactor.compact(request, originals);
+
+        assertTrue(compactor.estimate(request) <= (int) compactor.stats().get("maxTokens"));
+        assertEquals(0L, compactor.stats().get("condensedEntries"));
+        for (DigestEntryForPrompt entry : request.getEntries()) {
+            assertEquals(2, entry.getQuestions().size());
+            assertTrue(entry.getOverallDaySummary().length() <= 1201);
+        }
+    }
+
+    @Test
+    void condensesOldestEntriesUntilUnderBudget() {
+        setMaxTokens(3_000);
+
+        compactor.compact(request, originals);
+
+        assertTrue(compactor.estimate(request) <= 3_000);
+        long condensed = (long) compactor.stats().get("condensedEntries");
+        assertTrue(condensed > 0 && condensed < ENTRIES, "condensed=" + condensed);
+        // 오래된 항목(뒤쪽)부터 압축되고, 최근 항목은 질문과 이미지 설명을 유지한다
+        for (int i = 0; i < ENTRIES; i++) {
+            DigestEntryForPrompt entry = request.getEntries().get(i);
+            if (i >= ENTRIES - condensed) {
+                assertNull(entry.getQuestions());
+                assertNull(entry.getImageDescriptions());
+                assertTrue(entry.getOverallDaySummary().length() <= 201);
+            } else {
+                assertNotNull(entry.getQuestions());
+                assertNotNull(entry.getImageDescriptions());
+            }
+        }
+        assertEquals(0L, compactor.stats().get("overBudgetRequests"));
+    }
+
+    @Test
+    void reportsRequestsThatStayOverBudget() {
+        setMaxTokens(10);
+
+        assertTrue(compactor.compact(request, originals));
+
+        assertEquals((long) ENTRIES, compactor.stats().get("condensedEntries"));
+        assertEquals(1L, compactor.stats().get("overBudgetRequests"));
+    }
+
+    private void setMaxTokens(int maxTokens) {
+        ReflectionTestUtils.setField(compactor, "maxTokens", maxTokens);
+    }
+
+    // 질문 4개: 같은 문구 2개, 다른 질문 1개, 빈 답변 1개
+    private static DigestEntryForPrompt entry(int index) {
+        DigestEntryForPrompt entry = new DigestEntryForPrompt();
+        entry.setIndex(index);
+        entry.setEmotion("happy");
+        entry.setOverallDaySummary("오늘은 ".repeat(400));
+        List<DigestEntry.Question> questions = new ArrayList<>();
+        for (int q = 0; q < 4; q++) {
+            DigestEntry.Question question = new DigestEntry.Question();
+            question.setIndex(q);
+            question.setQuestion(q < 2 ? "무엇이 좋았나요?" : "질문 " + q);
+            question.setAnswer(q == 3 ? "" : "답변 ".repeat(300));
+            questions.add(question);
+        }
+        entry.setQuestions(questions);
+        DigestEntryForPrompt.ImageDescriptionForPrompt description = new DigestEntryForPrompt.ImageDescriptionForPrompt();
+        description.setDescription("A photo of a park ".repeat(60));
+        entry.setImageDescriptions(new ArrayList<>(List.of(description)));
+        return entry;
+    }
+
+    private DigestRequestForPrompt copyWithoutEmptyAndDuplicateQuestions() {
+        List<DigestEntryForPrompt> entries = new ArrayList<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            DigestEntryForPrompt entry = entry(i);
+            entry.getQuestions().remove(3);
+            entry.getQuestions().remove(1);
+            entries.add(entry);
+        }
+        DigestRequestForPrompt copy = new DigestRequestForPrompt();
+        copy.setEntries(entries);
+        copy.setUser_locale("ko");
+        return copy;
+    }
+}
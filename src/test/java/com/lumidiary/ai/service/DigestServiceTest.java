@@ -0,0 +1,202 @@
+package com.lumidiary.ai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.lumidiary.ai.dto.DigestEntry;
+import com.lumidiary.ai.dto.DigestEntryForPrompt;
+import com.lumidiary.ai.dto.DigestRequest;
+import com.lumidiary.ai.dto.DigestResponse;
+import com.lumidiary.ai.dto.GeminiPromptRequest;
+import com.lumidiary.ai.integration.GeminiApiClient;
+import com.lumidiary.ai.integration.LocalRemoteCache;
+import com.lumidiary.ai.integration.SharedCacheStore;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DigestServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // 스텁이 받은 map/단일 호출 페이로드와 reduce 페이로드
+    private final Queue<JsonNode> mapCalls = new ConcurrentLinkedQueue<>();
+    private final Queue<JsonNode> reduceCalls = new ConcurrentLinkedQueue<>();
+    private DigestService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void trustsOriginalIndexesAndMergesMapSummariesWithReduceResult() throws Exception {
+        service = start(true, entries -> summaries(entries, (position, entry) -> entry.path("index").asInt()));
+
+        DigestResponse response = service.createDigest(request(6));
+
+        assertEquals(3, mapCalls.size());
+        assertEquals(1, reduceCalls.size());
+        assertEquals(3, reduceCalls.peek().path("chunks").size());
+        // 제목/요약은 reduce 결과, 항목 요약은 reduce가 돌려준 값이 아니라 map 결과를 쓴다
+        assertEquals("제목", response.getTitle());
+        assertEquals("전체 요약", response.getSummary());
+        assertSummaries(response, "요약 0", "요약 1", "요약 2", "요약 3", "요약 4", "요약 5");
+    }
+
+    @Test
+    void restoresOriginalIndexesWhenChunkIsRenumbered() throws Exception {
+        // 모델이 청크 안에서 0부터 다시 번호를 매김
+        service = start(true, entries -> summaries(entries, (position, entry) -> position));
+
+        DigestResponse response = service.createDigest(request(6));
+
+        assertSummaries(response, "요약 0", "요약 1", "요약 2", "요약 3", "요약 4", "요약 5");
+    }
+
+    @Test
+    void fallsBackToPositionsWhenIndexesAreDuplicated() throws Exception {
+        service = start(true, entries -> {
+            int first = entries.get(0).path("index").asInt();
+            ObjectNode result = summaries(entries, (position, entry) -> first);
+            // 보낸 항목 수보다 많이 돌려준 요약은 버린다
+            ((ArrayNode) result.get("entrySummaries")).addObject().put("index", first).put("summary", "남는 요약");
+            return result;
+        });
+
+        DigestResponse response = service.createDigest(request(6));
+
+        assertSummaries(response, "요약 0", "요약 1", "요약 2", "요약 3", "요약 4", "요약 5");
+    }
+
+    @Test
+    void missingSummariesFallBackToOverallDaySummary() throws Exception {
+        // 청크마다 첫 항목의 요약만 돌려줌
+        service = start(true, entries -> {
+            ObjectNode result = summaries(entries, (position, entry) -> entry.path("index").asInt());
+            ArrayNode summaries = (ArrayNode) result.get("entrySummaries");
+            summaries.remove(1);
+            return result;
+        });
+
+        DigestResponse response = service.createDigest(request(6));
+
+        assertSummaries(response, "요약 0", "하루 1", "요약 2", "하루 3", "요약 4", "하루 5");
+    }
+
+    @Test
+    void singleCallValidatesIndexesLikeMapStage() throws Exception {
+        // 모델이 1부터 번호를 매김. 1, 2는 보낸 인덱스와 겹치지만 3은 없으므로 위치로 매핑해야 한다
+        service = start(false, entries -> summaries(entries, (position, entry) -> position + 1));
+
+        DigestResponse response = service.createDigest(request(3));
+
+        assertEquals(1, mapCalls.size());
+        assertEquals(0, reduceCalls.size());
+        assertEquals("제목", response.getTitle());
+        assertSummaries(response, "요약 0", "요약 1", "요약 2");
+    }
+
+    // responder: 보낸 항목들로 map(또는 단일 호출) 응답을 만든다. 항목 두 개씩 한 청크가 되도록 chunkTokens를 맞춘다
+    private DigestService start(boolean mapReduceEnabled, Function<List<JsonNode>, ObjectNode> responder) {
+        GeminiApiClient gemini = new GeminiApiClient(new OkHttpClient()) {
+            @Override
+            public <T> T sendPrompt(GeminiPromptRequest request, Class<T> type) throws IOException {
+                JsonNode payload = objectMapper.readTree(request.getContents().get(1).getParts().get(0).getText());
+                ObjectNode result;
+                if (payload.has("chunks")) {
+                    reduceCalls.add(payload);
+                    result = objectMapper.createObjectNode().put("title", "제목").put("summary", "전체 요약");
+                    result.putArray("entrySummaries").addObject().put("index", 0).put("summary", "reduce 요약");
+                } else {
+                    mapCalls.add(payload);
+                    List<JsonNode> entries = new ArrayList<>();
+                    payload.path("entries").forEach(entries::add);
+                    result = responder.apply(entries);
+                    result.put("title", "제목");
+                }
+                return type.cast(result);
+            }
+        };
+
+        DigestPromptCompactor compactor = new DigestPromptCompactor(objectMapper);
+        ReflectionTestUtils.setField(compactor, "maxTokens", 1_000_000);
+        ReflectionTestUtils.setField(compactor, "truncateChars", 600);
+        ReflectionTestUtils.setField(compactor, "minTruncateChars", 120);
+        ReflectionTestUtils.setField(compactor, "condensedSummaryChars", 200);
+
+        TwoLevelCacheFactory cacheFactory = new TwoLevelCacheFactory(
+                new LocalRemoteCache(new SharedCacheStore()), objectMapper);
+        ReflectionTestUtils.setField(cacheFactory, "nearMaxTtlMs", 600_000L);
+        cacheFactory.init();
+
+        DigestEntryForPrompt sample = new DigestEntryForPrompt();
+        sample.setEmotion("기쁨");
+        sample.setOverallDaySummary("하루 0");
+
+        DigestService digestService = new DigestService(gemini, objectMapper, compactor, cacheFactory);
+        ReflectionTestUtils.setField(digestService, "mapReduceEnabled", mapReduceEnabled);
+        ReflectionTestUtils.setField(digestService, "chunkTokens", compactor.estimate(sample) * 2);
+        ReflectionTestUtils.setField(digestService, "mapParallelism", 2);
+        // 캐시 적중 경로가 섞이지 않도록 항목 요약 캐시는 끈다
+        ReflectionTestUtils.setField(digestService, "summaryCacheEnabled", false);
+        ReflectionTestUtils.setField(digestService, "summaryCacheMaxSize", 100);
+        ReflectionTestUtils.setField(digestService, "summaryCacheTtlMs", 600_000L);
+        digestService.init();
+        return digestService;
+    }
+
+    // 항목마다 "요약 {원래 인덱스}"를 돌려주되, 응답에 적는 인덱스는 indexer가 정한다
+    private ObjectNode summaries(List<JsonNode> entries, Indexer indexer) {
+        ObjectNode result = objectMapper.createObjectNode();
+        ArrayNode summaries = result.putArray("entrySummaries");
+        for (int position = 0; position < entries.size(); position++) {
+            JsonNode entry = entries.get(position);
+            summaries.addObject()
+                    .put("index", indexer.index(position, entry))
+                    .put("summary", "요약 " + entry.path("index").asInt());
+        }
+        return result;
+    }
+
+    private interface Indexer {
+        int index(int position, JsonNode entry);
+    }
+
+    private static DigestRequest request(int size) {
+        List<DigestEntry> entries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            DigestEntry entry = new DigestEntry();
+            entry.setId("entry-" + i);
+            entry.setDate(String.format("2025-03-%02dT09:00:00+09:00", i + 1));
+            entry.setEmotion("기쁨");
+            entry.setOverallDaySummary("하루 " + i);
+            entries.add(entry);
+        }
+        DigestRequest request = new DigestRequest();
+        request.setId("digest-1");
+        request.setEntries(entries);
+        request.setUserLocale("ko");
+        return request;
+    }
+
+    private static void assertSummaries(DigestResponse response, String... expected) {
+        assertEquals(expected.length, response.getEntries().size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("entry-" + i, response.getEntries().get(i).getId());
+            assertEquals(expected[i], response.getEntries().get(i).getSummary());
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.lumidiary.ai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lumidiary.ai.dto.Landmark;
+import com.lumidiary.ai.dto.Metadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageDiskCacheTest {
+
+    private static final int SEGMENT_BYTES = 100_000;
+    private static final int IMAGE_BYTES = 20_000;
+    private static final String JPEG = "image/jpeg";
+
+    @TempDir
+    Path directory;
+
+    private ImageDiskCache cache;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    @Test
+    void storesAndReadsBackRecord() throws Exception {
+        cache = open(1_000_000L);
+
+        cache.store("https://img/1.jpg", "etag:\"v1\"", JPEG, 384, 50, 42L, contentHash(1), metadata(), image(7));
+        ImageDiskCache.CachedImage cached = cache.lookup("https://img/1.jpg");
+
+        assertNotNull(cached);
+        assertEquals("etag:\"v1\"", cached.validator());
+        assertEquals(JPEG, cached.mimeType());
+        assertEquals(384, cached.maxDimension());
+        assertEquals(50, cached.quality());
+        assertEquals(42L, cached.dHash());
+        assertTrue(Arrays.equals(contentHash(1), cached.contentHash()));
+        assertTrue(cached.data().isReadOnly());
+        assertEquals(ByteBuffer.wrap(image(7)), cached.data());
+        // 응답 JSON에서는 빠지는 랜드마크 좌표도 보관한다
+        Landmark landmark = cached.metadata().getNearbyLandmarks().get(0);
+        assertEquals(37.5796, landmark.getLatitude(), 1e-9);
+        assertNull(cache.lookup("https://img/2.jpg"));
+    }
+
+    @Test
+    void skipsRecordsWithoutValidatorOrTooLarge() throws Exception {
+        cache = open(1_000_000L);
+
+        cache.store("no-validator", null, JPEG, 384, 50, 0L, contentHash(1), metadata(), image(1));
+        cache.store("too-large", "etag:\"v\"", JPEG, 384, 50, 0L, contentHash(1), metadata(), new byte[SEGMENT_BYTES]);
+
+        assertNull(cache.lookup("no-validator"));
+        assertNull(cache.lookup("too-large"));
+        assertEquals(0L, cache.stats().get("stores"));
+    }
+
+    @Test
+    void restoresIndexOnRestart() throws Exception {
+        cache = open(1_000_000L);
+        for (int i = 0; i < 10; i++) {
+            cache.store("u" + i, "etag:\"v" + i + "\"", JPEG, 384, 50, i, contentHash(i), metadata(), image(i));
+        }
+        // 같은 URL을 다시 저장하면 재시작 후에도 뒤의 레코드가 남는다
+        cache.store("u3", "etag:\"v3b\"", JPEG, 384, 50, 33L, contentHash(3), metadata(), image(33));
+        cache.close();
+
+        cache = open(1_000_000L);
+
+        for (int i = 0; i < 10; i++) {
+            ImageDiskCache.CachedImage cached = cache.lookup("u" + i);
+            assertNotNull(cached, "u" + i);
+            if (i != 3) {
+                assertEquals(ByteBuffer.wrap(image(i)), cached.data());
+                assertEquals((long) i, cached.dHash());
+            }
+        }
+        assertEquals("etag:\"v3b\"", cache.lookup("u3").validator());
+        assertEquals(ByteBuffer.wrap(image(33)), cache.lookup("u3").data());
+        assertEquals(37.5796, cache.lookup("u0").metadata().getNearbyLandmarks().get(0).getLatitude(), 1e-9);
+    }
+
+    @Test
+    void matchesOnlySameEncoderAndSettings() throws Exception {
+        cache = open(1_000_000L);
+        cache.store("u", "etag:\"v\"", JPEG, 384, 50, 0L, contentHash(1), metadata(), image(1));
+        cache.close();
+        cache = open(1_000_000L);
+
+        // 재시작 후에도 인코더 포맷이 복구되어, 다른 인코더로 바꾸면 캐시된 압축본을 쓰지 않는다
+        ImageDiskCache.CachedImage cached = cache.lookup("u");
+        assertTrue(cached.matches(JPEG, 384, 50));
+        assertFalse(cached.matches("image/webp", 384, 50));
+        assertFalse(cached.matches(JPEG, 320, 50));
+        assertFalse(cached.matches(JPEG, 384, 40));
+    }
+
+    @Test
+    void discardsSegmentsInPreviousRecordFormat() throws Exception {
+        cache = open(1_000_000L);
+        cache.store("old", "etag:\"v\"", JPEG, 384, 50, 0L, contentHash(1), metadata(), image(1));
+        cache.close();
+        cache = null;
+
+        // 인코더 MIME 타입이 없던 이전 형식의 표식
+        try (FileChannel channel = FileChannel.open(directory.resolve("segment-0.dat"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 0x4C4D4943), 0);
+        }
+        cache = open(1_000_000L);
+
+        assertNull(cache.lookup("old"));
+        assertEquals(0, cache.stats().get("entries"));
+        cache.store("new", "etag:\"v\"", JPEG, 384, 50, 0L, contentHash(2), metadata(), image(2));
+        assertNotNull(cache.lookup("new"));
+        assertEquals(1L, segmentFiles());
+    }
+
+    @Test
+    void ignoresRecordWithoutCommitMarker() throws Exception {
+        cache = open(1_000_000L);
+        cache.store("torn", "etag:\"v\"", JPEG, 384, 50, 0L, contentHash(1), metadata(), image(1));
+        cache.close();
+        cache = null;
+
+        // 본문을 쓰는 도중 죽은 것처럼 첫 레코드의 표식을 지운다
+        try (FileChannel channel = FileChannel.open(directory.resolve("segment-0.dat"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), 0);
+        }
+        cache = open(1_000_000L);
+
+        assertNull(cache.lookup("torn"));
+        cache.store("next", "etag:\"v\"", JPEG, 384, 50, 0L, contentHash(2), metadata(), image(2));
+        assertNotNull(cache.lookup("next"));
+    }
+
+    @Test
+    void evictsOldestSegmentButKeepsRecentlyReadEntries() throws Exception {
+        cache = open(3L * SEGMENT_BYTES);
+
+        for (int i = 0; i < 30; i++) {
+            cache.store("u" + i, "etag:\"v" + i + "\"", JPEG, 384, 50, i, contentHash(i), metadata(), image(i));
+            if (i % 3 == 0) {
+                cache.lookup("u0");
+            }
+        }
+
+        assertTrue(segmentFiles() <= 3, "segments=" + segmentFiles());
+        assertTrue((long) cache.stats().get("evictions") > 0);
+        assertTrue((long) cache.stats().get("promotions") > 0);
+        // 계속 읽힌 항목은 활성 세그먼트로 옮겨져 살아남고, 읽히지 않은 오래된 항목은 사라진다
+        assertEquals(ByteBuffer.wrap(image(0)), cache.lookup("u0").data());
+        assertNull(cache.lookup("u1"));
+        assertNotNull(cache.lookup("u29"));
+
+        cache.close();
+        cache = open(3L * SEGMENT_BYTES);
+
+        assertEquals(ByteBuffer.wrap(image(0)), cache.lookup("u0").data());
+        assertNull(cache.lookup("u1"));
+        assertEquals(ByteBuffer.wrap(image(29)), cache.lookup("u29").data());
+    }
+
+    @Test
+    void disabledCacheStoresNothing() throws Exception {
+        cache = new ImageDiskCache(new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        cache.open();
+
+        cache.store("u", "etag:\"v\"", JPEG, 384, 50, 0L, contentHash(1), metadata(), image(1));
+
+        assertNull(cache.lookup("u"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0L, files.count());
+        }
+        cache = null;
+    }
+
+    private ImageDiskCache open(long maxBytes) throws IOException {
+        ImageDiskCache diskCache = new ImageDiskCache(new ObjectMapper());
+        ReflectionTestUtils.setField(diskCache, "enabled", true);
+        ReflectionTestUtils.setField(diskCache, "cachePath", directory.toString());
+        ReflectionTestUtils.setField(diskCache, "segmentBytes", SEGMENT_BYTES);
+        ReflectionTestUtils.setField(diskCache, "maxBytes", maxBytes);
+        diskCache.open();
+        return diskCache;
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("segment-")).count();
+        }
+    }
+
+    private static Metadata metadata() {
+        Landmark landmark = Landmark.builder().id("gbg").name("경복궁").latitude(37.5796).longitude(126.9770).build();
+        return Metadata.builder().captureDate("2025-05-01 10:00:00").nearbyLandmarks(List.of(landmark)).build();
+    }
+
+    private static byte[] contentHash(int seed) {
+        byte[] hash = new byte[32];
+        Arrays.fill(hash, (byte) seed);
+        return hash;
+    }
+
+    private static byte[] image(int seed) {
+        byte[] data = new byte[IMAGE_BYTES];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (seed * 31 + i);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,111 @@
+package com.lumidiary.ai.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImageMemoryBudgetTest {
+
+    @Test
+    void waitsUntilAnotherReservationIsReleased() throws Exception {
+        ImageMemoryBudget budget = new ImageMemoryBudget(100, 5_000);
+        ImageMemoryBudget.Reservation first = budget.reserve(80);
+
+        CompletableFuture<ImageMemoryBudget.Reservation> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return budget.reserve(50);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(second.isDone());
+
+        first.close();
+        ImageMemoryBudget.Reservation reservation = second.get(5, TimeUnit.SECONDS);
+
+        assertEquals(50L, budget.stats().get("reservedBytes"));
+        assertEquals(1L, budget.stats().get("waits"));
+        reservation.close();
+        assertEquals(0L, budget.stats().get("reservedBytes"));
+    }
+
+    @Test
+    void timesOutWhenBudgetStaysExhausted() throws Exception {
+        ImageMemoryBudget budget = new ImageMemoryBudget(100, 100);
+        try (ImageMemoryBudget.Reservation ignored = budget.reserve(60)) {
+            assertThrows(TimeoutException.class, () -> budget.reserve(60));
+        }
+
+        assertEquals(1L, budget.stats().get("timeouts"));
+        assertEquals(0L, budget.stats().get("reservedBytes"));
+    }
+
+    @Test
+    void admitsOversizedReservationWhenNothingIsReserved() throws Exception {
+        ImageMemoryBudget budget = new ImageMemoryBudget(100, 100);
+
+        // 예산보다 큰 이미지 하나도 처리할 수 있어야 한다 (기다려도 예산이 늘지 않으므로)
+        try (ImageMemoryBudget.Reservation ignored = budget.reserve(250)) {
+            assertEquals(250L, budget.stats().get("reservedBytes"));
+            assertEquals(250L, budget.stats().get("peakReservedBytes"));
+            assertEquals(0L, budget.stats().get("waits"));
+            // 하나라도 예약되어 있으면 작은 요청도 기다린다
+            assertThrows(TimeoutException.class, () -> budget.reserve(1));
+        }
+    }
+
+    @Test
+    void resizeAdjustsAccountingAndWakesWaiters() throws Exception {
+        ImageMemoryBudget budget = new ImageMemoryBudget(100, 5_000);
+        ImageMemoryBudget.Reservation estimate = budget.reserve(90);
+
+        CompletableFuture<ImageMemoryBudget.Reservation> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return budget.reserve(40);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+
+        // 실제 다운로드가 추정보다 작으면 줄어든 만큼 대기 중인 예약이 들어온다
+        estimate.resize(30);
+        ImageMemoryBudget.Reservation second = waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(70L, budget.stats().get("reservedBytes"));
+
+        // 이미 할당된 메모리를 반영하는 것이므로 늘어날 때는 예산을 넘어도 기다리지 않는다
+        estimate.resize(120);
+        assertEquals(160L, budget.stats().get("reservedBytes"));
+        assertEquals(160L, budget.stats().get("peakReservedBytes"));
+
+        estimate.close();
+        estimate.close();
+        second.close();
+        assertEquals(0L, budget.stats().get("reservedBytes"));
+    }
+
+    @Test
+    void gaugesTrackOriginalAndCompressedBytes() throws Exception {
+        ImageMemoryBudget budget = new ImageMemoryBudget(1_000, 100);
+
+        ImageMemoryBudget.Reservation reservation = budget.reserve(100);
+        reservation.resize(300);
+        budget.track(ImageMemoryBudget.Stage.COMPRESSED, 40);
+        assertEquals(300L, budget.stats().get("originalBytes"));
+        assertEquals(40L, budget.stats().get("compressedBytes"));
+
+        reservation.close();
+        budget.untrack(ImageMemoryBudget.Stage.COMPRESSED, 40);
+        assertEquals(0L, budget.stats().get("originalBytes"));
+        assertEquals(0L, budget.stats().get("compressedBytes"));
+        assertEquals(1_000L, budget.stats().get("budgetBytes"));
+    }
+}
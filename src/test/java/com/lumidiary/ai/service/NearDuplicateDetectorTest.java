@@ -0,0 +1,76 @@
+package com.lumidiary.ai.service;
+
+import com.lumidiary.ai.dto.Metadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class NearDuplicateDetectorTest {
+
+    private NearDuplicateDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        detector = new NearDuplicateDetector();
+        ReflectionTestUtils.setField(detector, "enabled", true);
+        ReflectionTestUtils.setField(detector, "maxDistance", 8);
+        ReflectionTestUtils.setField(detector, "maxSecondsApart", 300L);
+    }
+
+    @Test
+    void groupsByHammingDistanceWithFirstImageAsRepresentative() {
+        long base = 0x00FF00FF00FF00FFL;
+        List<Long> hashes = List.of(base, ~base, base ^ 0x7FL, ~base ^ 0x1L, base ^ 0xFFFFL);
+
+        List<List<Integer>> groups = detector.group(hashes, Arrays.asList(null, null, null, null, null));
+
+        assertEquals(List.of(List.of(0, 2), List.of(1, 3), List.of(4)), groups);
+        assertEquals(2L, detector.stats().get("collapsedImages"));
+    }
+
+    @Test
+    void keepsSimilarPhotosTakenFarApartSeparate() {
+        List<Long> hashes = List.of(42L, 43L, 42L);
+        List<Metadata> metadata = List.of(
+                captured("2025-05-01 10:00:00"),
+                captured("2025-05-01 10:04:00"),
+                captured("2025-05-01 18:00:00"));
+
+        assertEquals(List.of(List.of(0, 1), List.of(2)), detector.group(hashes, metadata));
+    }
+
+    @Test
+    void unknownCaptureTimeFallsBackToHash() {
+        List<Long> hashes = List.of(42L, 42L);
+        List<Metadata> metadata = List.of(captured("2025-05-01 10:00:00"), captured("2025:05:01"));
+
+        assertEquals(List.of(List.of(0, 1)), detector.group(hashes, metadata));
+    }
+
+    @Test
+    void disabledKeepsEveryImageAlone() {
+        ReflectionTestUtils.setField(detector, "enabled", false);
+
+        assertEquals(List.of(List.of(0), List.of(1)), detector.group(List.of(42L, 42L), Arrays.asList(null, null)));
+    }
+
+    @Test
+    void settingsKeyChangesWithSettings() {
+        String key = detector.settingsKey();
+        ReflectionTestUtils.setField(detector, "maxDistance", 4);
+
+        assertNotEquals(key, detector.settingsKey());
+    }
+
+    private static Metadata captured(String captureDate) {
+        Metadata metadata = new Metadata();
+        metadata.setCaptureDate(captureDate);
+        return metadata;
+    }
+}
@@ -0,0 +1,172 @@
+package com.lumidiary.ai.service;
+
+import com.lumidiary.ai.dto.Landmark;
+import com.lumidiary.ai.dto.Location;
+import com.lumidiary.ai.dto.Metadata;
+import com.lumidiary.ai.dto.VisionPayloadPlan;
+import com.lumidiary.ai.dto.VisionRequest;
+import com.lumidiary.ai.util.JpegImageEncoder;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VisionPayloadPlannerTest {
+
+    // 384px, 기본 품질(50)에서 이미지당 추정 바이트: 384 * 288 * 0.25
+    private static final long FULL_IMAGE_BYTES = 27_648;
+    private static final double LATITUDE = 37.5;
+    private static final double LONGITUDE = 127.0;
+
+    private static VisionPayloadPlanner planner(long maxBytes) {
+        VisionPayloadPlanner planner = new VisionPayloadPlanner(new JpegImageEncoder(50));
+        ReflectionTestUtils.setField(planner, "maxBytes", maxBytes);
+        ReflectionTestUtils.setField(planner, "maxTokens", 8000);
+        ReflectionTestUtils.setField(planner, "maxLandmarks", 5);
+        ReflectionTestUtils.setField(planner, "minDimension", 192);
+        ReflectionTestUtils.setField(planner, "minQuality", 30);
+        ReflectionTestUtils.setField(planner, "initialBytesPerPixel", 0.25);
+        planner.init();
+        return planner;
+    }
+
+    @Test
+    void planDoesNotDriftWithObservedSizes() {
+        VisionPayloadPlanner planner = planner(200_000L);
+        VisionPayloadPlan before = planner.plan(20);
+
+        // 실제 압축 결과가 추정보다 훨씬 커도 이후 계획은 바뀌지 않는다
+        for (int i = 0; i < 50; i++) {
+            planner.observe(before, 500_000);
+        }
+        VisionPayloadPlan after = planner.plan(20);
+
+        assertEquals(before.getMaxDimension(), after.getMaxDimension());
+        assertEquals(before.getQuality(), after.getQuality());
+        assertEquals(before.getEstimatedBytes(), after.getEstimatedBytes());
+        assertEquals(0.25, (double) planner.stats().get("bytesPerPixel"), 1e-9);
+        assertTrue((double) planner.stats().get("observedBytesPerPixel") > 0.25);
+    }
+
+    @Test
+    void keepsFullResolutionAndQualityWithinBudget() {
+        VisionPayloadPlan plan = planner(10 * FULL_IMAGE_BYTES).plan(10);
+
+        assertEquals(384, plan.getMaxDimension());
+        assertEquals(50, plan.getQuality());
+        assertEquals(10 * FULL_IMAGE_BYTES, plan.getEstimatedBytes());
+    }
+
+    @Test
+    void lowersQualityBeforeResolution() {
+        // 384px q40 ≈ 236,983, q30 ≈ 197,486, 320px q50 = 192,000 (10장)
+        VisionPayloadPlan q40 = planner(240_000L).plan(10);
+        assertEquals(384, q40.getMaxDimension());
+        assertEquals(40, q40.getQuality());
+
+        VisionPayloadPlan q30 = planner(200_000L).plan(10);
+        assertEquals(384, q30.getMaxDimension());
+        assertEquals(30, q30.getQuality());
+
+        VisionPayloadPlan smaller = planner(195_000L).plan(10);
+        assertEquals(320, smaller.getMaxDimension());
+        assertEquals(50, smaller.getQuality());
+        assertTrue(smaller.getEstimatedBytes() <= 195_000L);
+    }
+
+    @Test
+    void fallsBackToSmallestSettingsWhenNothingFits() {
+        VisionPayloadPlan plan = planner(1_000L).plan(100);
+
+        assertEquals(192, plan.getMaxDimension());
+        assertEquals(30, plan.getQuality());
+        assertTrue(plan.getEstimatedBytes() > 1_000L);
+    }
+
+    @Test
+    void ranksLandmarksByDistanceAndRelevanceAndPrunesToLimit() {
+        VisionPayloadPlanner planner = planner(1_000_000L);
+        ReflectionTestUtils.setField(planner, "maxLandmarks", 2);
+        List<Landmark> landmarks = List.of(
+                landmark("1", "먼 공원", 0.02),       // 관련도 1위지만 가장 멂
+                landmark("2", "가까운 카페", 0.0005),
+                landmark("3", "중간 서점", 0.005),
+                landmark("4", "경복궁", 0.0001),       // 주소에 이미 포함
+                Landmark.builder().id("error").name("조회 실패").build(),
+                landmark("6", "가까운 카페", 0.0004)); // 중복 이름
+        Map<String, Metadata> metadata = Map.of("a", metadata("서울 종로구 경복궁", landmarks));
+
+        VisionPayloadPlan plan = planner.plan(1);
+        planner.selectLandmarks(plan, request("a"), metadata);
+
+        assertEquals(2, plan.getLandmarkLimit());
+        assertEquals(List.of("가까운 카페", "중간 서점"), plan.getLandmarkNames().get("a"));
+        assertEquals(1L, planner.stats().get("prunedLandmarks"));
+    }
+
+    @Test
+    void dropsLandmarksWhenTokenBudgetIsExceeded() {
+        VisionPayloadPlanner planner = planner(1_000_000L);
+        // 이미지 한 장(258)과 위치 문구 기본값(20)만 들어가는 예산
+        ReflectionTestUtils.setField(planner, "maxTokens", 278);
+        Map<String, Metadata> metadata = Map.of("a", metadata("서울 중구", List.of(
+                landmark("1", "남산타워", 0.001), landmark("2", "명동성당", 0.002))));
+
+        VisionPayloadPlan plan = planner.plan(1);
+        planner.selectLandmarks(plan, request("a"), metadata);
+
+        assertEquals(0, plan.getLandmarkLimit());
+        assertEquals(List.of(), plan.getLandmarkNames().get("a"));
+        assertTrue(plan.getEstimatedTokens() <= 278);
+    }
+
+    @Test
+    void marksImagesAtSameAddressAsPrevious() {
+        VisionPayloadPlanner planner = planner(1_000_000L);
+        Map<String, Metadata> metadata = new HashMap<>();
+        metadata.put("a", metadata("서울 중구", List.of()));
+        metadata.put("b", metadata("서울 중구", List.of()));
+        metadata.put("c", metadata("부산 해운대구", List.of()));
+        // d는 메타데이터 없음, e는 d 다음이므로 주소가 같아도 앞 사진과 비교할 수 없다
+        metadata.put("e", metadata("부산 해운대구", List.of()));
+
+        VisionPayloadPlan plan = planner.plan(5);
+        planner.selectLandmarks(plan, request("a", "b", "c", "d", "e"), metadata);
+
+        assertEquals(Set.of("b"), plan.getSameLocationAsPrevious());
+        assertEquals(1L, planner.stats().get("repeatedLocations"));
+        assertTrue(planner.settingsKey(plan, List.of("a", "b")).endsWith("|:[]|same:[]"));
+    }
+
+    // 기준 위치에서 북쪽으로 latitudeOffset도 떨어진 랜드마크
+    private static Landmark landmark(String id, String name, double latitudeOffset) {
+        return Landmark.builder().id(id).name(name)
+                .latitude(LATITUDE + latitudeOffset).longitude(LONGITUDE).build();
+    }
+
+    private static Metadata metadata(String address, List<Landmark> landmarks) {
+        return Metadata.builder()
+                .location(Location.builder().latitude(LATITUDE).longitude(LONGITUDE).address(address).build())
+                .nearbyLandmarks(landmarks)
+                .build();
+    }
+
+    private static VisionRequest request(String... imageIds) {
+        List<VisionRequest.ImageData> images = new ArrayList<>();
+        for (String id : imageIds) {
+            VisionRequest.ImageData image = new VisionRequest.ImageData();
+            image.setId(id);
+            images.add(image);
+        }
+        VisionRequest request = new VisionRequest();
+        request.setImages(images);
+        return request;
+    }
+}
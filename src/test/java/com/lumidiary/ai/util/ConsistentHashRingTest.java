@@ -0,0 +1,80 @@
+package com.lumidiary.ai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 20_000;
+    private static final List<String> NODES = List.of("10.0.0.1:8081", "10.0.0.2:8081", "10.0.0.3:8081", "10.0.0.4:8081");
+
+    @Test
+    void emptyRingHasNoOwner() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(), 100);
+
+        assertTrue(ring.isEmpty());
+        assertNull(ring.nodeFor("key"));
+    }
+
+    @Test
+    void ownerDoesNotDependOnNodeOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, 100);
+        List<String> reversedNodes = new ArrayList<>(NODES);
+        Collections.reverse(reversedNodes);
+        ConsistentHashRing reversed = new ConsistentHashRing(reversedNodes, 100);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(ring.nodeFor("key-" + i), reversed.nodeFor("key-" + i));
+        }
+    }
+
+    @Test
+    void spreadsKeysAcrossNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, 100);
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.nodeFor("key-" + i), 1, Integer::sum);
+        }
+
+        assertEquals(NODES.size(), counts.size());
+        for (int count : counts.values()) {
+            // 노드당 기대치(25%)에서 크게 벗어나지 않아야 한다
+            assertTrue(count > KEYS / NODES.size() * 0.7 && count < KEYS / NODES.size() * 1.3, counts.toString());
+        }
+    }
+
+    @Test
+    void removingNodeOnlyMovesItsKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(NODES, 100);
+        ConsistentHashRing after = new ConsistentHashRing(NODES.subList(0, 3), 100);
+        String removed = NODES.get(3);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key-" + i;
+            String owner = before.nodeFor(key);
+            if (!owner.equals(removed)) {
+                assertEquals(owner, after.nodeFor(key));
+            } else {
+                moved++;
+            }
+        }
+        assertTrue(moved < KEYS * 0.35, "moved=" + moved);
+    }
+
+    @Test
+    void hashIsStable() {
+        assertEquals(ConsistentHashRing.hash("lumidiary"), ConsistentHashRing.hash("lumidiary"));
+        assertTrue(ConsistentHashRing.hash("a") != ConsistentHashRing.hash("b"));
+    }
+}
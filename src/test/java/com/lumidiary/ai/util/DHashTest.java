@@ -0,0 +1,99 @@
+package com.lumidiary.ai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DHashTest {
+
+    @Test
+    void flatImageHashesToZero() {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+
+        assertEquals(0L, DHash.compute(image));
+    }
+
+    @Test
+    void brightnessFallingLeftToRightSetsEveryBit() {
+        BufferedImage image = new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            int gray = 255 - x * 255 / image.getWidth();
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, gray << 16 | gray << 8 | gray);
+            }
+        }
+
+        assertEquals(-1L, DHash.compute(image));
+    }
+
+    @Test
+    void nearDuplicatesAreCloseAndDifferentScenesAreFar() {
+        BufferedImage original = scene(1, 400, 300);
+        BufferedImage noisy = withNoise(original, 2);
+        BufferedImage resized = resize(original, 200, 150);
+        BufferedImage other = scene(7, 400, 300);
+
+        long hash = DHash.compute(original);
+
+        // 근접 중복 기본 임계값(vision.dedupe.max-distance=8) 안에 들어와야 한다
+        assertTrue(DHash.distance(hash, DHash.compute(noisy)) <= 8);
+        assertTrue(DHash.distance(hash, DHash.compute(resized)) <= 8);
+        assertTrue(DHash.distance(hash, DHash.compute(other)) > 16);
+    }
+
+    @Test
+    void distanceCountsDifferingBits() {
+        assertEquals(0, DHash.distance(0x0FL, 0x0FL));
+        assertEquals(4, DHash.distance(0x0FL, 0x00L));
+        assertEquals(64, DHash.distance(0L, -1L));
+    }
+
+    // 대각선 그라데이션 배경 위에 무작위 색 사각형을 겹쳐 그린 장면
+    private static BufferedImage scene(long seed, int width, int height) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int gray = (x + y) * 255 / (width + height);
+                image.setRGB(x, y, gray << 16 | gray << 8 | gray);
+            }
+        }
+        Graphics2D g = image.createGraphics();
+        for (int i = 0; i < 12; i++) {
+            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), 160));
+            g.fillRect(random.nextInt(width), random.nextInt(height), 40 + random.nextInt(width / 2), 40 + random.nextInt(height / 2));
+        }
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage withNoise(BufferedImage source, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                int rgb = source.getRGB(x, y);
+                int noise = random.nextInt(9) - 4;
+                int r = Math.max(0, Math.min(255, ((rgb >> 16) & 0xff) + noise));
+                int gr = Math.max(0, Math.min(255, ((rgb >> 8) & 0xff) + noise));
+                int b = Math.max(0, Math.min(255, (rgb & 0xff) + noise));
+                image.setRGB(x, y, r << 16 | gr << 8 | b);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,59 @@
+package com.lumidiary.ai.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 디코더 테스트/벤치마크용 Gemini generateContent 응답 봉투와 기존(트리 + 정규식) 디코딩 경로.
+ */
+final class GeminiEnvelopes {
+
+    private GeminiEnvelopes() {
+    }
+
+    // DigestResponse 모양의 모델 출력 (일기 개수로 크기를 조절)
+    static String digestText(int entries) {
+        StringBuilder text = new StringBuilder("{\"title\":\"주말 나들이\",\"overallEmotion\":\"기쁨\",\"entries\":[");
+        for (int i = 0; i < entries; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append("{\"id\":\"entry-").append(i)
+                    .append("\",\"summary\":\"오늘은 공원에서 산책을 하고 카페에 들렀다. \\\"좋은 날\\\" ").append(i).append("\"}");
+        }
+        return text.append("]}").toString();
+    }
+
+    // 후보/파트 앞뒤에 다른 필드가 섞인 실제 응답과 같은 구조로 text를 감싼다
+    static byte[] envelope(ObjectMapper objectMapper, String text) throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode candidate = root.putArray("candidates").addObject();
+        ObjectNode content = candidate.putObject("content");
+        content.putArray("parts").addObject().put("text", text);
+        content.put("role", "model");
+        candidate.put("finishReason", "STOP");
+        candidate.putArray("safetyRatings").addObject().put("category", "HARM_CATEGORY_HARASSMENT").put("probability", "NEGLIGIBLE");
+        root.putObject("usageMetadata").put("promptTokenCount", 1234).put("candidatesTokenCount", 567);
+        root.put("modelVersion", "gemini-2.0-flash");
+        return objectMapper.writeValueAsBytes(root);
+    }
+
+    // 변경 전 GeminiApiClient의 디코딩 경로: 문자열 -> 트리 -> 텍스트 -> 정규식으로 펜스 제거 -> 다시 파싱
+    static JsonNode decodeLegacy(byte[] envelope, ObjectMapper objectMapper) throws IOException {
+        String result = new String(envelope, StandardCharsets.UTF_8);
+        JsonNode root = objectMapper.readTree(result);
+        String rawText = root
+                .path("candidates").get(0)
+                .path("content")
+                .path("parts").get(0)
+                .path("text").asText();
+        String cleaned = rawText
+                .replaceAll("(?s)```json\\s*", "")
+                .replaceAll("```", "").trim();
+        return objectMapper.readTree(cleaned);
+    }
+}
@@ -0,0 +1,57 @@
+package com.lumidiary.ai.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 기존 디코딩 경로(문자열 -> readTree -> 정규식 -> readTree)와 GeminiResponseDecoder의 응답당 처리 시간 비교.
+ * 기본 빌드에서는 건너뛰며 다음처럼 실행한다:
+ * <pre>mvn test -Dtest=GeminiResponseDecoderBenchmark -Dbenchmark=true</pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class GeminiResponseDecoderBenchmark {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 50_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void compareLegacyAndStreamingDecode() throws Exception {
+        for (int entries : new int[]{5, 40, 200}) {
+            byte[] envelope = GeminiEnvelopes.envelope(objectMapper, "```json\n" + GeminiEnvelopes.digestText(entries) + "\n```");
+            assertEquals(GeminiEnvelopes.decodeLegacy(envelope, objectMapper),
+                    GeminiResponseDecoder.decode(new ByteArrayInputStream(envelope), objectMapper, JsonNode.class));
+
+            run(envelope, WARMUP, true);
+            run(envelope, WARMUP, false);
+            double legacy = run(envelope, ITERATIONS, true);
+            double decoder = run(envelope, ITERATIONS, false);
+
+            System.out.printf("entries=%d (%d bytes): legacy %.1f us/op, decoder %.1f us/op (%.2fx)%n",
+                    entries, envelope.length, legacy, decoder, legacy / decoder);
+        }
+    }
+
+    private double run(byte[] envelope, int iterations, boolean legacy) throws Exception {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            JsonNode node = legacy
+                    ? GeminiEnvelopes.decodeLegacy(envelope, objectMapper)
+                    : GeminiResponseDecoder.decode(new ByteArrayInputStream(envelope), objectMapper, JsonNode.class);
+            sink += node.size();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 0) {
+            throw new IllegalStateException("디코딩 결과가 비어 있음");
+        }
+        return elapsed / 1e3 / iterations;
+    }
+}
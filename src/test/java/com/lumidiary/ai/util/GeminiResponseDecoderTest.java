@@ -0,0 +1,86 @@
+package com.lumidiary.ai.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lumidiary.ai.dto.DigestResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GeminiResponseDecoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void decodesSameTreeAsLegacyPath() throws Exception {
+        for (String text : new String[]{
+                GeminiEnvelopes.digestText(5),
+                "```json\n" + GeminiEnvelopes.digestText(40) + "\n```",
+                "  ```\n[1, 2, 3]\n```  ",
+                "```json{\"a\":1}```"}) {
+            byte[] envelope = GeminiEnvelopes.envelope(objectMapper, text);
+
+            JsonNode legacy = GeminiEnvelopes.decodeLegacy(envelope, objectMapper);
+            JsonNode decoded = GeminiResponseDecoder.decode(new ByteArrayInputStream(envelope), objectMapper, JsonNode.class);
+
+            assertEquals(legacy, decoded, text);
+        }
+    }
+
+    @Test
+    void keepsFencesInsideStringValues() throws Exception {
+        // 기존 정규식은 본문 안의 ``` 까지 지웠다
+        String text = "```json\n{\"summary\":\"코드 ```블록``` 예시\"}\n```";
+        byte[] envelope = GeminiEnvelopes.envelope(objectMapper, text);
+
+        JsonNode decoded = GeminiResponseDecoder.decode(new ByteArrayInputStream(envelope), objectMapper, JsonNode.class);
+
+        assertEquals("코드 ```블록``` 예시", decoded.get("summary").asText());
+    }
+
+    @Test
+    void bindsToTargetType() throws Exception {
+        byte[] envelope = GeminiEnvelopes.envelope(objectMapper, "```json\n" + GeminiEnvelopes.digestText(3) + "\n```");
+
+        DigestResponse response = GeminiResponseDecoder.decode(new ByteArrayInputStream(envelope), objectMapper, DigestResponse.class);
+
+        assertEquals("주말 나들이", response.getTitle());
+        assertEquals(3, response.getEntries().size());
+    }
+
+    @Test
+    void stripCodeFence() {
+        assertEquals("{\"a\":1}", GeminiResponseDecoder.stripCodeFence("  {\"a\":1}  "));
+        assertEquals("[1,2]", GeminiResponseDecoder.stripCodeFence("```\n[1,2]\n```"));
+        assertEquals("{\"a\":1}", GeminiResponseDecoder.stripCodeFence("```json\n{\"a\":1}\n```"));
+        assertEquals("{\"a\":1}", GeminiResponseDecoder.stripCodeFence("```json{\"a\":1}```"));
+    }
+
+    @Test
+    void findTextReturnsNullWithoutTextPart() throws Exception {
+        String usageOnly = "{\"candidates\":[{\"content\":{\"role\":\"model\",\"parts\":[{}]}}],\"usageMetadata\":{\"totalTokenCount\":10}}";
+
+        assertNull(GeminiResponseDecoder.findText(stream(usageOnly), objectMapper));
+        assertNull(GeminiResponseDecoder.findText(stream("{\"promptFeedback\":{\"blockReason\":\"SAFETY\"}}"), objectMapper));
+        assertThrows(IOException.class, () -> GeminiResponseDecoder.extractText(stream(usageOnly), objectMapper));
+        assertThrows(IOException.class, () -> GeminiResponseDecoder.findText(stream("[1]"), objectMapper));
+    }
+
+    @Test
+    void reportsUnparseableText() throws Exception {
+        byte[] envelope = GeminiEnvelopes.envelope(objectMapper, "```json\n{\"title\": \n```");
+
+        assertThrows(IOException.class,
+                () -> GeminiResponseDecoder.decode(new ByteArrayInputStream(envelope), objectMapper, JsonNode.class));
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,36 @@
+package com.lumidiary.ai.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeohashTest {
+
+    @Test
+    void encodesKnownCoordinates() {
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", Geohash.encode(42.605, -5.603, 5));
+        assertEquals("s0000", Geohash.encode(0, 0, 5));
+    }
+
+    @Test
+    void shorterPrecisionIsPrefix() {
+        String full = Geohash.encode(37.5796, 126.9770, 9);
+
+        for (int precision = 1; precision < 9; precision++) {
+            assertEquals(full.substring(0, precision), Geohash.encode(37.5796, 126.9770, precision));
+        }
+    }
+
+    @Test
+    void nearbyPointsShareCell() {
+        // 같은 건물 안의 두 좌표(약 10m)는 precision 7 셀이 같고, 다른 동네는 다르다
+        String cell = Geohash.encode(37.57960, 126.97700, 7);
+
+        assertEquals(cell, Geohash.encode(37.57965, 126.97708, 7));
+        assertNotEquals(cell, Geohash.encode(37.49794, 127.02762, 7));
+        assertTrue(cell.startsWith("wydm"));
+    }
+}
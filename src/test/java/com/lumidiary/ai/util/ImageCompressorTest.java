@@ -0,0 +1,131 @@
+package com.lumidiary.ai.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageCompressorTest {
+
+    private final ImageEncoder encoder = new JpegImageEncoder(90);
+
+    @Test
+    void keepsLandscapeWithoutOrientation() throws Exception {
+        byte[] jpeg = halves(400, 300);
+
+        BufferedImage result = decode(ImageCompressor.compress(jpeg, jpeg.length, encoder, 384, 90).data());
+
+        assertEquals(384, result.getWidth());
+        assertEquals(288, result.getHeight());
+        assertEquals(1, ImageCompressor.readOrientation(jpeg, jpeg.length));
+    }
+
+    @Test
+    void rotatesOrientationSixToPortrait() throws Exception {
+        // 폰을 세워서 찍은 사진: 센서 기준 가로 픽셀 + Orientation 6(시계 방향 90도 회전해서 보여야 함)
+        byte[] jpeg = withOrientation(halves(400, 300), 6);
+        assertEquals(6, ImageCompressor.readOrientation(jpeg, jpeg.length));
+
+        ImageCompressor.CompressedImage compressed = ImageCompressor.compress(jpeg, jpeg.length, encoder, 384, 90);
+        BufferedImage result = decode(compressed.data());
+
+        assertEquals(288, result.getWidth());
+        assertEquals(384, result.getHeight());
+        // 왼쪽(빨강)이 위로, 오른쪽(파랑)이 아래로 간다
+        assertTrue(isRed(result.getRGB(144, 20)));
+        assertTrue(isBlue(result.getRGB(144, 364)));
+        // dHash도 돌린 픽셀 기준으로 계산된다
+        assertTrue(DHash.distance(DHash.compute(result), compressed.dHash()) <= 4);
+    }
+
+    @Test
+    void orientationTransformsMatchExifDefinition() {
+        // 2×3 이미지의 각 픽셀에 위치 번호를 넣고 변환 결과를 확인
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 3; x++) {
+                image.setRGB(x, y, y * 3 + x);
+            }
+        }
+
+        assertEquals("0 1 2 / 3 4 5", pixels(ImageCompressor.orient(image, 1)));
+        assertEquals("2 1 0 / 5 4 3", pixels(ImageCompressor.orient(image, 2)));
+        assertEquals("5 4 3 / 2 1 0", pixels(ImageCompressor.orient(image, 3)));
+        assertEquals("3 4 5 / 0 1 2", pixels(ImageCompressor.orient(image, 4)));
+        assertEquals("0 3 / 1 4 / 2 5", pixels(ImageCompressor.orient(image, 5)));
+        assertEquals("3 0 / 4 1 / 5 2", pixels(ImageCompressor.orient(image, 6)));
+        assertEquals("5 2 / 4 1 / 3 0", pixels(ImageCompressor.orient(image, 7)));
+        assertEquals("2 5 / 1 4 / 0 3", pixels(ImageCompressor.orient(image, 8)));
+    }
+
+    private static String pixels(BufferedImage image) {
+        StringBuilder text = new StringBuilder();
+        for (int y = 0; y < image.getHeight(); y++) {
+            if (y > 0) {
+                text.append(" / ");
+            }
+            for (int x = 0; x < image.getWidth(); x++) {
+                if (x > 0) {
+                    text.append(' ');
+                }
+                text.append(image.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+        return text.toString();
+    }
+
+    // 왼쪽 절반 빨강, 오른쪽 절반 파랑
+    private static byte[] halves(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, width / 2, height);
+        g.setColor(Color.BLUE);
+        g.fillRect(width / 2, 0, width - width / 2, height);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    // SOI 바로 뒤에 Orientation 태그 하나만 있는 EXIF APP1 세그먼트를 넣는다
+    private static byte[] withOrientation(byte[] jpeg, int orientation) {
+        byte[] tiff = {
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0};
+        byte[] exifHeader = {'E', 'x', 'i', 'f', 0, 0};
+        int segmentLength = 2 + exifHeader.length + tiff.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(segmentLength >> 8);
+        out.write(segmentLength & 0xFF);
+        out.write(exifHeader, 0, exifHeader.length);
+        out.write(tiff, 0, tiff.length);
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage decode(byte[] bytes) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(bytes));
+    }
+
+    private static boolean isRed(int rgb) {
+        return ((rgb >> 16) & 0xFF) > 200 && (rgb & 0xFF) < 60;
+    }
+
+    private static boolean isBlue(int rgb) {
+        return (rgb & 0xFF) > 200 && ((rgb >> 16) & 0xFF) < 60;
+    }
+}
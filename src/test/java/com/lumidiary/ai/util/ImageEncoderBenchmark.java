@@ -0,0 +1,100 @@
+package com.lumidiary.ai.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JPEG(ImageIO) 인코더와 cwebp 기반 WebP 인코더의 처리량/출력 크기 비교.
+ * 기본 빌드에서는 건너뛰며 다음처럼 실행한다:
+ * <pre>mvn test -Dtest=ImageEncoderBenchmark -Dbenchmark=true</pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ImageEncoderBenchmark {
+
+    private static final int QUALITY = 50;
+    private static final int IMAGES = 8;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURE_ROUNDS = 10;
+
+    @Test
+    void compareJpegAndWebp() throws Exception {
+        List<BufferedImage> images = syntheticPhotos();
+
+        Result jpeg = measure("jpeg", new JpegImageEncoder(QUALITY), images);
+        Result webp = measure("webp", new WebpImageEncoder(QUALITY), images);
+
+        System.out.printf("%-5s %10s %12s%n", "codec", "ms/image", "avg bytes");
+        for (Result result : List.of(jpeg, webp)) {
+            System.out.printf("%-5s %10.2f %12d%n", result.name, result.millisPerImage, result.averageBytes);
+        }
+        System.out.printf("jpeg/webp: 시간 %.2fx, 크기 %.2fx%n",
+                jpeg.millisPerImage / webp.millisPerImage, (double) jpeg.averageBytes / webp.averageBytes);
+    }
+
+    private Result measure(String name, ImageEncoder encoder, List<BufferedImage> images) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            for (BufferedImage image : images) {
+                encoder.encode(image);
+            }
+        }
+
+        long totalBytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            for (BufferedImage image : images) {
+                byte[] encoded = encoder.encode(image);
+                assertTrue(encoded.length > 0, name + " 인코딩 결과가 비어 있음");
+                totalBytes += encoded.length;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int encodes = MEASURE_ROUNDS * images.size();
+        return new Result(name, elapsed / 1e6 / encodes, totalBytes / encodes);
+    }
+
+    // 실제 사진처럼 완만한 그라데이션 + 도형 경계 + 센서 노이즈가 섞인 리사이즈 크기(1024px) 이미지
+    private static List<BufferedImage> syntheticPhotos() {
+        Random random = new Random(42);
+        List<BufferedImage> images = new ArrayList<>();
+        for (int n = 0; n < IMAGES; n++) {
+            int width = n % 2 == 0 ? 1024 : 768;
+            int height = n % 2 == 0 ? 768 : 1024;
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            int cx = random.nextInt(width);
+            int cy = random.nextInt(height);
+            int radius = 100 + random.nextInt(200);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int r = x * 255 / width;
+                    int g = y * 255 / height;
+                    int b = (x + y + n * 40) % 256;
+                    int dx = x - cx;
+                    int dy = y - cy;
+                    if (dx * dx + dy * dy < radius * radius) {
+                        r = 255 - r;
+                        g = g / 2;
+                    }
+                    int noise = random.nextInt(24) - 12;
+                    image.setRGB(x, y, clamp(r + noise) << 16 | clamp(g + noise) << 8 | clamp(b + noise));
+                }
+            }
+            images.add(image);
+        }
+        return images;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private record Result(String name, double millisPerImage, long averageBytes) {
+    }
+}
@@ -0,0 +1,99 @@
+package com.lumidiary.ai.util;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.jpeg.JpegDirectory;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class JpegHeaderScannerTest {
+
+    @Test
+    void findsEndOfHeaderInRealJpeg() throws Exception {
+        byte[] jpeg = jpeg(800, 600);
+
+        int header = new JpegHeaderScanner().scan(jpeg, jpeg.length);
+
+        assertEquals(sosEnd(jpeg), header);
+        // 헤더 구간만으로 메타데이터(이미지 크기)를 읽을 수 있어야 한다
+        Metadata metadata = ImageMetadataReader.readMetadata(new ByteArrayInputStream(jpeg, 0, header));
+        JpegDirectory directory = metadata.getFirstDirectoryOfType(JpegDirectory.class);
+        assertNotNull(directory);
+        assertEquals(800, directory.getImageWidth());
+    }
+
+    @Test
+    void scansIncrementally() throws Exception {
+        byte[] jpeg = jpeg(320, 240);
+        JpegHeaderScanner scanner = new JpegHeaderScanner();
+
+        int result = JpegHeaderScanner.NEED_MORE;
+        int length = 0;
+        while (result == JpegHeaderScanner.NEED_MORE && length < jpeg.length) {
+            length++;
+            result = scanner.scan(jpeg, length);
+        }
+
+        assertEquals(sosEnd(jpeg), result);
+        assertEquals(result, length);
+        // 결과가 정해진 뒤에는 같은 값을 돌려준다
+        assertEquals(result, scanner.scan(jpeg, jpeg.length));
+    }
+
+    @Test
+    void skipsLargeSegmentsAndFillBytes() {
+        byte[] data = new byte[2 + 4 + 1000 + 3 + 10];
+        int p = 0;
+        data[p++] = (byte) 0xFF;
+        data[p++] = (byte) 0xD8;
+        // APP1(EXIF) 세그먼트: 마커 + 길이(2바이트 포함) + 본문
+        data[p++] = (byte) 0xFF;
+        data[p++] = (byte) 0xE1;
+        data[p++] = (byte) ((1000 + 2) >> 8);
+        data[p++] = (byte) ((1000 + 2) & 0xFF);
+        p += 1000;
+        data[p++] = (byte) 0xFF;
+        data[p++] = (byte) 0xFF;
+        data[p++] = (byte) 0xDA;
+
+        JpegHeaderScanner scanner = new JpegHeaderScanner();
+
+        assertEquals(JpegHeaderScanner.NEED_MORE, scanner.scan(data, 500));
+        assertEquals(p, scanner.scan(data, data.length));
+    }
+
+    @Test
+    void rejectsNonJpeg() {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n'};
+        byte[] brokenSegment = {(byte) 0xFF, (byte) 0xD8, 0x00, 0x10};
+
+        assertEquals(JpegHeaderScanner.NEED_MORE, new JpegHeaderScanner().scan(png, 1));
+        assertEquals(JpegHeaderScanner.NOT_JPEG, new JpegHeaderScanner().scan(png, png.length));
+        assertEquals(JpegHeaderScanner.NOT_JPEG, new JpegHeaderScanner().scan(brokenSegment, brokenSegment.length));
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    // 첫 SOS 마커 바로 뒤 위치 (ImageIO 출력에는 SOS 앞에 0xFFDA가 우연히 나오지 않는다)
+    private static int sosEnd(byte[] jpeg) {
+        for (int i = 0; i + 1 < jpeg.length; i++) {
+            if ((jpeg[i] & 0xFF) == 0xFF && (jpeg[i + 1] & 0xFF) == 0xDA) {
+                return i + 2;
+            }
+        }
+        throw new IllegalStateException("SOS 마커 없음");
+    }
+}
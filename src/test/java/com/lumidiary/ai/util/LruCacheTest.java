@@ -0,0 +1,119 @@
+package com.lumidiary.ai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LruCacheTest {
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        LruCache<String, String> cache = new LruCache<>(2, 60_000);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.getIfPresent("a");
+        cache.put("c", "3");
+
+        assertEquals("1", cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+        assertEquals("3", cache.getIfPresent("c"));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    void expiresAfterTtl() throws Exception {
+        LruCache<String, String> cache = new LruCache<>(10, 50);
+        cache.put("a", "1");
+        assertEquals("1", cache.getIfPresent("a"));
+
+        Thread.sleep(120);
+
+        assertNull(cache.getIfPresent("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void loadsOnceAndServesHits() throws Exception {
+        LruCache<String, String> cache = new LruCache<>(10, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+        LruCache.Loader<String> loader = () -> {
+            loads.incrementAndGet();
+            return "v";
+        };
+
+        assertEquals("v", cache.get("k", loader));
+        assertEquals("v", cache.get("k", loader));
+
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.stats().get("hits"));
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void coalescesConcurrentLoads() throws Exception {
+        LruCache<String, Object> cache = new LruCache<>(10, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Object value = new Object();
+        int callers = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get("k", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                release.await();
+                return value;
+            })));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> cache.get("k", () -> {
+                    loads.incrementAndGet();
+                    return new Object();
+                })));
+            }
+            // 뒤따른 호출이 모두 진행 중인 로드에 합류할 때까지 대기
+            long deadline = System.currentTimeMillis() + 5_000;
+            while ((long) cache.stats().get("coalesced") < callers - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<Object> result : results) {
+                assertSame(value, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals((long) callers - 1, cache.stats().get("coalesced"));
+    }
+
+    @Test
+    void doesNotCacheFailuresOrNulls() throws Exception {
+        LruCache<String, String> cache = new LruCache<>(10, 60_000);
+
+        assertThrows(IOException.class, () -> cache.get("k", () -> {
+            throw new IOException("boom");
+        }));
+        assertNull(cache.get("k", () -> null));
+        assertEquals(0, cache.size());
+        assertEquals("v", cache.get("k", () -> "v"));
+    }
+}
@@ -0,0 +1,116 @@
+package com.lumidiary.ai.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PoiKdTreeTest {
+
+    private static final int POINTS = 5_000;
+
+    private final Random random = new Random(1);
+    private PoiKdTree tree;
+
+    @BeforeEach
+    void setUp() {
+        PoiKdTree.Builder builder = new PoiKdTree.Builder();
+        for (int i = 0; i < POINTS; i++) {
+            String address = random.nextInt(50) == 0 ? "주소 " + i : null;
+            builder.add(37.5 + random.nextDouble() * 0.05, 127 + random.nextDouble() * 0.05, "id" + i, "지점 " + i, address);
+        }
+        tree = builder.build();
+    }
+
+    @Test
+    void keepsCoordinatesAndFields() {
+        PoiKdTree single = new PoiKdTree.Builder().add(37.5796, 126.9770, "gbg", "경복궁", null).build();
+
+        assertEquals(1, single.size());
+        assertEquals(37.5796, single.latitude(0), 1e-9);
+        assertEquals(126.9770, single.longitude(0), 1e-9);
+        assertEquals("gbg", single.field(0, PoiKdTree.FIELD_ID));
+        assertEquals("경복궁", single.field(0, PoiKdTree.FIELD_NAME));
+        assertNull(single.field(0, PoiKdTree.FIELD_ADDRESS));
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        for (int q = 0; q < 500; q++) {
+            double lat = 37.5 + random.nextDouble() * 0.05;
+            double lng = 127 + random.nextDouble() * 0.05;
+
+            int found = tree.nearest(lat, lng);
+
+            assertEquals(bruteForce(lat, lng, Double.MAX_VALUE, -1), tree.distanceMeters(found, lat, lng), 1e-6);
+        }
+    }
+
+    @Test
+    void nearestWithFieldMatchesBruteForce() {
+        for (int q = 0; q < 500; q++) {
+            double lat = 37.5 + random.nextDouble() * 0.05;
+            double lng = 127 + random.nextDouble() * 0.05;
+            double radius = 50 + random.nextDouble() * 300;
+
+            int found = tree.nearestWithField(lat, lng, radius, PoiKdTree.FIELD_ADDRESS);
+            double expected = bruteForce(lat, lng, radius, PoiKdTree.FIELD_ADDRESS);
+
+            if (expected == Double.MAX_VALUE) {
+                assertEquals(-1, found);
+            } else {
+                assertTrue(found >= 0);
+                assertEquals(expected, tree.distanceMeters(found, lat, lng), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void withinRadiusIsSortedAndComplete() {
+        double lat = 37.525;
+        double lng = 127.025;
+        double radius = 200;
+
+        int[] found = tree.withinRadius(lat, lng, radius, Integer.MAX_VALUE);
+
+        int expected = 0;
+        for (int i = 0; i < tree.size(); i++) {
+            if (tree.distanceMeters(i, lat, lng) <= radius) {
+                expected++;
+            }
+        }
+        assertEquals(expected, found.length);
+        for (int i = 1; i < found.length; i++) {
+            assertTrue(tree.distanceMeters(found[i - 1], lat, lng) <= tree.distanceMeters(found[i], lat, lng));
+        }
+        assertEquals(Math.min(3, found.length), tree.withinRadius(lat, lng, radius, 3).length);
+    }
+
+    @Test
+    void emptyTreeFindsNothing() {
+        PoiKdTree empty = new PoiKdTree.Builder().build();
+
+        assertEquals(-1, empty.nearest(37.5, 127));
+        assertEquals(-1, empty.nearestWithField(37.5, 127, 1_000, PoiKdTree.FIELD_NAME));
+        assertEquals(0, empty.withinRadius(37.5, 127, 1_000, 10).length);
+    }
+
+    // field가 -1이면 값 유무와 관계없이 모든 지점을 후보로 본다
+    private double bruteForce(double lat, double lng, double radius, int field) {
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < tree.size(); i++) {
+            if (field >= 0 && tree.field(i, field) == null) {
+                continue;
+            }
+            double distance = tree.distanceMeters(i, lat, lng);
+            if (distance <= radius && distance < best) {
+                best = distance;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,80 @@
+package com.lumidiary.ai.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamingJsonFieldParserTest {
+
+    private static final String TEXT = "```json\n"
+            + "{\"images\":[{\"id\":\"a\",\"description\":\"한강 공원의 \\\"노을\\\"\",\"score\":3},"
+            + "{\"id\":\"b\",\"tags\":[\"카페\",\"커피\"]}],\"summary\":\"즐거운 하루\"}\n```";
+
+    private static final List<String> EXPECTED = List.of(
+            "/images/0/id=a",
+            "/images/0/description=한강 공원의 \"노을\"",
+            "/images/1/id=b",
+            "/images/1/tags/0=카페",
+            "/images/1/tags/1=커피",
+            "/summary=즐거운 하루");
+
+    @Test
+    void reportsStringFieldsWithPointers() throws Exception {
+        List<String> fields = new ArrayList<>();
+        StreamingJsonFieldParser parser = new StreamingJsonFieldParser(new JsonFactory(), (path, value) -> fields.add(path + "=" + value));
+
+        parser.feed(TEXT);
+
+        assertEquals(EXPECTED, fields);
+    }
+
+    @Test
+    void sameResultForAnyChunking() throws Exception {
+        for (int chunkSize = 1; chunkSize <= 16; chunkSize++) {
+            List<String> fields = new ArrayList<>();
+            StreamingJsonFieldParser parser = new StreamingJsonFieldParser(new JsonFactory(), (path, value) -> fields.add(path + "=" + value));
+
+            for (int i = 0; i < TEXT.length(); i += chunkSize) {
+                parser.feed(TEXT.substring(i, Math.min(TEXT.length(), i + chunkSize)));
+            }
+
+            assertEquals(EXPECTED, fields, "chunkSize=" + chunkSize);
+        }
+    }
+
+    @Test
+    void reportsFieldAsSoonAsItCompletes() throws Exception {
+        List<String> fields = new ArrayList<>();
+        StreamingJsonFieldParser parser = new StreamingJsonFieldParser(new JsonFactory(), (path, value) -> fields.add(path));
+
+        parser.feed("{\"title\":\"주말");
+        assertEquals(List.of(), fields);
+        parser.feed("\",\"summary\":");
+        assertEquals(List.of("/title"), fields);
+    }
+
+    @Test
+    void stopsQuietlyOnMalformedInput() throws Exception {
+        List<String> fields = new ArrayList<>();
+        StreamingJsonFieldParser parser = new StreamingJsonFieldParser(new JsonFactory(), (path, value) -> fields.add(path));
+
+        parser.feed("{\"a\":\"1\",}");
+        parser.feed("\"b\":\"2\"}");
+
+        assertEquals(List.of("/a"), fields);
+    }
+
+    @Test
+    void ignoresTextAfterRootValue() throws Exception {
+        List<String> fields = new ArrayList<>();
+        StreamingJsonFieldParser parser = new StreamingJsonFieldParser(new JsonFactory(), (path, value) -> fields.add(path));
+
+        parser.feed("{\"a\":\"1\"}\n```\n{\"b\":\"2\"}");
+
+        assertEquals(List.of("/a"), fields);
+    }
+}
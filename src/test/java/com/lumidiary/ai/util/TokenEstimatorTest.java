@@ -0,0 +1,36 @@
+package com.lumidiary.ai.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenEstimatorTest {
+
+    @Test
+    void countsAsciiInGroupsOfFour() {
+        assertEquals(0, TokenEstimator.estimate(null));
+        assertEquals(0, TokenEstimator.estimate(""));
+        assertEquals(1, TokenEstimator.estimate("abcd"));
+        assertEquals(2, TokenEstimator.estimate("abcde"));
+    }
+
+    @Test
+    void countsEachNonAsciiCharacter() {
+        // 한글 5자 + 공백 1자(ASCII 1토큰)
+        assertEquals(6, TokenEstimator.estimate("오늘의 일기"));
+        // 서러게이트 쌍(이모지)은 한 글자로 센다
+        assertEquals(2, TokenEstimator.estimate("😀😀"));
+        assertEquals(1 + 2, TokenEstimator.estimate("ok 좋아"));
+    }
+
+    @Test
+    void estimatesSerializedJson() {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        // {"a":"한글"} → ASCII 8자(2토큰) + 한글 2자
+        assertEquals(4, TokenEstimator.estimateJson(Map.of("a", "한글"), objectMapper));
+    }
+}